@@ -0,0 +1,152 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.benchmark;
+
+import io.datatree.Tree;
+
+/**
+ * Sample documents of the benchmarks. Shapes:<br>
+ * <br>
+ * "small" - one record with 12 fields of different types<br>
+ * "medium" - 100 records<br>
+ * "large" - 10000 records<br>
+ * "deep" - 200 nested objects<br>
+ * "wide" - one object with 10000 fields<br>
+ * "strings" - 5000 Strings (with escaped and non-ASCII characters)<br>
+ * "numbers" - 5000 integers, longs and doubles
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public final class BenchmarkDocuments {
+
+	// --- PRIVATE CONSTRUCTOR ---
+
+	private BenchmarkDocuments() {
+	}
+
+	// --- DOCUMENT FACTORY ---
+
+	/**
+	 * Creates a sample document.
+	 * 
+	 * @param shape
+	 *            "small", "medium", "large", "deep", "wide", "strings" or
+	 *            "numbers"
+	 * 
+	 * @return new document
+	 */
+	public static final Tree create(String shape) {
+		switch (shape) {
+		case "small":
+			return record(new Tree(), 1);
+		case "medium":
+			return records(100);
+		case "large":
+			return records(10000);
+		case "deep":
+			return deep(200);
+		case "wide":
+			return wide(10000);
+		case "strings":
+			return strings(5000);
+		case "numbers":
+			return numbers(5000);
+		default:
+			throw new IllegalArgumentException("Unknown document shape: " + shape);
+		}
+	}
+
+	// --- SHAPES ---
+
+	public static final Tree record(Tree node, int id) {
+		node.put("id", id);
+		node.put("name", "Name " + id);
+		node.put("email", "user" + id + "@example.com");
+		node.put("active", id % 2 == 0);
+		node.put("score", id * 1.25d);
+		node.put("balance", id * 100000L);
+		node.put("nothing", (String) null);
+		Tree address = node.putMap("address");
+		address.put("city", "City " + (id % 50));
+		address.put("zip", 1000 + id % 9000);
+		address.put("street", "Street " + id);
+		node.putList("tags").add("a").add("b").add("tag" + id % 10);
+		return node;
+	}
+
+	public static final Tree records(int count) {
+		Tree root = new Tree();
+		Tree list = root.putList("records");
+		for (int i = 0; i < count; i++) {
+			record(list.addMap(), i);
+		}
+		return root;
+	}
+
+	public static final Tree deep(int depth) {
+		Tree root = new Tree();
+		Tree node = root;
+		for (int i = 0; i < depth; i++) {
+			node.put("level", i);
+			node = node.putMap("child");
+		}
+		node.put("leaf", true);
+		return root;
+	}
+
+	public static final Tree wide(int width) {
+		Tree root = new Tree();
+		for (int i = 0; i < width; i++) {
+			if (i % 3 == 0) {
+				root.put("field" + i, "value" + i);
+			} else {
+				root.put("field" + i, i);
+			}
+		}
+		return root;
+	}
+
+	public static final Tree strings(int count) {
+		Tree root = new Tree();
+		Tree list = root.putList("strings");
+		for (int i = 0; i < count; i++) {
+			list.add("Line " + i + " \"quoted\"\t\u00e1rv\u00edzt\u0171r\u0151 \u20ac\n\\ \u3042");
+		}
+		return root;
+	}
+
+	public static final Tree numbers(int count) {
+		Tree root = new Tree();
+		Tree list = root.putList("numbers");
+		for (int i = 0; i < count; i++) {
+			switch (i % 3) {
+			case 0:
+				list.add(i);
+				break;
+			case 1:
+				list.add(i * 1234567891L);
+				break;
+			default:
+				list.add(i / 7d);
+				break;
+			}
+		}
+		return root;
+	}
+
+}
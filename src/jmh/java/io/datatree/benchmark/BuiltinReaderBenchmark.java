@@ -0,0 +1,98 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.datatree.Tree;
+import io.datatree.dom.TreeReader;
+import io.datatree.dom.TreeReaderRegistry;
+import io.datatree.dom.TreeWriter;
+import io.datatree.dom.TreeWriterRegistry;
+
+/**
+ * Throughput of the built-in readers ("json" and "java"), with String and
+ * byte array sources. The sources are created by the writer of the same
+ * format. The optional adapters on the classpath can be measured with the
+ * same documents, eg:<br>
+ * <br>
+ * gradlew jmh -PjmhArgs="BuiltinReaderBenchmark -p format=json,smile -prof gc"
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuiltinReaderBenchmark {
+
+	// --- PARAMETERS ---
+
+	@Param({ "json", "java" })
+	public String format;
+
+	@Param({ "small", "medium", "large", "deep", "wide", "strings", "numbers" })
+	public String shape;
+
+	// --- SOURCES ---
+
+	protected TreeReader reader;
+	protected String text;
+	protected byte[] bytes;
+
+	@Setup
+	public void setup() {
+		reader = TreeReaderRegistry.getReader(format);
+		TreeWriter writer = TreeWriterRegistry.getWriter(format);
+		Object value = BenchmarkDocuments.create(shape).asObject();
+		text = writer.toString(value, null, false, false);
+		bytes = writer.toBinary(value, null, false);
+	}
+
+	// --- BENCHMARKS ---
+
+	@Benchmark
+	public Object parseString() throws Exception {
+		return reader.parse(text);
+	}
+
+	@Benchmark
+	public Object parseBytes() throws Exception {
+		return reader.parse(bytes);
+	}
+
+	@Benchmark
+	public Tree parseTree() throws Exception {
+		return new Tree(bytes, format);
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.datatree.dom.Cache;
+
+/**
+ * Multi-threaded throughput of the read-write locked Cache. The capacity of
+ * the cache is 1024 entries; the "distinct" parameter is the number of
+ * different keys (512 keys always fit into the cache, 4096 keys cause
+ * continuous evictions). The "get" and "put" benchmarks run with 4 threads
+ * (use the "-t" option to change it), the "mixed" group runs 3 readers and 1
+ * writer at the same time.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+	// --- PARAMETERS ---
+
+	@Param({ "512", "4096" })
+	public int distinct;
+
+	// --- CACHE AND KEYS ---
+
+	protected Cache<Integer, Integer> cache;
+	protected Integer[] keys;
+	protected int mask;
+
+	@Setup
+	public void setup() {
+		if (Integer.bitCount(distinct) != 1) {
+			throw new IllegalArgumentException("Number of distinct keys must be a power of two: " + distinct);
+		}
+		mask = distinct - 1;
+		keys = new Integer[distinct];
+		cache = new Cache<>(1024);
+		for (int i = 0; i < distinct; i++) {
+			keys[i] = i * 17;
+			cache.put(keys[i], i);
+		}
+	}
+
+	// --- READ OR WRITE ONLY ---
+
+	@Benchmark
+	@Threads(4)
+	public Integer get(ThreadPosition position) {
+		return cache.get(keys[position.next(mask)]);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void put(ThreadPosition position) {
+		int index = position.next(mask);
+		cache.put(keys[index], index);
+	}
+
+	// --- 3 READERS AND 1 WRITER ---
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public Integer mixedGet(ThreadPosition position) {
+		return cache.get(keys[position.next(mask)]);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public void mixedPut(ThreadPosition position) {
+		int index = position.next(mask);
+		cache.put(keys[index], index);
+	}
+
+}
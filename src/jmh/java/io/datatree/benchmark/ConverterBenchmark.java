@@ -0,0 +1,135 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.datatree.dom.Config;
+import io.datatree.dom.converters.DataConverterRegistry;
+
+/**
+ * Multi-threaded throughput of the DataConverterRegistry. The date
+ * conversions use the shared (read-write locked) caches of the
+ * AbstractConverterSet. The "distinct" parameter is the number of different
+ * sample values; 16 values are always in the cache (high hit ratio), 65536
+ * values are much more than the default cache size (1024), so almost every
+ * conversion is a cache miss (low hit ratio). The default number of threads is
+ * 4; contention can be measured with different thread counts, eg:<br>
+ * <br>
+ * gradlew jmh -PjmhArgs="ConverterBenchmark -t 1"<br>
+ * gradlew jmh -PjmhArgs="ConverterBenchmark -t max"
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConverterBenchmark {
+
+	// --- PARAMETERS ---
+
+	@Param({ "16", "65536" })
+	public int distinct;
+
+	// --- SAMPLES ---
+
+	protected int mask;
+
+	protected String[] numberStrings;
+	protected Integer[] integers;
+	protected Long[] millis;
+	protected Date[] dates;
+	protected String[] timestamps;
+
+	@Setup
+	public void setup() {
+		if (Integer.bitCount(distinct) != 1) {
+			throw new IllegalArgumentException("Number of distinct values must be a power of two: " + distinct);
+		}
+		mask = distinct - 1;
+		numberStrings = new String[distinct];
+		integers = new Integer[distinct];
+		millis = new Long[distinct];
+		dates = new Date[distinct];
+		timestamps = new String[distinct];
+		long start = 1500000000000L;
+		for (int i = 0; i < distinct; i++) {
+			numberStrings[i] = Integer.toString(i * 31);
+			integers[i] = i * 31;
+			millis[i] = start + i * 1001L;
+			dates[i] = new Date(millis[i]);
+			synchronized (Config.TIMESTAMP_FORMATTER) {
+				timestamps[i] = Config.TIMESTAMP_FORMATTER.format(dates[i]);
+			}
+		}
+	}
+
+	// --- NUMBER CONVERSIONS ---
+
+	@Benchmark
+	public Integer stringToInteger(ThreadPosition position) {
+		return DataConverterRegistry.convert(Integer.class, numberStrings[position.next(mask)]);
+	}
+
+	@Benchmark
+	public String integerToString(ThreadPosition position) {
+		return DataConverterRegistry.convert(String.class, integers[position.next(mask)]);
+	}
+
+	@Benchmark
+	public BigDecimal stringToBigDecimal(ThreadPosition position) {
+		return DataConverterRegistry.convert(BigDecimal.class, numberStrings[position.next(mask)]);
+	}
+
+	// --- DATE CONVERSIONS (CACHED) ---
+
+	@Benchmark
+	public Date longToDate(ThreadPosition position) {
+		return DataConverterRegistry.convert(Date.class, millis[position.next(mask)]);
+	}
+
+	@Benchmark
+	public Date stringToDate(ThreadPosition position) {
+		return DataConverterRegistry.convert(Date.class, timestamps[position.next(mask)]);
+	}
+
+	@Benchmark
+	public String dateToString(ThreadPosition position) {
+		return DataConverterRegistry.convert(String.class, dates[position.next(mask)]);
+	}
+
+}
@@ -0,0 +1,49 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread position in the sample arrays of the multi-threaded benchmarks
+ * (each thread walks through the samples from a different offset).
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@State(Scope.Thread)
+public class ThreadPosition {
+
+	// --- POSITION ---
+
+	protected int position = (int) (Thread.currentThread().getId() * 7919);
+
+	/**
+	 * Returns the next index.
+	 * 
+	 * @param mask
+	 *            length of the sample array minus one (length must be a power
+	 *            of two)
+	 * 
+	 * @return next index
+	 */
+	public final int next(int mask) {
+		return position++ & mask;
+	}
+
+}
@@ -0,0 +1,210 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.benchmark;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.datatree.Tree;
+
+/**
+ * Average execution time of the navigation and mutation methods of the Tree
+ * API (get, put, putMap, putList, iteration, stream, find, sort, clone,
+ * equals, hashCode, copyFrom). The "size" parameter is the number of records
+ * in the List (and the number of fields in the "wide" Map). Sample
+ * command:<br>
+ * <br>
+ * gradlew jmh -PjmhArgs="TreeApiBenchmark.get -p size=1000 -prof gc"
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeApiBenchmark {
+
+	// --- PARAMETERS ---
+
+	@Param({ "10", "1000", "10000" })
+	public int size;
+
+	// --- DOCUMENTS ---
+
+	protected Tree document;
+	protected Tree records;
+	protected Tree copy;
+	protected Tree wide;
+	protected Tree deep;
+	protected Tree mutable;
+
+	// --- PATHS ---
+
+	protected String deepPath;
+	protected String indexedPath;
+	protected String wideKey;
+	protected String lastName;
+
+	// --- COMPARATOR ---
+
+	protected final Comparator<Tree> byNameDesc = (t1, t2) -> {
+		return t2.get("name", "").compareTo(t1.get("name", ""));
+	};
+
+	@Setup
+	public void setup() {
+		document = BenchmarkDocuments.records(size);
+		document.put("title", "Benchmark");
+		records = document.get("records");
+		copy = document.clone();
+		wide = BenchmarkDocuments.wide(size);
+		deep = BenchmarkDocuments.deep(20);
+		mutable = new Tree();
+
+		StringBuilder path = new StringBuilder();
+		for (int i = 0; i < 19; i++) {
+			path.append("child.");
+		}
+		deepPath = path.append("level").toString();
+		indexedPath = "records[" + (size / 2) + "].address.city";
+		wideKey = "field" + (size / 2 + 1);
+		lastName = "Name " + (size - 1);
+	}
+
+	// --- GET ---
+
+	@Benchmark
+	public String getShallow() {
+		return document.get("title", "");
+	}
+
+	@Benchmark
+	public int getDeep() {
+		return deep.get(deepPath, -1);
+	}
+
+	@Benchmark
+	public String getIndexed() {
+		return document.get(indexedPath, "");
+	}
+
+	@Benchmark
+	public int getWide() {
+		return wide.get(wideKey, -1);
+	}
+
+	@Benchmark
+	public Tree getByPosition() {
+		return records.get(size / 2);
+	}
+
+	// --- PUT ---
+
+	@Benchmark
+	public Tree put() {
+		return mutable.put("value", size);
+	}
+
+	@Benchmark
+	public Tree putMapAndList() {
+		Tree root = new Tree();
+		root.putMap("map").put("a", 1).put("b", "c");
+		root.putList("list").add(1).add("2").add(true);
+		return root;
+	}
+
+	@Benchmark
+	public Tree buildRecord() {
+		return BenchmarkDocuments.record(new Tree(), size);
+	}
+
+	// --- ITERATION ---
+
+	@Benchmark
+	public int iterate() {
+		int sum = 0;
+		for (Tree child : records) {
+			sum += child.get("id", 0);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long stream() {
+		return records.stream().filter(child -> child.get("active", false)).count();
+	}
+
+	@Benchmark
+	public Tree find() {
+		return records.find(child -> lastName.equals(child.get("name", "")));
+	}
+
+	// --- SORT ---
+
+	/**
+	 * Sorts a clone of the records (the result contains the time of the
+	 * cloning; compare it with the {@link #cloneRecords()} benchmark).
+	 * 
+	 * @return sorted copy
+	 */
+	@Benchmark
+	public Tree sort() {
+		return records.clone().sort(byNameDesc);
+	}
+
+	// --- CLONE ---
+
+	@Benchmark
+	public Tree cloneRecords() {
+		return records.clone();
+	}
+
+	// --- EQUALS AND HASHCODE ---
+
+	@Benchmark
+	public boolean equalsDocument() {
+		return document.equals(copy);
+	}
+
+	@Benchmark
+	public int hashCodeDocument() {
+		return document.hashCode();
+	}
+
+	// --- COPY SUB-NODES ---
+
+	@Benchmark
+	public Tree copyFrom() {
+		return new Tree().copyFrom(wide);
+	}
+
+}
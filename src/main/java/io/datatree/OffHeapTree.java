@@ -0,0 +1,160 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import io.datatree.dom.BufferSegment;
+import io.datatree.dom.builtin.IndexedBuiltin;
+
+/**
+ * Read-only Tree, stored outside of the Java heap (in a direct or
+ * memory-mapped ByteBuffer, in "datatree indexed" format). The Tree and its
+ * child nodes are lightweight cursors over the off-heap buffer; the values are
+ * decoded on demand, so the long-lived data does not increase the GC pause
+ * times. The read API (get, asString, iteration, toString, etc.) is the same
+ * as the Tree's. The OffHeapTree must be closed after use; closing the Tree
+ * releases the off-heap memory immediately, and any later access to the Tree
+ * (or to its children) throws an IllegalStateException. Sample code:<br>
+ * <br>
+ * try (OffHeapTree cache = OffHeapTree.allocate(tree)) {<br>
+ * String value = cache.get("a.b[3]", "defaultValue");<br>
+ * }<br>
+ * <br>
+ * Memory-mapped file:<br>
+ * <br>
+ * tree.writeTo(file, "indexed", true);<br>
+ * OffHeapTree cache = OffHeapTree.map(file);
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class OffHeapTree extends Tree implements AutoCloseable {
+
+	// --- SERIAL VERSION UID ---
+
+	private static final long serialVersionUID = -2516447935812203476L;
+
+	// --- OFF-HEAP STORAGE ---
+
+	protected final transient BufferSegment segment;
+
+	// --- CONSTRUCTORS ---
+
+	/**
+	 * Creates a Tree over the specified segment (the segment must contain a
+	 * document in "datatree indexed" format).
+	 * 
+	 * @param segment
+	 *            direct or memory-mapped segment
+	 */
+	public OffHeapTree(BufferSegment segment) {
+		super(IndexedBuiltin.view(segment), null);
+		this.segment = segment;
+		moveMeta();
+	}
+
+	// --- FACTORY METHODS ---
+
+	/**
+	 * Copies the specified Tree (with its meta) into a newly allocated direct
+	 * ByteBuffer. The Tree is serialized directly into the direct buffer
+	 * (without creating a heap copy of the serialized document).
+	 * 
+	 * @param source
+	 *            source Tree
+	 * 
+	 * @return read-only, off-heap Tree
+	 */
+	public static OffHeapTree allocate(Tree source) {
+		Tree meta = source.isRoot() ? source.getMeta(false) : null;
+		ByteBuffer buffer = IndexedBuiltin.allocate(source.asObject(), meta == null ? null : meta.asObject(), true);
+		return new OffHeapTree(new BufferSegment(buffer, true));
+	}
+
+	/**
+	 * Maps the specified file (in "datatree indexed" format) into memory. The
+	 * file may be larger than the available heap; the operating system loads
+	 * the pages on demand.
+	 * 
+	 * @param file
+	 *            source file (created by
+	 *            <code>tree.writeTo(file, "indexed", true)</code>)
+	 * 
+	 * @return read-only, memory-mapped Tree
+	 * 
+	 * @throws IOException
+	 *             unable to map the file
+	 */
+	public static OffHeapTree map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			return new OffHeapTree(new BufferSegment(buffer, true));
+		}
+	}
+
+	// --- LIFECYCLE ---
+
+	/**
+	 * Returns {@code true} if the Tree is closed (and its off-heap memory is
+	 * released).
+	 * 
+	 * @return {@code true} if the Tree is closed
+	 */
+	public boolean isClosed() {
+		return segment.isClosed();
+	}
+
+	/**
+	 * Returns the size of the off-heap storage in bytes.
+	 * 
+	 * @return number of bytes
+	 */
+	public int getStorageSize() {
+		return segment.size();
+	}
+
+	/**
+	 * Releases the off-heap memory. If other threads are reading the Tree, the
+	 * memory is released when their running read operations are finished
+	 * (their next read operations throw an IllegalStateException).
+	 */
+	@Override
+	public void close() {
+		segment.close();
+	}
+
+	// --- SERIALIZATION ---
+
+	/**
+	 * Creates a new OffHeapTree after deserialization (the off-heap storage
+	 * is not serializable; the deserialized content is copied into a new
+	 * direct buffer, which must be closed after use).
+	 * 
+	 * @return deserialized, off-heap Tree
+	 */
+	private Object readResolve() {
+		return allocate(this);
+	}
+
+}
@@ -35,6 +35,8 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -45,22 +47,38 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import io.datatree.dom.AsyncFiles;
 import io.datatree.dom.BASE64;
 import io.datatree.dom.Config;
 import io.datatree.dom.DeepCloner;
+import io.datatree.dom.DeepCloner.CloneFailure;
+import io.datatree.dom.FlightEvents;
+import io.datatree.dom.FormatDetectorRegistry;
+import io.datatree.dom.FragmentCache;
+import io.datatree.dom.SharedContainers;
+import io.datatree.dom.TreeMetricsRegistry;
 import io.datatree.dom.TreeReaderRegistry;
+import io.datatree.dom.TreeWriter;
 import io.datatree.dom.TreeWriterRegistry;
-import io.datatree.dom.builtin.JavaBuiltin;
+import io.datatree.dom.builtin.BinaryBuiltin;
+import io.datatree.dom.builtin.IndexedBuiltin;
 import io.datatree.dom.builtin.JsonBuiltin;
 import io.datatree.dom.converters.DataConverterRegistry;
 
@@ -109,7 +127,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 
 	// --- SERIAL VERSION UID ---
 
-	private static final long serialVersionUID = 7044752881424364875L;
+	private static final long serialVersionUID = 7044752881424364876L;
 
 	// --- VARIABLES OF THE CURRENT NODE ---
 
@@ -134,6 +152,45 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	private transient Object value;
 
+	/**
+	 * Registry of the containers shared between copy-on-write clones (the root
+	 * node of a lazily cloned document has this registry, the other nodes
+	 * cache the registry of their root node, otherwise it's null).
+	 */
+	private transient SharedContainers shared;
+
+	/**
+	 * Cache of the serialized (JSON) containers (only the root node has this
+	 * cache, if it is enabled, otherwise it's null).
+	 */
+	private transient FragmentCache fragments;
+
+	/**
+	 * Secondary indexes of the document (only the root node has this set, if
+	 * any index is created, otherwise it's null).
+	 */
+	private transient Set<TreeIndex> indexes;
+
+	/**
+	 * Number of copy-on-write copies (see
+	 * {@link SharedContainers#getVersion()}) when the value of this node was
+	 * resolved.
+	 */
+	private transient long version;
+
+	/**
+	 * Number of created registries (see
+	 * {@link SharedContainers#getRegistries()}) when the registry of the root
+	 * node was looked up.
+	 */
+	private transient int registries;
+
+	/**
+	 * Is any fragment cache or index created (in any document)? If not, the
+	 * modifications do not look for them.
+	 */
+	private static volatile boolean cachesCreated;
+
 	// --- PUBLIC CONSTRUCTORS ---
 
 	/**
@@ -306,8 +363,10 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	// --- PUBLIC CONSTRUCTORS / BYTE CHANNEL SOURCE ---
 
 	/**
-	 * Loads a hierarchial structure from the specified ReadableByteChannel, in
-	 * JSON format. Closes the source Channel. Sample: <br>
+	 * Loads a hierarchial structure from the specified ReadableByteChannel.
+	 * The format is recognized by the leading bytes of the source (see
+	 * {@link FormatDetectorRegistry}), unknown formats are parsed as JSON.
+	 * Closes the source Channel. Sample: <br>
 	 * <br>
 	 * Tree node = new Tree(source);<br>
 	 * 
@@ -382,8 +441,10 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	// --- PUBLIC CONSTRUCTORS / STREAM SOURCE ---
 
 	/**
-	 * Loads a hierarchial structure from the specified InputStream, in JSON
-	 * format. Closes the source Stream. Sample: <br>
+	 * Loads a hierarchial structure from the specified InputStream. The format
+	 * is recognized by the leading bytes of the source (see
+	 * {@link FormatDetectorRegistry}), unknown formats are parsed as JSON.
+	 * Closes the source Stream. Sample: <br>
 	 * <br>
 	 * Tree node = new Tree(source);<br>
 	 * 
@@ -460,16 +521,20 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	// --- PUBLIC CONSTRUCTORS / BINARY ARRAY SOURCE ---
 
 	/**
-	 * Creates a hierarchial structure by a JSON byte array. Sample:<br>
+	 * Creates a hierarchial structure by a byte array. The format (eg. BSON,
+	 * CBOR or Smile) is recognized by the leading bytes of the source (see
+	 * {@link FormatDetectorRegistry}), unknown formats are parsed as JSON.
+	 * Java serialization is detected only if the "datatree.detect.java"
+	 * System Property is "true". Sample:<br>
 	 * <br>
-	 * byte[] bytes = // JSON bytes<br>
+	 * byte[] bytes = // JSON, BSON, CBOR, etc. bytes<br>
 	 * Tree node = new Tree(bytes);<br>
 	 * 
 	 * @param source
-	 *            JSON source
+	 *            JSON (or binary) source
 	 * 
 	 * @throws Exception
-	 *             any JSON format exception
+	 *             any data format exception
 	 */
 	public Tree(byte[] source) throws Exception {
 		initFromBytes(source, null);
@@ -496,11 +561,38 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		initFromBytes(source, format);
 	}
 
+	/**
+	 * Creates a read-only view over a ByteBuffer in "datatree indexed" format
+	 * (see IndexedBuiltin). The values are decoded on demand, so the
+	 * <code>node.get("a.b[3]")</code> call reads only the requested value.
+	 * Sample code:<br>
+	 * <br>
+	 * byte[] bytes = node.toBinary("indexed");<br>
+	 * Tree view = new Tree(ByteBuffer.wrap(bytes));<br>
+	 * String value = view.get("a.b[3]", "");<br>
+	 * 
+	 * @param source
+	 *            heap, direct or memory-mapped buffer in "datatree indexed"
+	 *            format
+	 */
+	public Tree(ByteBuffer source) {
+		value = IndexedBuiltin.view(source);
+		meta = IndexedBuiltin.readMeta(value);
+	}
+
 	protected void initFromString(String source, String format) throws Exception {
 		if (source == null || source.isEmpty()) {
 			createEmptyNode();
 		} else {
-			value = TreeReaderRegistry.getReader(format).parse(source);
+			Object event = FlightEvents.begin(FlightEvents.PARSE);
+			if (TreeMetricsRegistry.isEnabled()) {
+				long start = System.nanoTime();
+				value = TreeReaderRegistry.getReader(format).parse(source);
+				TreeMetricsRegistry.parsed(format, source.length(), start, value);
+			} else {
+				value = TreeReaderRegistry.getReader(format).parse(source);
+			}
+			FlightEvents.commit(event, getFormatName(format), source.length());
 			moveMeta();
 		}
 	}
@@ -509,7 +601,18 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		if (source == null || source.length == 0) {
 			createEmptyNode();
 		} else {
-			value = TreeReaderRegistry.getReader(format).parse(source);
+			if (format == null) {
+				format = FormatDetectorRegistry.detect(source);
+			}
+			Object event = FlightEvents.begin(FlightEvents.PARSE);
+			if (TreeMetricsRegistry.isEnabled()) {
+				long start = System.nanoTime();
+				value = TreeReaderRegistry.getReader(format).parse(source);
+				TreeMetricsRegistry.parsed(format, source.length, start, value);
+			} else {
+				value = TreeReaderRegistry.getReader(format).parse(source);
+			}
+			FlightEvents.commit(event, getFormatName(format), source.length);
 			moveMeta();
 		}
 	}
@@ -522,15 +625,22 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	}
 
 	/**
-	 * Removes "_meta" entry from the node's Map.
+	 * Removes "_meta" entry from the node's Map (read-only views keep their
+	 * meta outside of the Map).
 	 */
 	@SuppressWarnings("rawtypes")
 	protected void moveMeta() {
-		if (isMap()) {
+		if (IndexedBuiltin.isView(value)) {
+			meta = IndexedBuiltin.readMeta(value);
+		} else if (isMap()) {
 			meta = ((Map) value).remove(Config.META);
 		}
 	}
 
+	protected static String getFormatName(String format) {
+		return format == null || format.isEmpty() ? TreeWriterRegistry.JSON : format;
+	}
+
 	protected static String getFormatByExtension(URL url) {
 		if (url != null) {
 			String path = url.toString();
@@ -572,6 +682,11 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		this.parent = parent;
 		this.key = key;
 		this.value = value;
+		if (parent != null) {
+			this.shared = parent.shared;
+			this.version = parent.version;
+			this.registries = parent.registries;
+		}
 	}
 
 	/**
@@ -625,6 +740,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node
 	 */
 	public Tree setName(String name) {
+		sync();
 		if (parent == null) {
 			throw new UnsupportedOperationException("Root node has no name!");
 		}
@@ -719,6 +835,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return class of value (or null)
 	 */
 	public Class<?> getType() {
+		sync();
 		return value == null ? null : value.getClass();
 	}
 
@@ -731,6 +848,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node
 	 */
 	public Tree setType(Class<?> type) {
+		sync();
 		if (value == null || value.getClass() == type) {
 			return this;
 		}
@@ -831,6 +949,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 *         node
 	 */
 	public boolean isMeta() {
+		sync();
 		if (parent != null) {
 			if (value != null && value == parent.meta) {
 				return true;
@@ -1179,7 +1298,9 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	protected Tree setObjectInternal(Object value) {
+		sync();
 		if (parent != null) {
+			parent.ensureWritable();
 			if (parent.isMap()) {
 
 				((Map) parent.value).put(key, value);
@@ -1588,6 +1709,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	protected Tree addObjectInternal(Object value) {
 		if (isList() || isSet()) {
 
+			ensureWritable();
 			Collection<Object> col = (Collection) this.value;
 			try {
 				col.add(value);
@@ -1943,6 +2065,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	protected Tree insertObjectInternal(int index, Object value) {
 		if (isList()) {
 
+			ensureWritable();
 			Collection<Object> col = (Collection) this.value;
 			try {
 				((List) this.value).add(index, value);
@@ -2460,6 +2583,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 				return parent.putObjectInternal(name, value, putIfAbsent);
 			}
 		}
+		parent.ensureWritable();
 		if (parent.isMap()) {
 
 			Map map = (Map) parent.value;
@@ -2540,7 +2664,9 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		return parent;
 	}
 
+	@SuppressWarnings("unchecked")
 	protected Tree getChild(String path, boolean setMode) {
+		sync();
 
 		// Empty path?
 		if (path == null || path.isEmpty()) {
@@ -2592,11 +2718,10 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 						}
 						return new Tree(this, index, list.get(index)).getChild(path, setMode);
 					} else {
-						List<Tree> list = asList();
-						if (index >= list.size()) {
+						if (index >= size()) {
 							return null;
 						}
-						return list.get(index).getChild(path, setMode);
+						return get(index).getChild(path, setMode);
 					}
 
 				}
@@ -2656,7 +2781,6 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		}
 
 		// Cast to Map
-		@SuppressWarnings("unchecked")
 		final Map<Object, Object> map = (Map<Object, Object>) value;
 		final Object object = map.get(path);
 		if (object == null && !map.containsKey(path)) {
@@ -2667,7 +2791,8 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 
 					// Create new child
 					final LinkedHashMap<String, Object> child = new LinkedHashMap<>();
-					map.put(path, child);
+					ensureWritable();
+					((Map<Object, Object>) value).put(path, child);
 					return new Tree(this, path, child).getChild(rest, true);
 				} else {
 
@@ -2704,6 +2829,8 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 				setObjectInternal(copy);
 				return copy;
 			}
+			ensureWritable();
+			list = (List<Object>) value;
 			while (list.size() <= index) {
 				list.add(null);
 			}
@@ -2719,6 +2846,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return value as unconverted Object
 	 */
 	public Object asObject() {
+		sync();
 		return value;
 	}
 
@@ -2735,6 +2863,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Byte (or null)
 	 */
 	public Byte asByte() {
+		sync();
 		return DataConverterRegistry.convert(Byte.class, value);
 	}
 
@@ -2751,6 +2880,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Short (or null)
 	 */
 	public Short asShort() {
+		sync();
 		return DataConverterRegistry.convert(Short.class, value);
 	}
 
@@ -2767,6 +2897,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Integer (or null)
 	 */
 	public Integer asInteger() {
+		sync();
 		return DataConverterRegistry.convert(Integer.class, value);
 	}
 
@@ -2783,6 +2914,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Long (or null)
 	 */
 	public Long asLong() {
+		sync();
 		return DataConverterRegistry.convert(Long.class, value);
 	}
 
@@ -2799,6 +2931,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Float (or null)
 	 */
 	public Float asFloat() {
+		sync();
 		return DataConverterRegistry.convert(Float.class, value);
 	}
 
@@ -2815,6 +2948,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Double (or null)
 	 */
 	public Double asDouble() {
+		sync();
 		return DataConverterRegistry.convert(Double.class, value);
 	}
 
@@ -2831,6 +2965,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Boolean (or null)
 	 */
 	public Boolean asBoolean() {
+		sync();
 		return DataConverterRegistry.convert(Boolean.class, value);
 	}
 
@@ -2846,6 +2981,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as byte array (or null)
 	 */
 	public byte[] asBytes() {
+		sync();
 		return DataConverterRegistry.convert(byte[].class, value);
 	}
 
@@ -2862,6 +2998,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as String (or null)
 	 */
 	public String asString() {
+		sync();
 		return DataConverterRegistry.convert(String.class, value);
 	}
 
@@ -2878,6 +3015,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as Date (or null)
 	 */
 	public Date asDate() {
+		sync();
 		return DataConverterRegistry.convert(Date.class, value);
 	}
 
@@ -2894,6 +3032,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as UUID (or null)
 	 */
 	public UUID asUUID() {
+		sync();
 		return DataConverterRegistry.convert(UUID.class, value);
 	}
 
@@ -2910,6 +3049,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as BigDecimal (or null)
 	 */
 	public BigDecimal asBigDecimal() {
+		sync();
 		return DataConverterRegistry.convert(BigDecimal.class, value);
 	}
 
@@ -2926,6 +3066,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as BigInteger (or null)
 	 */
 	public BigInteger asBigInteger() {
+		sync();
 		return DataConverterRegistry.convert(BigInteger.class, value);
 	}
 
@@ -2942,6 +3083,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node's value as InetAddress (or null)
 	 */
 	public InetAddress asInetAddress() {
+		sync();
 		return DataConverterRegistry.convert(InetAddress.class, value);
 	}
 
@@ -3352,19 +3494,18 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		if (parent != null && key != null) {
 			if (key instanceof Integer) {
 				int idx = (int) key;
-				if (parent.size() >= idx - 1) {
+				if (idx + 1 >= parent.size()) {
 					return null;
 				}
 				return parent.get(idx + 1);
 			}
-			boolean found = false;
-			for (Tree child : parent) {
-				if (key.equals(child.key)) {
-					found = true;
-					continue;
-				}
-				if (found) {
-					return child;
+			if (parent.value instanceof Map) {
+				boolean found = false;
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) parent.value).entrySet()) {
+					if (found) {
+						return new Tree(parent, entry.getKey(), entry.getValue());
+					}
+					found = key.equals(entry.getKey());
 				}
 			}
 		}
@@ -3386,12 +3527,14 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 				}
 				return parent.get(idx - 1);
 			}
-			Tree previous = null;
-			for (Tree child : parent) {
-				if (key.equals(child.key)) {
-					return previous;
+			if (parent.value instanceof Map) {
+				Map.Entry<?, ?> previous = null;
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) parent.value).entrySet()) {
+					if (key.equals(entry.getKey())) {
+						return previous == null ? null : new Tree(parent, previous.getKey(), previous.getValue());
+					}
+					previous = entry;
 				}
-				previous = child;
 			}
 		}
 		return null;
@@ -3418,12 +3561,84 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	@SuppressWarnings("unchecked")
 	public Tree get(int index) {
+		sync();
 		if (isList()) {
 			return new Tree(this, index, ((List<Object>) value).get(index));
 		}
+		if (value != null) {
+			if (value instanceof Map) {
+				if (index > -1) {
+					int count = 0;
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+						if (count++ == index) {
+							return new Tree(this, entry.getKey(), entry.getValue());
+						}
+					}
+				}
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			if (value instanceof Collection) {
+				if (index > -1) {
+					int count = 0;
+					for (Object child : (Collection<?>) value) {
+						if (count == index) {
+							return new Tree(this, index, child);
+						}
+						count++;
+					}
+				}
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+			if (value.getClass().isArray()) {
+				return new Tree(this, index, Array.get(value, index));
+			}
+		}
 		return asList().get(index);
 	}
 
+	// --- POSITIONAL CURSOR ---
+
+	/**
+	 * Creates a cursor over the sub-nodes of this node, positioned before the
+	 * first child. The cursor steps forward and back in O(1) time. Sample code:
+	 * <br>
+	 * <br>
+	 * TreeCursor cursor = node.cursor();<br>
+	 * for (Tree child = cursor.next(); child != null; child = cursor.next())
+	 * {<br>
+	 * System.out.println(child.getName());<br>
+	 * }
+	 * 
+	 * @return cursor over the sub-nodes
+	 */
+	public TreeCursor cursor() {
+		return new TreeCursor(this, -1);
+	}
+
+	/**
+	 * Creates a cursor over the sub-nodes of this node, positioned at the
+	 * specified child. Sample code:<br>
+	 * <br>
+	 * TreeCursor cursor = node.cursor(5);<br>
+	 * Tree sixth = cursor.current();<br>
+	 * Tree fifth = cursor.previous();
+	 * 
+	 * @param index
+	 *            zero-based index of the current child
+	 * 
+	 * @return cursor over the sub-nodes
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range (index &lt; 0 || index &gt;=
+	 *             size())
+	 */
+	public TreeCursor cursor(int index) {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		return new TreeCursor(this, index);
+	}
+
 	// --- CLEAR VALUE(S) ---
 
 	/**
@@ -3456,13 +3671,16 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this (empty) node
 	 */
 	public Tree clear() {
+		sync();
 		if (value != null) {
 			if (isMap()) {
 
+				ensureWritable();
 				((Map<?, ?>) value).clear();
 
 			} else if (value instanceof Collection) {
 
+				ensureWritable();
 				((Collection<?>) value).clear();
 
 			} else if (isArray()) {
@@ -3582,7 +3800,11 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 			return false;
 		}
 		boolean removed = parent.remove(this);
+		shared = parent.getRoot().shared;
 		parent = null;
+		if (shared != null && shared.isSharing()) {
+			shared.addHolder(this);
+		}
 		return removed;
 	}
 
@@ -3596,7 +3818,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return the removed node
 	 */
 	public Tree remove(int index) {
-		Tree child = asList().get(index);
+		Tree child = get(index);
 		if (child.remove()) {
 			return child;
 		}
@@ -3646,6 +3868,8 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	public boolean equals(Object obj) {
 		if (obj != null && obj instanceof Tree) {
 			Tree node = (Tree) obj;
+			sync();
+			node.sync();
 			return JsonBuiltin.serialize(value, meta).equals(JsonBuiltin.serialize(node.value, node.meta));
 		}
 		return false;
@@ -3658,6 +3882,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	@Override
 	public int hashCode() {
+		sync();
 		return JsonBuiltin.serialize(value, meta).hashCode();
 	}
 
@@ -3678,6 +3903,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	@Override
 	public Iterator<Tree> iterator() {
+		sync();
 		if (value != null) {
 
 			// Map iterator
@@ -3704,8 +3930,12 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		final Tree self = this;
 		return new Iterator<Tree>() {
 
+			private final Object container = value;
+
 			@SuppressWarnings("rawtypes")
-			private final Iterator children = ((Map) value).entrySet().iterator();
+			private final Iterator children = ((Map) container).entrySet().iterator();
+
+			private Object lastKey;
 
 			@Override
 			public final boolean hasNext() {
@@ -3716,12 +3946,23 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 			@SuppressWarnings("rawtypes")
 			public final Tree next() {
 				Map.Entry entry = (Map.Entry) children.next();
-				return new Tree(self, entry.getKey(), entry.getValue());
+				lastKey = entry.getKey();
+				return new Tree(self, lastKey, entry.getValue());
 			}
 
 			@Override
+			@SuppressWarnings("rawtypes")
 			public final void remove() {
-				children.remove();
+				if (self.value == container) {
+					self.ensureWritable();
+				}
+				if (self.value == container) {
+					children.remove();
+				} else {
+
+					// Container replaced by a (copy-on-write) copy
+					((Map) self.value).remove(lastKey);
+				}
 			}
 		};
 	}
@@ -3730,11 +3971,15 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		final Tree self = this;
 		return new Iterator<Tree>() {
 
+			private final Object container = value;
+
 			@SuppressWarnings("rawtypes")
-			private final Iterator children = ((Collection) value).iterator();
+			private final Iterator children = ((Collection) container).iterator();
 
 			private int counter = 0;
 
+			private Object last;
+
 			@Override
 			public final boolean hasNext() {
 				return children.hasNext();
@@ -3742,15 +3987,29 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 
 			@Override
 			public final Tree next() {
-				return new Tree(self, counter++, children.next());
+				last = children.next();
+				return new Tree(self, counter++, last);
 			}
 
 			@Override
+			@SuppressWarnings("rawtypes")
 			public final void remove() {
-				children.remove();
+				if (self.value == container) {
+					self.ensureWritable();
+				}
+				if (self.value == container) {
+					children.remove();
+				} else if (self.value instanceof List) {
+
+					// Container replaced by a (copy-on-write) copy
+					((List) self.value).remove(counter - 1);
+				} else {
+					((Collection) self.value).remove(last);
+				}
 				counter--;
 			}
 		};
+
 	}
 
 	protected Iterator<Tree> arrayIterator() {
@@ -3981,7 +4240,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	@Override
 	public String toString() {
-		return TreeWriterRegistry.getWriter(null).toString(value, meta, true, true);
+		return toString(null, true, true);
 	}
 
 	/**
@@ -4004,7 +4263,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in JSON format
 	 */
 	public String toString(boolean pretty) {
-		return TreeWriterRegistry.getWriter(null).toString(value, meta, pretty, false);
+		return toString(null, pretty, false);
 	}
 
 	/**
@@ -4021,7 +4280,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in custom text format
 	 */
 	public String toString(String format) {
-		return TreeWriterRegistry.getWriter(format).toString(value, meta, false, false);
+		return toString(format, false, false);
 	}
 
 	/**
@@ -4040,7 +4299,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in custom text format
 	 */
 	public String toString(String format, boolean pretty) {
-		return TreeWriterRegistry.getWriter(format).toString(value, meta, pretty, false);
+		return toString(format, pretty, false);
 	}
 
 	/**
@@ -4061,7 +4320,76 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in custom text format
 	 */
 	public String toString(String format, boolean pretty, boolean insertMeta) {
-		return TreeWriterRegistry.getWriter(format).toString(value, meta, pretty, insertMeta);
+		sync();
+		TreeWriter writer = TreeWriterRegistry.getWriter(format);
+		Object event = FlightEvents.begin(FlightEvents.WRITE);
+		String txt;
+		if (TreeMetricsRegistry.isEnabled()) {
+			long start = System.nanoTime();
+			txt = serialize(writer, pretty, insertMeta);
+			TreeMetricsRegistry.written(format, txt.length(), start, value);
+		} else {
+			txt = serialize(writer, pretty, insertMeta);
+		}
+		FlightEvents.commit(event, getFormatName(format), txt.length());
+		return txt;
+	}
+
+	protected String serialize(TreeWriter writer, boolean pretty, boolean insertMeta) {
+		if (!pretty && writer instanceof JsonBuiltin) {
+			FragmentCache cache = getRoot().fragments;
+			if (cache != null) {
+				return JsonBuiltin.serialize(value, insertMeta ? meta : null, cache);
+			}
+		}
+		return writer.toString(value, meta, pretty, insertMeta);
+	}
+
+	// --- FRAGMENT CACHE ---
+
+	/**
+	 * Enables or disables the caching of the serialized sub-structures of
+	 * this document. If the cache is enabled, the compact JSON output of the
+	 * unchanged containers (Maps, Lists and Sets) is stored, and copied into
+	 * the output of the next serialization, so re-serializing a large document
+	 * after modifying a few values only processes the modified parts. The
+	 * cache is used only by the built-in JSON writer (non-pretty output). The
+	 * document must be modified through the Tree API (direct modifications of
+	 * the raw Maps and Lists can not be detected). Sample code:<br>
+	 * <br>
+	 * Tree document = new Tree(largeJson).setFragmentCache(true);<br>
+	 * String json1 = document.toString(false);<br>
+	 * document.put("path.to.value", 5);<br>
+	 * String json2 = document.toString(false);
+	 * 
+	 * @param enabled
+	 *            {@code true} = enable cache, {@code false} = disable cache
+	 * 
+	 * @return this node
+	 */
+	public Tree setFragmentCache(boolean enabled) {
+		Tree root = getRoot();
+		synchronized (root) {
+			if (enabled) {
+				if (root.fragments == null) {
+					root.fragments = new FragmentCache();
+					cachesCreated = true;
+				}
+			} else {
+				root.fragments = null;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Returns {@code true} if the cache of the serialized sub-structures is
+	 * enabled (see {@link #setFragmentCache(boolean)}).
+	 * 
+	 * @return {@code true} if the fragment cache is enabled
+	 */
+	public boolean isFragmentCacheEnabled() {
+		return getRoot().fragments != null;
 	}
 
 	// --- CONVERT TO BINARY ARRAY ---
@@ -4077,7 +4405,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in binary format
 	 */
 	public byte[] toBinary() {
-		return TreeWriterRegistry.getWriter(null).toBinary(value, meta, false);
+		return toBinary(null, false);
 	}
 
 	/**
@@ -4093,7 +4421,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in custom binary format
 	 */
 	public byte[] toBinary(String format) {
-		return TreeWriterRegistry.getWriter(format).toBinary(value, meta, false);
+		return toBinary(format, false);
 	}
 
 	/**
@@ -4111,7 +4439,19 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this node in custom binary format
 	 */
 	public byte[] toBinary(String format, boolean insertMeta) {
-		return TreeWriterRegistry.getWriter(format).toBinary(value, meta, insertMeta);
+		sync();
+		TreeWriter writer = TreeWriterRegistry.getWriter(format);
+		Object event = FlightEvents.begin(FlightEvents.WRITE);
+		byte[] bytes;
+		if (TreeMetricsRegistry.isEnabled()) {
+			long start = System.nanoTime();
+			bytes = writer.toBinary(value, meta, insertMeta);
+			TreeMetricsRegistry.written(format, bytes.length, start, value);
+		} else {
+			bytes = writer.toBinary(value, meta, insertMeta);
+		}
+		FlightEvents.commit(event, getFormatName(format), bytes.length);
+		return bytes;
 	}
 
 	// --- WRITE TO FILE ---
@@ -4315,6 +4655,159 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		}
 	}
 
+	// --- ASYNCHRONOUS FILE I/O ---
+
+	/**
+	 * Loads a hierarchial structure from the specified file, without blocking
+	 * the caller thread. The method tries to guess the file format based on
+	 * its extension (or by the leading bytes of the file). The file is read by
+	 * an AsynchronousFileChannel, and parsed (and the format is resolved) in
+	 * the common ForkJoinPool. Sample code:<br>
+	 * <br>
+	 * Tree.readAsync(Paths.get("/path/to/file.json")).thenAccept((node)
+	 * -&gt; {<br>
+	 * String value = node.get("path.to.value", "");<br>
+	 * });
+	 * 
+	 * @param source
+	 *            path of the source file
+	 * 
+	 * @return future of the loaded structure
+	 */
+	public static CompletableFuture<Tree> readAsync(Path source) {
+		String name = String.valueOf(source.getFileName());
+		return AsyncFiles.read(source).thenApplyAsync((bytes) -> {
+			return parse(bytes, getFormatByExtension(name));
+		}, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Loads a hierarchial structure from the specified file, in the specified
+	 * format, without blocking the caller thread. The file is read by an
+	 * AsynchronousFileChannel, and parsed in the common ForkJoinPool.
+	 * 
+	 * @param source
+	 *            path of the source file
+	 * @param format
+	 *            name of the format (eg. "json", "cbor", etc., or
+	 *            {@code null} to recognize the format by the leading bytes)
+	 * 
+	 * @return future of the loaded structure
+	 */
+	public static CompletableFuture<Tree> readAsync(Path source, String format) {
+		return readAsync(source, format, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Loads a hierarchial structure from the specified file, in the specified
+	 * format, without blocking the caller thread. The file is read by an
+	 * AsynchronousFileChannel, and parsed by the specified Executor.
+	 * 
+	 * @param source
+	 *            path of the source file
+	 * @param format
+	 *            name of the format (eg. "json", "cbor", etc., or
+	 *            {@code null} to recognize the format by the leading bytes)
+	 * @param executor
+	 *            Executor of the parsing
+	 * 
+	 * @return future of the loaded structure
+	 */
+	public static CompletableFuture<Tree> readAsync(Path source, String format, Executor executor) {
+		return AsyncFiles.read(source).thenApplyAsync((bytes) -> {
+			return parse(bytes, format);
+		}, executor);
+	}
+
+	private static final Tree parse(byte[] bytes, String format) {
+		try {
+			return new Tree(bytes, format);
+		} catch (Exception cause) {
+			throw new CompletionException(cause);
+		}
+	}
+
+	/**
+	 * Writes the contents of the Tree (without meta) to the specified file,
+	 * without blocking the caller thread. The method tries to guess the file
+	 * format based on its extension. If it fails to figure out the format, it
+	 * will use the JSON format. The method writes a copy-on-write snapshot of
+	 * the Tree (taken by the caller thread), which is serialized in the common
+	 * ForkJoinPool, so the later modifications (made through the Tree API) are
+	 * not written. Sample code:<br>
+	 * <br>
+	 * node.writeAsync(Paths.get("/path/to/file.json")).thenRun(() -&gt; {<br>
+	 * System.out.println("Saved.");<br>
+	 * });
+	 * 
+	 * @param destination
+	 *            path of the destination file
+	 * 
+	 * @return future (completed when the file is written)
+	 */
+	public CompletableFuture<Void> writeAsync(Path destination) {
+		String name = String.valueOf(destination.getFileName());
+		return writeAsync(lazyClone(false), destination, () -> {
+			return getFormatByExtension(name);
+		}, false, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Writes the contents of the Tree (without meta) to the specified file in
+	 * the specified format, without blocking the caller thread. The snapshot of
+	 * the Tree (taken by the caller thread) is serialized in the common
+	 * ForkJoinPool.
+	 * 
+	 * @param destination
+	 *            path of the destination file
+	 * @param format
+	 *            name of the format (eg. "json", "yaml", "cbor", etc.)
+	 * 
+	 * @return future (completed when the file is written)
+	 */
+	public CompletableFuture<Void> writeAsync(Path destination, String format) {
+		return writeAsync(destination, format, false, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Writes the contents of the Tree to the specified file in the specified
+	 * format, without blocking the caller thread. The copy-on-write snapshot of
+	 * the Tree (taken by the caller thread) is serialized by the specified
+	 * Executor, and written by an AsynchronousFileChannel.
+	 * 
+	 * @param destination
+	 *            path of the destination file
+	 * @param format
+	 *            name of the format (eg. "json", "yaml", "cbor", etc.)
+	 * @param insertMeta
+	 *            serialize the meta structure or not
+	 * @param executor
+	 *            Executor of the serialization
+	 * 
+	 * @return future (completed when the file is written)
+	 */
+	public CompletableFuture<Void> writeAsync(Path destination, String format, boolean insertMeta,
+			Executor executor) {
+		return writeAsync(lazyClone(insertMeta), destination, () -> {
+			return format;
+		}, insertMeta, executor);
+	}
+
+	private static final CompletableFuture<Void> writeAsync(Tree snapshot, Path destination, Supplier<String> format,
+			boolean insertMeta, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return snapshot.toBinary(format.get(), insertMeta);
+			} finally {
+
+				// The source Tree can be modified without copying again
+				snapshot.releaseShared();
+			}
+		}, executor).thenCompose((bytes) -> {
+			return AsyncFiles.write(destination, bytes);
+		});
+	}
+
 	// --- SORT SUB-NODES ---
 
 	/**
@@ -4336,46 +4829,130 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this (sorted) node
 	 */
 	public Tree sort() {
+		return sort(false);
+	}
+
+	/**
+	 * Sorts the sub-nodes of this node, using multiple threads for large Lists
+	 * (see {@link Arrays#parallelSort(Object[], Comparator)}). The type of
+	 * sorting (numeric or alphanumeric) is autodetected by the type of the
+	 * children. Sample code:<br>
+	 * <br>
+	 * node.get("largeList").parallelSort();
+	 * 
+	 * @return this (sorted) node
+	 */
+	public Tree parallelSort() {
+		return sort(true);
+	}
+
+	protected Tree sort(boolean parallel) {
 
 		// Check number of sortable values
-		if (size() < 2) {
+		int size = size();
+		if (size < 2) {
 			return this;
 		}
 
-		// Lists, arrays sorted as a numeric / alphanumeric array
+		// Extract the sort keys (once per child)
+		SortEntry[] entries = new SortEntry[size];
+		Comparator<SortEntry> comparator;
 		if (isEnumeration()) {
 
-			// Numeric array?
+			// Lists, arrays sorted as a numeric / alphanumeric array
+			int index = 0;
 			boolean numeric = true;
+			boolean integral = false;
+			boolean floating = false;
+			boolean exact = false;
 			for (Tree child : this) {
-				if (!Number.class.isAssignableFrom(child.getType())) {
-					numeric = false;
-					break;
+				Object childValue = child.value;
+				if (numeric) {
+					if (childValue instanceof Long || childValue instanceof Integer || childValue instanceof Short
+							|| childValue instanceof Byte) {
+						integral = true;
+					} else if (childValue instanceof Double || childValue instanceof Float) {
+						floating = true;
+					} else if (childValue instanceof Number) {
+						exact = true;
+					} else {
+						numeric = false;
+					}
 				}
+				entries[index++] = new SortEntry(null, childValue);
 			}
+			if (numeric && (exact || integral && floating)) {
+
+				// Numeric sorting (BigDecimal keys, doubles for NaN and
+				// infinite values)
+				for (SortEntry entry : entries) {
+					Number number = (Number) entry.value;
+					entry.doubleKey = number.doubleValue();
+					if (!(number instanceof Double || number instanceof Float)
+							|| !Double.isNaN(entry.doubleKey) && !Double.isInfinite(entry.doubleKey)) {
+						entry.key = DataConverterRegistry.convert(BigDecimal.class, number);
+					}
+				}
+				comparator = (entry1, entry2) -> {
+					if (entry1.key == null || entry2.key == null) {
+						return Double.compare(entry1.doubleKey, entry2.doubleKey);
+					}
+					return ((BigDecimal) entry1.key).compareTo((BigDecimal) entry2.key);
+				};
+			} else if (numeric && !floating) {
+
+				// Numeric sorting (long keys)
+				for (SortEntry entry : entries) {
+					entry.longKey = ((Number) entry.value).longValue();
+				}
+				comparator = (entry1, entry2) -> {
+					return Long.compare(entry1.longKey, entry2.longKey);
+				};
+			} else if (numeric) {
+
+				// Numeric sorting (double keys)
+				for (SortEntry entry : entries) {
+					entry.doubleKey = ((Number) entry.value).doubleValue();
+				}
+				comparator = (entry1, entry2) -> {
+					return Double.compare(entry1.doubleKey, entry2.doubleKey);
+				};
+			} else {
 
-			// Numeric sorting
-			if (numeric) {
-				return sort((node1, node2) -> {
-					return node1.asBigDecimal().compareTo(node2.asBigDecimal());
-				});
+				// Alphanumeric sorting
+				for (SortEntry entry : entries) {
+					entry.key = entry.value == null ? "" : DataConverterRegistry.convert(String.class, entry.value);
+				}
+				comparator = (entry1, entry2) -> {
+					return String.CASE_INSENSITIVE_ORDER.compare((String) entry1.key, (String) entry2.key);
+				};
 			}
 
-			// Alphanumeric sorting
-			return sort((node1, node2) -> {
-				return String.CASE_INSENSITIVE_ORDER.compare(node1.asString(), node2.asString());
-			});
-		}
+		} else if (isMap()) {
 
-		// Map sorted by alphanumeric order by the name of the sub-nodes
-		if (isMap()) {
-			return sort((node1, node2) -> {
-				return String.CASE_INSENSITIVE_ORDER.compare(node1.getName(), node2.getName());
-			});
-		}
+			// Map sorted by alphanumeric order by the name of the sub-nodes
+			int index = 0;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				SortEntry sortEntry = new SortEntry(entry.getKey(), entry.getValue());
+				sortEntry.key = String.valueOf(entry.getKey());
+				entries[index++] = sortEntry;
+			}
+			comparator = (entry1, entry2) -> {
+				return String.CASE_INSENSITIVE_ORDER.compare((String) entry1.key, (String) entry2.key);
+			};
 
-		// Unable to sort
-		return sort(null);
+		} else {
+
+			// Unable to sort
+			return sort((Comparator<Tree>) null);
+		}
+		if (parallel) {
+			Arrays.parallelSort(entries, comparator);
+		} else {
+			Arrays.sort(entries, comparator);
+		}
+		reorder(entries);
+		return this;
 	}
 
 	/**
@@ -4395,6 +4972,28 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return this (sorted) node
 	 */
 	public Tree sort(Comparator<Tree> comparator) {
+		return sort(comparator, false);
+	}
+
+	/**
+	 * Sorts the sub-nodes of this node by the specified Comparator, using
+	 * multiple threads for large Lists. The Comparator must be thread-safe.
+	 * Sample code:<br>
+	 * <br>
+	 * node.parallelSort((node1, node2) -&gt; {<br>
+	 * return node1.get("id", 0) - node2.get("id", 0);<br>
+	 * });
+	 * 
+	 * @param comparator
+	 *            custom (thread-safe) comparator
+	 * 
+	 * @return this (sorted) node
+	 */
+	public Tree parallelSort(Comparator<Tree> comparator) {
+		return sort(comparator, true);
+	}
+
+	protected Tree sort(Comparator<Tree> comparator, boolean parallel) {
 		int size = size();
 		if (size < 2) {
 			return this;
@@ -4404,18 +5003,137 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		for (Tree child : this) {
 			array[index++] = child;
 		}
-		Arrays.sort(array, comparator);
-		clear();
-		if (isMap()) {
-			for (Tree child : array) {
-				putObjectInternal(child.getName(), child.value, false);
+		if (parallel) {
+			Arrays.parallelSort(array, comparator);
+		} else {
+			Arrays.sort(array, comparator);
+		}
+		SortEntry[] entries = new SortEntry[size];
+		for (index = 0; index < size; index++) {
+			Tree child = array[index];
+			entries[index] = new SortEntry(child.key, child.value);
+		}
+		reorder(entries);
+		return this;
+	}
+
+	/**
+	 * Writes the sorted children back into the container of this node. Lists
+	 * and arrays are reordered in place, Maps and Sets are rebuilt once
+	 * (without parsing the names of the children as paths).
+	 * 
+	 * @param entries
+	 *            sorted children
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void reorder(SortEntry[] entries) {
+		if (value.getClass().isArray()) {
+			Object array = Array.newInstance(value.getClass().getComponentType(), entries.length);
+			for (int i = 0; i < entries.length; i++) {
+				Array.set(array, i, entries[i].value);
+			}
+			setObjectInternal(array);
+			return;
+		}
+		ensureWritable();
+		if (value instanceof List) {
+			ListIterator list = ((List) value).listIterator();
+			for (SortEntry entry : entries) {
+				list.next();
+				list.set(entry.value);
+			}
+		} else if (value instanceof Map) {
+			Map map = (Map) value;
+			map.clear();
+			for (SortEntry entry : entries) {
+				map.put(entry.name, entry.value);
 			}
 		} else {
-			for (Tree child : array) {
-				addObjectInternal(child.value);
+			Collection collection = (Collection) value;
+			collection.clear();
+			for (SortEntry entry : entries) {
+				collection.add(entry.value);
 			}
 		}
-		return this;
+	}
+
+	/**
+	 * Child value with its precomputed sort key.
+	 */
+	protected static final class SortEntry {
+
+		protected final Object name;
+		protected final Object value;
+
+		protected Object key;
+		protected long longKey;
+		protected double doubleKey;
+
+		protected SortEntry(Object name, Object value) {
+			this.name = name;
+			this.value = value;
+		}
+
+	}
+
+	// --- QUERY ---
+
+	/**
+	 * Executes a JSONPath-style query on this node, and returns the matching
+	 * sub-nodes. Supports wildcards, recursive descent, slices and filter
+	 * expressions (see {@link TreeQuery}). The compiled queries are cached.
+	 * Sample code:<br>
+	 * <br>
+	 * List&lt;Tree&gt; prices = node.query("items[?(@.qty &gt; 5)].price");
+	 * <br>
+	 * List&lt;Tree&gt; ids = node.query("$..id");
+	 * 
+	 * @param expression
+	 *            query expression (eg. "items[*].price")
+	 * 
+	 * @return List of matching sub-nodes
+	 * 
+	 * @throws IllegalArgumentException
+	 *             invalid query syntax
+	 */
+	public List<Tree> query(String expression) {
+		return TreeQuery.compile(expression).select(this);
+	}
+
+	// --- INDEX ---
+
+	/**
+	 * Creates a hash index over the children of this List (or Map) node, by
+	 * the value of the specified field. The lookups are hash lookups (the path
+	 * of this node is resolved again only after a modification of the
+	 * document). The index is invalidated when this node (or any of its
+	 * children) is modified through the Tree API, and it is rebuilt on the
+	 * next lookup. Sample code:<br>
+	 * <br>
+	 * TreeIndex byId = node.get("users").index("id");<br>
+	 * Tree user = byId.lookupFirst(123);<br>
+	 * List&lt;Tree&gt; users = byId.lookup("abc");
+	 * 
+	 * @param fieldPath
+	 *            path of the field, relative to the children (eg. "id" or
+	 *            "address.city")
+	 * 
+	 * @return index of the children
+	 * 
+	 * @throws IllegalArgumentException
+	 *             invalid field path
+	 */
+	public TreeIndex index(String fieldPath) {
+		TreeIndex index = new TreeIndex(this, fieldPath);
+		Tree root = getRoot();
+		synchronized (root) {
+			if (root.indexes == null) {
+				root.indexes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+				cachesCreated = true;
+			}
+		}
+		root.indexes.add(index);
+		return index;
 	}
 
 	// --- FIND A CHILD ---
@@ -4451,6 +5169,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is {@code null}
 	 */
 	public boolean isNull() {
+		sync();
 		return value == null;
 	}
 
@@ -4471,6 +5190,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is a scalar (eg. Float, UUID) value
 	 */
 	public boolean isPrimitive() {
+		sync();
 		return value == null || !isStructure();
 	}
 
@@ -4482,6 +5202,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 *         value
 	 */
 	public boolean isStructure() {
+		sync();
 		return isStructure(value);
 	}
 
@@ -4505,6 +5226,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is a List
 	 */
 	public boolean isEnumeration() {
+		sync();
 		return value != null && (value instanceof Collection || value.getClass().isArray());
 	}
 
@@ -4514,6 +5236,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is a Map
 	 */
 	public boolean isMap() {
+		sync();
 		return value != null && value instanceof Map;
 	}
 
@@ -4523,6 +5246,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is a List
 	 */
 	public boolean isList() {
+		sync();
 		return value != null && value instanceof List;
 	}
 
@@ -4532,6 +5256,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is a List
 	 */
 	public boolean isArray() {
+		sync();
 		return value != null && value.getClass().isArray();
 	}
 
@@ -4541,6 +5266,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 * @return {@code true} if the value is a Set
 	 */
 	public boolean isSet() {
+		sync();
 		return value != null && value instanceof Set;
 	}
 
@@ -4563,6 +5289,7 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	@SuppressWarnings("rawtypes")
 	public int size() {
+		sync();
 		if (value == null) {
 			return 0;
 		}
@@ -4593,8 +5320,12 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	public Tree clone() {
 
 		// Normal deep cloning
+		sync();
+		Object event = FlightEvents.begin(FlightEvents.CLONE);
 		try {
-			return new Tree(null, key, DeepCloner.clone(value));
+			Tree copy = new Tree(null, key, DeepCloner.clone(value));
+			FlightEvents.commit(event, value == null ? "null" : value.getClass().getName(), size());
+			return copy;
 		} catch (Exception ignored) {
 
 			// Unknown and/or unserializable objects
@@ -4608,6 +5339,384 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 		}
 	}
 
+	/**
+	 * Creates and returns a copy of this node using multiple threads (in the
+	 * common ForkJoinPool). Performs a "deep copy", like the {@link #clone()}
+	 * method, but the large Maps and Lists (see the
+	 * "datatree.parallel.threshold" System Property) are split into parallel
+	 * subtasks. Recommended for very large structures. Sample code:<br>
+	 * <br>
+	 * Tree original = new Tree();<br>
+	 * Tree copy = original.parallelClone();
+	 * 
+	 * @return copy of this node
+	 */
+	public Tree parallelClone() {
+
+		// Parallel deep cloning
+		sync();
+		Object event = FlightEvents.begin(FlightEvents.CLONE);
+		try {
+			Tree copy = new Tree(null, key, DeepCloner.parallelClone(value));
+			FlightEvents.commit(event, value == null ? "null" : value.getClass().getName(), size());
+			return copy;
+		} catch (CloneFailure | UnsupportedOperationException ignored) {
+
+			// Unknown and/or unserializable objects
+		}
+
+		// Sequential (or JSON-based) deep cloning
+		return clone();
+	}
+
+	// --- COPY-ON-WRITE (LAZY) CLONE ---
+
+	/**
+	 * Creates and returns a lazy (copy-on-write) copy of this node. Unlike the
+	 * {@link #clone()} method, this method does not copy anything; the
+	 * containers (Maps, Lists, Sets and arrays) are shared between the source
+	 * and the copy. The first modification of a shared container (from either
+	 * side) copies the container and the containers along the path from the
+	 * root (shallow copies). Therefore the cost of cloning is proportional to
+	 * the size of the changes, not the size of the whole structure. Sample
+	 * code:<br>
+	 * <br>
+	 * Tree template = new Tree(json);<br>
+	 * Tree copy = template.lazyClone();<br>
+	 * copy.put("a.b", 3);<br>
+	 * <br>
+	 * The "template" is not changed. Only the modifications made through the
+	 * Tree API trigger copying; the non-container values (eg. Dates), and the
+	 * raw Map / Collection instances (returned by the "asObject" method) are
+	 * shared between the nodes.
+	 * 
+	 * @return copy-on-write copy of this node
+	 */
+	public Tree lazyClone() {
+		return lazyClone(false);
+	}
+
+	protected Tree lazyClone(boolean copyMeta) {
+		sync();
+		Tree copy = new Tree(null, key, value);
+		Tree root = getRoot();
+		if (isStructure(value) || (copyMeta && root.meta != null)) {
+			SharedContainers containers;
+			synchronized (root) {
+				if (root.shared == null) {
+					root.shared = new SharedContainers();
+				}
+				containers = root.shared;
+			}
+			containers.addHolder(root);
+			containers.addHolder(copy);
+			containers.share(value);
+			if (copyMeta && parent == null && meta != null) {
+				containers.share(meta);
+				copy.meta = meta;
+			}
+			copy.shared = containers;
+		}
+		return copy;
+	}
+
+	/**
+	 * Prepares the container of this node for modification. If the container
+	 * is shared with a copy-on-write clone, this method replaces it with a
+	 * modifiable copy (and does the same with the containers of the parent
+	 * nodes).
+	 */
+	protected void ensureWritable() {
+		sync();
+		if (!cachesCreated && (shared == null || !shared.isSharing())) {
+			return;
+		}
+		Tree root = getRoot();
+		if (root.fragments != null) {
+
+			// Invalidate the cached JSON of this node and its parents
+			for (Tree node = this; node != null; node = node.parent) {
+				root.fragments.invalidate(node.value);
+			}
+		}
+		if (root.indexes != null) {
+
+			// Invalidate the indexes of this node and its parents
+			TreeIndex.invalidate(root.indexes, this);
+		}
+		if (root.shared != null && root.shared.isSharing()) {
+			ensureWritable(root.shared);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private final void ensureWritable(SharedContainers containers) {
+		if (parent == null) {
+			if (containers.isShared(value)) {
+				value = containers.copy(value);
+			}
+			return;
+		}
+		parent.ensureWritable(containers);
+
+		// Find the current child in the parent's container
+		Object current = getValueInParent();
+		if (current != value) {
+			if (!containers.isCopyOf(current, value)) {
+
+				// This node is not part of the parent's container
+				return;
+			}
+
+			// This node refers to an already copied container
+			value = current;
+		}
+		if (!containers.isShared(value)) {
+			return;
+		}
+
+		// Replace the shared container with a modifiable copy
+		Object container = parent.value;
+		Object copy = containers.copy(value);
+		if (Config.META.equals(key) && parent.parent == null) {
+			parent.meta = copy;
+		} else if (container instanceof Map) {
+			((Map) container).put(key, copy);
+		} else if (container instanceof List) {
+			((List) container).set((Integer) key, copy);
+		} else if (container instanceof Set) {
+			ArrayList<Object> list = new ArrayList<>((Set) container);
+			for (int i = 0; i < list.size(); i++) {
+				if (list.get(i) == value) {
+					list.set(i, copy);
+				}
+			}
+			((Set) container).clear();
+			((Set) container).addAll(list);
+		} else if (container.getClass().isArray()) {
+			Array.set(container, (Integer) key, copy);
+		}
+		value = copy;
+	}
+
+	/**
+	 * Switches this node to the copy of its container, if the container was
+	 * replaced by a copy-on-write copy through an other node (eg. the node was
+	 * created before the copy, and the copy was made by a "put" on the root
+	 * node). Otherwise the node would show (and modify) the old container,
+	 * which belongs to an other clone.
+	 */
+	protected final void sync() {
+		if (parent == null) {
+			return;
+		}
+		int created = SharedContainers.getRegistries();
+		if (registries != created) {
+
+			// Look up the (new) registry of the root node
+			registries = created;
+			SharedContainers containers = getRoot().shared;
+			if (shared != containers) {
+				shared = containers;
+				version = -1;
+			}
+		}
+		SharedContainers containers = shared;
+		if (containers != null && version != containers.getVersion()) {
+			long current = containers.getVersion();
+			parent.sync();
+			if (isStructure(value)) {
+				Object copy = getValueInParent();
+				if (copy != value && containers.isCopyOf(copy, value)) {
+					value = copy;
+				}
+			}
+			version = current;
+		}
+	}
+
+	/**
+	 * Releases the registry of the shared containers of this (root) node (eg.
+	 * after an asynchronous write of a snapshot), so the other clones can
+	 * modify the shared containers without copying them.
+	 */
+	protected void releaseShared() {
+		if (parent == null && shared != null) {
+			shared.removeHolder(this);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private final Object getValueInParent() {
+		Object container = parent.value;
+		if (Config.META.equals(key) && parent.parent == null) {
+			return parent.meta;
+		}
+		if (container instanceof Map) {
+			return ((Map) container).get(key);
+		}
+		if (container instanceof List && key instanceof Integer && (Integer) key < ((List) container).size()) {
+			return ((List) container).get((Integer) key);
+		}
+		if (container != null && container.getClass().isArray() && key instanceof Integer
+				&& (Integer) key < Array.getLength(container)) {
+			return Array.get(container, (Integer) key);
+		}
+		return value;
+	}
+
+	// --- STRUCTURALLY SHARED MODIFICATIONS ---
+
+	/**
+	 * Returns a new version of this structure, in which the specified path is
+	 * associated with the specified value. This node remains unchanged. The
+	 * new version copies only the containers along the path (the root and the
+	 * ancestors of the modified node), all other sub-structures are shared
+	 * between the versions (see {@link #lazyClone()}). Sample code:<br>
+	 * <br>
+	 * Tree v1 = new Tree("{\"a\":{\"b\":1},\"c\":{\"d\":2}}");<br>
+	 * Tree v2 = v1.with("a.b", 3);<br>
+	 * <br>
+	 * The "v1" is not changed, and the "c" sub-structure is shared between
+	 * "v1" and "v2".
+	 * 
+	 * @param path
+	 *            path (e.g. "path.to.node[0]")
+	 * @param value
+	 *            the new value
+	 * 
+	 * @return new version of this node
+	 */
+	public Tree with(String path, Object value) {
+		Tree version = lazyClone(true);
+		version.putObjectInternal(path, getNodeValue(value), false);
+		return version;
+	}
+
+	/**
+	 * Returns a new version of this structure, without the specified node.
+	 * This node remains unchanged. The new version copies only the containers
+	 * along the path, all other sub-structures are shared between the
+	 * versions. Sample code:<br>
+	 * <br>
+	 * Tree v1 = new Tree("{\"a\":{\"b\":1},\"c\":{\"d\":2}}");<br>
+	 * Tree v2 = v1.without("a.b");
+	 * 
+	 * @param path
+	 *            path of the removable node (e.g. "path.to.node[0]")
+	 * 
+	 * @return new version of this node
+	 */
+	public Tree without(String path) {
+		Tree version = lazyClone(true);
+		version.remove(path);
+		return version;
+	}
+
+	// --- DIFF / PATCH ---
+
+	/**
+	 * Compares this node with the specified node, and returns the differences
+	 * as an RFC 6902 JSON Patch (array of "add", "remove" and "replace"
+	 * operations). The identical (eg. structurally shared) containers are
+	 * skipped. Sample code:<br>
+	 * <br>
+	 * Tree v1 = new Tree("{\"a\":1,\"b\":[1,2]}");<br>
+	 * Tree v2 = new Tree("{\"a\":2,\"b\":[1,2,3]}");<br>
+	 * Tree patch = v1.diff(v2);<br>
+	 * <br>
+	 * Result:<br>
+	 * <br>
+	 * [{"op":"replace","path":"/a","value":2},
+	 * {"op":"add","path":"/b/2","value":3}]
+	 * 
+	 * @param target
+	 *            the new version of this node
+	 * 
+	 * @return JSON Patch (List of operations)
+	 */
+	public Tree diff(Tree target) {
+		return diff(target, false);
+	}
+
+	/**
+	 * Compares this node with the specified node, and returns the differences
+	 * as an RFC 6902 JSON Patch or an RFC 7396 JSON Merge Patch. Sample code:
+	 * <br>
+	 * <br>
+	 * Tree v1 = new Tree("{\"a\":1,\"b\":{\"c\":2,\"d\":3}}");<br>
+	 * Tree v2 = new Tree("{\"a\":1,\"b\":{\"c\":4}}");<br>
+	 * Tree patch = v1.diff(v2, true);<br>
+	 * <br>
+	 * Result:<br>
+	 * <br>
+	 * {"b":{"d":null,"c":4}}
+	 * 
+	 * @param target
+	 *            the new version of this node
+	 * @param mergePatch
+	 *            create JSON Merge Patch (instead of JSON Patch)
+	 * 
+	 * @return JSON Patch (List of operations) or JSON Merge Patch (Map)
+	 */
+	public Tree diff(Tree target, boolean mergePatch) {
+		sync();
+		Object targetValue = target == null ? null : target.asObject();
+		if (mergePatch) {
+			return new Tree(null, null, TreeDiff.mergePatch(value, targetValue));
+		}
+		return new Tree(null, null, TreeDiff.jsonPatch(value, targetValue));
+	}
+
+	/**
+	 * Applies the specified patch on this node. The patch may be a JSON Patch
+	 * (List of operations, see RFC 6902) or a JSON Merge Patch (Map, see RFC
+	 * 7396). The JSON Patch is applied atomically: if an operation fails (eg.
+	 * a "test" operation or a missing path), this node remains unchanged and
+	 * an IllegalArgumentException is thrown. Sample code:<br>
+	 * <br>
+	 * Tree patch = v1.diff(v2);<br>
+	 * v1.apply(patch);
+	 * 
+	 * @param patch
+	 *            JSON Patch or JSON Merge Patch
+	 * 
+	 * @return this node
+	 * 
+	 * @throws IllegalArgumentException
+	 *             invalid patch, or any operation failed
+	 */
+	public Tree apply(Tree patch) {
+		if (patch == null) {
+			return this;
+		}
+		sync();
+		if (patch.isMap()) {
+			TreeDiff.applyMergePatch(this, patch.value);
+			return this;
+		}
+		Tree root = getRoot();
+		boolean detach = root.shared == null;
+		Tree work = lazyClone(false);
+		try {
+			TreeDiff.applyJsonPatch(work, patch.value);
+			work.releaseShared();
+			if (work.value != value) {
+				setObjectInternal(work.value);
+			}
+		} finally {
+			work.releaseShared();
+			if (detach) {
+
+				// Detach the registry (created by this method)
+				synchronized (root) {
+					root.shared = null;
+				}
+			}
+		}
+		return this;
+	}
+
 	// --- SERIALIZATION / DESERIALIZATION ---
 
 	/**
@@ -4620,10 +5729,9 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 *             any I/O exception
 	 */
 	private void writeObject(ObjectOutputStream out) throws IOException {
+		sync();
 		out.defaultWriteObject();
-		byte[] bytes = JavaBuiltin.serialize(value, meta, true);
-		out.writeInt(bytes.length);
-		out.write(bytes);
+		BinaryBuiltin.writeTo(out, value, meta);
 	}
 
 	/**
@@ -4639,14 +5747,8 @@ public class Tree implements Iterable<Tree>, Cloneable, Serializable {
 	 */
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
-		byte[] bytes = new byte[in.readInt()];
-		in.readFully(bytes);
-		try {
-			value = JavaBuiltin.deserialize(bytes);
-		} catch (Exception e) {
-			throw new IOException(e);
-		}
+		value = BinaryBuiltin.readFrom(in);
 		moveMeta();
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
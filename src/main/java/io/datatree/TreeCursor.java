@@ -0,0 +1,277 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Positional cursor over the children of a Tree node. The cursor remembers its
+ * position in the node's container, so stepping to the next or previous
+ * sibling is an O(1) operation (unlike the getNextSibling /
+ * getPreviousSibling methods, which have to find the current node in the
+ * parent first). The keys of a Map (and the items of a Set) are collected
+ * once, when the cursor is created. The cursor must be re-created after a
+ * structural modification (add, insert, remove) of the node. Sample code:<br>
+ * <br>
+ * TreeCursor cursor = node.cursor();<br>
+ * while (cursor.hasNext()) {<br>
+ * Tree child = cursor.next();<br>
+ * Tree previous = cursor.peekPrevious();<br>
+ * }
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class TreeCursor {
+
+	// --- CONTAINER ---
+
+	protected final Tree node;
+	protected final Object container;
+	protected final int size;
+
+	/**
+	 * Iterator of a linked List (or {@code null}).
+	 */
+	protected final ListIterator<Object> items;
+
+	/**
+	 * Keys of a Map (or {@code null}).
+	 */
+	protected final Object[] keys;
+
+	/**
+	 * Items of a Set (or {@code null}).
+	 */
+	protected final Object[] values;
+
+	// --- POSITION ---
+
+	protected int position;
+	protected Tree current;
+
+	// --- CONSTRUCTOR ---
+
+	@SuppressWarnings("unchecked")
+	protected TreeCursor(Tree node, int index) {
+		this.node = node;
+		this.container = node.asObject();
+		if (container instanceof List) {
+			List<Object> list = (List<Object>) container;
+			size = list.size();
+			items = list instanceof RandomAccess ? null : list.listIterator();
+			keys = null;
+			values = null;
+		} else if (container instanceof Map) {
+			Map<Object, Object> map = (Map<Object, Object>) container;
+			size = map.size();
+			items = null;
+			keys = map.keySet().toArray();
+			values = null;
+		} else if (container instanceof Collection) {
+			Collection<Object> collection = (Collection<Object>) container;
+			size = collection.size();
+			items = null;
+			keys = null;
+			values = collection.toArray();
+		} else if (container != null && container.getClass().isArray()) {
+			size = Array.getLength(container);
+			items = null;
+			keys = null;
+			values = null;
+		} else {
+			size = 0;
+			items = null;
+			keys = null;
+			values = null;
+		}
+		position = -1;
+		if (index > -1) {
+			seek(index);
+		}
+	}
+
+	// --- NAVIGATION ---
+
+	/**
+	 * Returns {@code true} if there is a node after the current position.
+	 * 
+	 * @return {@code true} if {@link #next()} returns a node
+	 */
+	public boolean hasNext() {
+		return position + 1 < size;
+	}
+
+	/**
+	 * Returns {@code true} if there is a node before the current position.
+	 * 
+	 * @return {@code true} if {@link #previous()} returns a node
+	 */
+	public boolean hasPrevious() {
+		return position > 0;
+	}
+
+	/**
+	 * Steps to the next child, and returns it. If there is no such node, this
+	 * returns {@code null} (and the cursor will be positioned after the last
+	 * child).
+	 * 
+	 * @return next child or {@code null}
+	 */
+	public Tree next() {
+		if (position + 1 >= size) {
+			position = size;
+			current = null;
+			return null;
+		}
+		return move(position + 1);
+	}
+
+	/**
+	 * Steps to the previous child, and returns it. If there is no such node,
+	 * this returns {@code null} (and the cursor will be positioned before the
+	 * first child).
+	 * 
+	 * @return previous child or {@code null}
+	 */
+	public Tree previous() {
+		if (position < 1) {
+			position = -1;
+			current = null;
+			return null;
+		}
+		return move(Math.min(position, size) - 1);
+	}
+
+	/**
+	 * Returns the child at the current position (without moving the cursor).
+	 * 
+	 * @return current child or {@code null}
+	 */
+	public Tree current() {
+		return current;
+	}
+
+	/**
+	 * Returns the child after the current position (without moving the
+	 * cursor).
+	 * 
+	 * @return next child or {@code null}
+	 */
+	public Tree peekNext() {
+		if (position + 1 >= size) {
+			return null;
+		}
+		return read(position + 1);
+	}
+
+	/**
+	 * Returns the child before the current position (without moving the
+	 * cursor).
+	 * 
+	 * @return previous child or {@code null}
+	 */
+	public Tree peekPrevious() {
+		if (position < 1) {
+			return null;
+		}
+		return read(Math.min(position, size) - 1);
+	}
+
+	/**
+	 * Moves the cursor to the specified position.
+	 * 
+	 * @param index
+	 *            zero-based index of the child
+	 * 
+	 * @return child at the specified position
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range (index &lt; 0 || index &gt;=
+	 *             size())
+	 */
+	public Tree seek(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return move(index);
+	}
+
+	/**
+	 * Returns the position of the cursor (-1 before the first child, or
+	 * size() after the last child).
+	 * 
+	 * @return zero-based index of the current child
+	 */
+	public int index() {
+		return position;
+	}
+
+	/**
+	 * Returns the number of children.
+	 * 
+	 * @return number of children
+	 */
+	public int size() {
+		return size;
+	}
+
+	// --- READ CHILD ---
+
+	protected Tree move(int index) {
+		current = read(index);
+		position = index;
+		return current;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Tree read(int index) {
+		Object key = index;
+		Object value;
+		if (items != null) {
+
+			// Linked List (steps from the last position)
+			value = null;
+			int nextIndex = items.nextIndex();
+			if (index >= nextIndex) {
+				for (int i = nextIndex; i <= index; i++) {
+					value = items.next();
+				}
+			} else {
+				for (int i = nextIndex - 1; i >= index; i--) {
+					value = items.previous();
+				}
+			}
+		} else if (keys != null) {
+			key = keys[index];
+			value = ((Map<Object, Object>) container).get(key);
+		} else if (values != null) {
+			value = values[index];
+		} else if (container instanceof List) {
+			value = ((List<Object>) container).get(index);
+		} else {
+			value = Array.get(container, index);
+		}
+		return new Tree(node, key, value);
+	}
+
+}
@@ -0,0 +1,457 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import io.datatree.dom.DeepCloner;
+
+/**
+ * Diff and patch engine of the Tree. Creates and applies RFC 6902 JSON Patch
+ * and RFC 7396 JSON Merge Patch documents. The diff skips the containers
+ * which are identical (for example the sub-structures shared by the
+ * <code>lazyClone</code>, <code>with</code> and <code>without</code>
+ * methods), and trims the common prefix and suffix of the Lists, so the
+ * cost of the diff depends mostly on the size of the changed parts.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+final class TreeDiff {
+
+	// --- JSON PATCH (RFC 6902) ---
+
+	static final List<Object> jsonPatch(Object source, Object target) {
+		List<Object> operations = new ArrayList<>();
+		diff(operations, "", source, target);
+		return operations;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final void diff(List<Object> operations, String path, Object source, Object target) {
+		if (source == target) {
+			return;
+		}
+		if (source instanceof Map && target instanceof Map) {
+			Map<Object, Object> from = (Map<Object, Object>) source;
+			Map<Object, Object> to = (Map<Object, Object>) target;
+			for (Map.Entry<Object, Object> entry : from.entrySet()) {
+				Object key = entry.getKey();
+				String childPath = path + '/' + escape(key);
+				if (to.containsKey(key)) {
+					diff(operations, childPath, entry.getValue(), to.get(key));
+				} else {
+					operations.add(operation("remove", childPath, null, false));
+				}
+			}
+			for (Map.Entry<Object, Object> entry : to.entrySet()) {
+				Object key = entry.getKey();
+				if (!from.containsKey(key)) {
+					operations.add(operation("add", path + '/' + escape(key), entry.getValue(), true));
+				}
+			}
+			return;
+		}
+		if (source instanceof List && target instanceof List) {
+			List<Object> from = randomAccess((List<Object>) source);
+			List<Object> to = randomAccess((List<Object>) target);
+
+			// Skip the common prefix and suffix
+			int start = 0;
+			int endFrom = from.size();
+			int endTo = to.size();
+			while (start < endFrom && start < endTo && deepEquals(from.get(start), to.get(start))) {
+				start++;
+			}
+			while (endFrom > start && endTo > start && deepEquals(from.get(endFrom - 1), to.get(endTo - 1))) {
+				endFrom--;
+				endTo--;
+			}
+
+			// Compare the changed region item by item
+			int common = Math.min(endFrom - start, endTo - start);
+			for (int i = 0; i < common; i++) {
+				int index = start + i;
+				diff(operations, path + '/' + index, from.get(index), to.get(index));
+			}
+			int index = start + common;
+			for (int i = endFrom - start - common; i > 0; i--) {
+				operations.add(operation("remove", path + '/' + index, null, false));
+			}
+			for (int i = index; i < endTo; i++) {
+				operations.add(operation("add", path + '/' + i, to.get(i), true));
+			}
+			return;
+		}
+		if (!deepEquals(source, target)) {
+			operations.add(operation("replace", path, target, true));
+		}
+	}
+
+	private static final List<Object> randomAccess(List<Object> list) {
+		return list instanceof RandomAccess ? list : new ArrayList<>(list);
+	}
+
+	private static final Map<String, Object> operation(String op, String path, Object value, boolean hasValue) {
+		LinkedHashMap<String, Object> operation = new LinkedHashMap<>();
+		operation.put("op", op);
+		operation.put("path", path);
+		if (hasValue) {
+			operation.put("value", copy(value));
+		}
+		return operation;
+	}
+
+	// --- JSON MERGE PATCH (RFC 7396) ---
+
+	@SuppressWarnings("unchecked")
+	static final Object mergePatch(Object source, Object target) {
+		if (!(source instanceof Map) || !(target instanceof Map)) {
+			return copy(target);
+		}
+		Map<Object, Object> from = (Map<Object, Object>) source;
+		Map<Object, Object> to = (Map<Object, Object>) target;
+		LinkedHashMap<Object, Object> patch = new LinkedHashMap<>();
+		for (Object key : from.keySet()) {
+			if (!to.containsKey(key)) {
+				patch.put(key, null);
+			}
+		}
+		for (Map.Entry<Object, Object> entry : to.entrySet()) {
+			Object key = entry.getKey();
+			Object value = entry.getValue();
+			if (!from.containsKey(key)) {
+				patch.put(key, copy(value));
+				continue;
+			}
+			Object previous = from.get(key);
+			if (previous == value) {
+				continue;
+			}
+			if (previous instanceof Map && value instanceof Map) {
+				Map<Object, Object> child = (Map<Object, Object>) mergePatch(previous, value);
+				if (!child.isEmpty()) {
+					patch.put(key, child);
+				}
+			} else if (!deepEquals(previous, value)) {
+				patch.put(key, copy(value));
+			}
+		}
+		return patch;
+	}
+
+	@SuppressWarnings("unchecked")
+	static final void applyMergePatch(Tree node, Object patch) {
+		if (!(patch instanceof Map)) {
+			node.setObjectInternal(copy(patch));
+			return;
+		}
+		if (!node.isMap()) {
+			node.setObjectInternal(new LinkedHashMap<String, Object>());
+		}
+		for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) patch).entrySet()) {
+			Object key = entry.getKey();
+			Object value = entry.getValue();
+			node.ensureWritable();
+			Map<Object, Object> map = (Map<Object, Object>) node.asObject();
+			if (value == null) {
+				map.remove(key);
+			} else if (value instanceof Map) {
+				if (!map.containsKey(key)) {
+					map.put(key, new LinkedHashMap<String, Object>());
+				}
+				applyMergePatch(new Tree(node, key, map.get(key)), value);
+			} else {
+				map.put(key, copy(value));
+			}
+		}
+	}
+
+	// --- APPLY JSON PATCH ---
+
+	@SuppressWarnings("unchecked")
+	static final void applyJsonPatch(Tree root, Object patch) {
+		Iterable<Object> operations;
+		if (patch instanceof Iterable) {
+			operations = (Iterable<Object>) patch;
+		} else if (patch != null && patch.getClass().isArray()) {
+			operations = Arrays.asList((Object[]) patch);
+		} else {
+			throw new IllegalArgumentException("JSON Patch must be an array of operations!");
+		}
+		for (Object item : operations) {
+			if (!(item instanceof Map)) {
+				throw new IllegalArgumentException("Invalid JSON Patch operation (" + item + ")!");
+			}
+			Map<Object, Object> operation = (Map<Object, Object>) item;
+			String op = String.valueOf(operation.get("op"));
+			String path = pointer(operation, "path");
+			switch (op) {
+			case "add":
+				add(root, path, copy(value(operation)));
+				break;
+			case "remove":
+				remove(root, path);
+				break;
+			case "replace":
+				navigate(root, path).setObjectInternal(copy(value(operation)));
+				break;
+			case "move":
+				String from = pointer(operation, "from");
+				if (path.startsWith(from + '/')) {
+					throw new IllegalArgumentException("Unable to move \"" + from + "\" into its child (" + path + ")!");
+				}
+				if (!from.equals(path)) {
+					add(root, path, remove(root, from));
+				}
+				break;
+			case "copy":
+				add(root, path, copy(get(root, pointer(operation, "from"))));
+				break;
+			case "test":
+				if (!deepEquals(get(root, path), value(operation))) {
+					throw new IllegalArgumentException("Test operation failed (" + path + ")!");
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported JSON Patch operation (" + op + ")!");
+			}
+		}
+	}
+
+	private static final String pointer(Map<Object, Object> operation, String name) {
+		Object pointer = operation.get(name);
+		if (pointer == null) {
+			throw new IllegalArgumentException("Missing \"" + name + "\" property (" + operation + ")!");
+		}
+		String txt = pointer.toString();
+		if (!txt.isEmpty() && txt.charAt(0) != '/') {
+			throw new IllegalArgumentException("Invalid JSON Pointer (" + txt + ")!");
+		}
+		return txt;
+	}
+
+	private static final Object value(Map<Object, Object> operation) {
+		if (!operation.containsKey("value")) {
+			throw new IllegalArgumentException("Missing \"value\" property (" + operation + ")!");
+		}
+		return operation.get("value");
+	}
+
+	// --- OPERATIONS ---
+
+	private static final Object get(Tree root, String path) {
+		if (path.isEmpty()) {
+			return root.asObject();
+		}
+		int i = path.lastIndexOf('/');
+		Tree parent = navigate(root, path.substring(0, i));
+		return child(parent, unescape(path.substring(i + 1)), path).asObject();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final void add(Tree root, String path, Object value) {
+		if (path.isEmpty()) {
+			root.setObjectInternal(value);
+			return;
+		}
+		int i = path.lastIndexOf('/');
+		Tree parent = navigate(root, path.substring(0, i));
+		String token = unescape(path.substring(i + 1));
+		toList(parent);
+		parent.ensureWritable();
+		if (parent.isMap()) {
+			((Map<Object, Object>) parent.asObject()).put(token, value);
+		} else if (parent.isList()) {
+			List<Object> list = (List<Object>) parent.asObject();
+			if ("-".equals(token)) {
+				list.add(value);
+			} else {
+				int index = index(token, list.size() + 1, path);
+				list.add(index, value);
+			}
+		} else {
+			throw new IllegalArgumentException("Parent of \"" + path + "\" isn't a Map or List!");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final Object remove(Tree root, String path) {
+		if (path.isEmpty()) {
+			throw new IllegalArgumentException("Unable to remove the root node!");
+		}
+		int i = path.lastIndexOf('/');
+		Tree parent = navigate(root, path.substring(0, i));
+		String token = unescape(path.substring(i + 1));
+		toList(parent);
+		parent.ensureWritable();
+		if (parent.isMap()) {
+			Map<Object, Object> map = (Map<Object, Object>) parent.asObject();
+			if (!map.containsKey(token)) {
+				throw new IllegalArgumentException("Node \"" + path + "\" does not exist!");
+			}
+			return map.remove(token);
+		}
+		if (parent.isList()) {
+			List<Object> list = (List<Object>) parent.asObject();
+			return list.remove(index(token, list.size(), path));
+		}
+		throw new IllegalArgumentException("Parent of \"" + path + "\" isn't a Map or List!");
+	}
+
+	private static final Tree navigate(Tree root, String path) {
+		Tree node = root;
+		if (path.isEmpty()) {
+			return node;
+		}
+		int start = 1;
+		while (true) {
+			int end = path.indexOf('/', start);
+			String token = unescape(end == -1 ? path.substring(start) : path.substring(start, end));
+			node = child(node, token, path);
+			if (end == -1) {
+				return node;
+			}
+			start = end + 1;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final Tree child(Tree node, String token, String path) {
+		Object value = node.asObject();
+		if (value instanceof Map) {
+			Map<Object, Object> map = (Map<Object, Object>) value;
+			if (map.containsKey(token)) {
+				return new Tree(node, token, map.get(token));
+			}
+		} else if (value instanceof List) {
+			List<Object> list = (List<Object>) value;
+			int index = index(token, list.size(), path);
+			return new Tree(node, index, list.get(index));
+		} else if (value != null && value.getClass().isArray()) {
+			int index = index(token, Array.getLength(value), path);
+			return new Tree(node, index, Array.get(value, index));
+		}
+		throw new IllegalArgumentException("Node \"" + path + "\" does not exist!");
+	}
+
+	private static final void toList(Tree node) {
+		if (node.isArray() || node.isSet()) {
+			node.setType(List.class);
+		}
+	}
+
+	private static final int index(String token, int size, String path) {
+		try {
+			int index = Integer.parseInt(token);
+			if (index >= 0 && index < size && (token.length() == 1 || token.charAt(0) != '0')) {
+				return index;
+			}
+		} catch (NumberFormatException invalid) {
+			// Invalid index
+		}
+		throw new IllegalArgumentException("Invalid array index in JSON Pointer (" + path + ")!");
+	}
+
+	// --- JSON POINTER (RFC 6901) ---
+
+	private static final String escape(Object key) {
+		String txt = String.valueOf(key);
+		if (txt.indexOf('~') == -1 && txt.indexOf('/') == -1) {
+			return txt;
+		}
+		return txt.replace("~", "~0").replace("/", "~1");
+	}
+
+	private static final String unescape(String token) {
+		if (token.indexOf('~') == -1) {
+			return token;
+		}
+		return token.replace("~1", "/").replace("~0", "~");
+	}
+
+	// --- DEEP COPY ---
+
+	private static final Object copy(Object value) {
+		try {
+			return DeepCloner.clone(value);
+		} catch (Exception cause) {
+			throw new IllegalArgumentException("Unable to copy value!", cause);
+		}
+	}
+
+	// --- DEEP EQUALITY ---
+
+	@SuppressWarnings("unchecked")
+	static final boolean deepEquals(Object a, Object b) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null) {
+			return false;
+		}
+		if (a instanceof Map && b instanceof Map) {
+			Map<Object, Object> m1 = (Map<Object, Object>) a;
+			Map<Object, Object> m2 = (Map<Object, Object>) b;
+			if (m1.size() != m2.size()) {
+				return false;
+			}
+			for (Map.Entry<Object, Object> entry : m1.entrySet()) {
+				Object key = entry.getKey();
+				if (!m2.containsKey(key) || !deepEquals(entry.getValue(), m2.get(key))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (a instanceof List && b instanceof List) {
+			List<Object> l1 = (List<Object>) a;
+			List<Object> l2 = (List<Object>) b;
+			if (l1.size() != l2.size()) {
+				return false;
+			}
+			Iterator<Object> i1 = l1.iterator();
+			Iterator<Object> i2 = l2.iterator();
+			while (i1.hasNext()) {
+				if (!deepEquals(i1.next(), i2.next())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+			try {
+				return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+			} catch (NumberFormatException notComparable) {
+				return false;
+			}
+		}
+		if (a.getClass().isArray() && b.getClass().isArray()) {
+			return Arrays.deepEquals(new Object[] { a }, new Object[] { b });
+		}
+		return a.equals(b);
+	}
+
+}
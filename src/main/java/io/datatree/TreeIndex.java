@@ -0,0 +1,325 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.datatree.dom.converters.DataConverterRegistry;
+
+/**
+ * Hash index over the children of a List (or Map) node, by the value of a
+ * field of the children. The index is built on the first lookup, and it is
+ * invalidated (and rebuilt on the next lookup) when the indexed node or any
+ * of its children is modified through the Tree API (add, insert, remove, put,
+ * set, etc.), or when the indexed node is replaced or removed by its parent
+ * (the node is resolved again by its path after any modification of the
+ * document). The keys are compared by their String forms, so
+ * <code>lookup(5)</code> and <code>lookup("5")</code> return the same nodes.
+ * Sample code:<br>
+ * <br>
+ * TreeIndex byId = document.get("users").index("id");<br>
+ * Tree user = byId.lookupFirst(123);<br>
+ * List&lt;Tree&gt; admins = document.get("users").index("role.name").lookup("admin");
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class TreeIndex {
+
+	// --- INDEXED NODE ---
+
+	protected final Tree root;
+	protected final String path;
+	protected final String fieldPath;
+	protected final TreeQuery field;
+
+	// --- INDEX ---
+
+	protected Tree node;
+	protected Object container;
+	protected HashMap<String, Object> entries;
+	protected Object[] keys;
+	protected Object[] values;
+
+	protected volatile boolean valid;
+
+	/**
+	 * Is the indexed node resolved (by its path) since the last modification
+	 * of the document?
+	 */
+	protected volatile boolean resolved;
+
+	// --- CONSTRUCTOR ---
+
+	protected TreeIndex(Tree node, String fieldPath) {
+		this.root = node.getRoot();
+		this.path = node.getPath();
+		this.node = node;
+		this.container = node.asObject();
+		this.fieldPath = fieldPath;
+		this.field = TreeQuery.compile(fieldPath);
+	}
+
+	// --- LOOKUP ---
+
+	/**
+	 * Returns the child nodes which have the specified field value.
+	 * 
+	 * @param key
+	 *            value of the indexed field
+	 * 
+	 * @return List of matching nodes (or empty List)
+	 */
+	public synchronized List<Tree> lookup(Object key) {
+		ensureValid();
+		Object positions = entries.get(normalize(key));
+		if (positions == null) {
+			return Collections.emptyList();
+		}
+		if (positions instanceof Integer) {
+			return Collections.singletonList(child((Integer) positions));
+		}
+		int[] array = (int[]) positions;
+		List<Tree> list = new ArrayList<>(array.length);
+		for (int position : array) {
+			list.add(child(position));
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the first child node which has the specified field value.
+	 * 
+	 * @param key
+	 *            value of the indexed field
+	 * 
+	 * @return matching node (or {@code null})
+	 */
+	public synchronized Tree lookupFirst(Object key) {
+		ensureValid();
+		Object positions = entries.get(normalize(key));
+		if (positions == null) {
+			return null;
+		}
+		if (positions instanceof Integer) {
+			return child((Integer) positions);
+		}
+		return child(((int[]) positions)[0]);
+	}
+
+	/**
+	 * Returns {@code true} if any child node has the specified field value.
+	 * 
+	 * @param key
+	 *            value of the indexed field
+	 * 
+	 * @return {@code true} if the key is in the index
+	 */
+	public synchronized boolean contains(Object key) {
+		ensureValid();
+		return entries.containsKey(normalize(key));
+	}
+
+	/**
+	 * Returns the number of distinct keys.
+	 * 
+	 * @return number of keys
+	 */
+	public synchronized int size() {
+		ensureValid();
+		return entries.size();
+	}
+
+	/**
+	 * Returns the path of the indexed field (eg. "id").
+	 * 
+	 * @return path of the indexed field
+	 */
+	public String getFieldPath() {
+		return fieldPath;
+	}
+
+	/**
+	 * Returns {@code true} if the index is up to date (it's not modified since
+	 * the last lookup).
+	 * 
+	 * @return {@code false} if the index will be rebuilt on the next lookup
+	 */
+	public boolean isValid() {
+		return valid && resolve() == container;
+	}
+
+	/**
+	 * Marks the index as invalid (the index will be rebuilt on the next
+	 * lookup).
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	// --- BUILD INDEX ---
+
+	protected void ensureValid() {
+		if (valid && resolved) {
+			return;
+		}
+
+		// The container may be replaced (eg. by a copy-on-write clone, or by
+		// the parent node) or removed
+		resolved = true;
+		Tree current = root.get(path);
+		Object currentContainer = current == null ? null : current.asObject();
+		if (valid && currentContainer == container) {
+			node = current;
+			return;
+		}
+		node = current;
+		container = currentContainer;
+		entries = new HashMap<>();
+		ArrayList<Object> keyList = new ArrayList<>();
+		ArrayList<Object> valueList = new ArrayList<>();
+		if (container instanceof Map) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) container).entrySet()) {
+				keyList.add(entry.getKey());
+				valueList.add(entry.getValue());
+			}
+		} else if (container instanceof Collection) {
+			int index = 0;
+			for (Object child : (Collection<?>) container) {
+				keyList.add(index++);
+				valueList.add(child);
+			}
+		} else if (container != null && container.getClass().isArray()) {
+			int length = Array.getLength(container);
+			for (int index = 0; index < length; index++) {
+				keyList.add(index);
+				valueList.add(Array.get(container, index));
+			}
+		}
+		keys = keyList.toArray();
+		values = valueList.toArray();
+		boolean duplicates = false;
+		for (int i = 0; i < values.length; i++) {
+			List<Object> found = field.values(values[i]);
+			if (found.isEmpty()) {
+				continue;
+			}
+			String key = normalize(found.get(0));
+			Object previous = entries.get(key);
+			if (previous == null) {
+				entries.put(key, i);
+			} else if (previous instanceof Integer) {
+				Positions positions = new Positions();
+				positions.add((Integer) previous);
+				positions.add(i);
+				entries.put(key, positions);
+				duplicates = true;
+			} else {
+				((Positions) previous).add(i);
+			}
+		}
+		if (duplicates) {
+
+			// Trim the (growable) position arrays
+			for (Map.Entry<String, Object> entry : entries.entrySet()) {
+				if (entry.getValue() instanceof Positions) {
+					Positions positions = (Positions) entry.getValue();
+					entry.setValue(Arrays.copyOf(positions.array, positions.size));
+				}
+			}
+		}
+		valid = true;
+	}
+
+	protected Object resolve() {
+		Tree current = root.get(path);
+		return current == null ? null : current.asObject();
+	}
+
+	protected static final class Positions {
+
+		protected int[] array = new int[4];
+		protected int size;
+
+		protected void add(int position) {
+			if (size == array.length) {
+				array = Arrays.copyOf(array, size * 2);
+			}
+			array[size++] = position;
+		}
+
+	}
+
+	protected Tree child(int position) {
+		return new Tree(node, keys[position], values[position]);
+	}
+
+	protected static String normalize(Object key) {
+		if (key == null) {
+			return null;
+		}
+		if (key instanceof Number) {
+			try {
+				BigDecimal number = new BigDecimal(key.toString()).stripTrailingZeros();
+				return number.signum() == 0 ? "0" : number.toPlainString();
+			} catch (NumberFormatException notANumber) {
+				return key.toString();
+			}
+		}
+		if (key instanceof String) {
+			return (String) key;
+		}
+		return DataConverterRegistry.convert(String.class, key);
+	}
+
+	// --- INVALIDATION ---
+
+	/**
+	 * Invalidates the indexes of the modified node and its parents.
+	 * 
+	 * @param indexes
+	 *            indexes of the document
+	 * @param modified
+	 *            modified node
+	 */
+	static void invalidate(Set<TreeIndex> indexes, Tree modified) {
+		synchronized (indexes) {
+			for (TreeIndex index : indexes) {
+				index.resolved = false;
+				if (!index.valid) {
+					continue;
+				}
+				for (Tree node = modified; node != null; node = node.getParent()) {
+					if (node.asObject() == index.container) {
+						index.valid = false;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,854 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.stream.Stream;
+
+import io.datatree.dom.Cache;
+import io.datatree.dom.Config;
+
+/**
+ * Compiled JSONPath-style query. The expression is compiled into a reusable
+ * plan, which is executed directly on the raw Map / List structure (only the
+ * matching nodes are wrapped into Tree objects). The compiled queries are
+ * cached. Supported syntax:<br>
+ * <ul>
+ * <li>$ - root node (optional)</li>
+ * <li>.name or ['name'] - child by name (['a','b'] - multiple names)</li>
+ * <li>.* or [*] - all children</li>
+ * <li>..name, ..* or ..[selector] - recursive descent</li>
+ * <li>[2], [-1] or [0,2] - elements by index (negative index = from the
+ * end)</li>
+ * <li>[start:end:step] - slice (eg. [1:3], [-2:] or [::2])</li>
+ * <li>[?(expression)] - filter, eg. [?(@.qty &gt; 5 &amp;&amp; @.name !=
+ * 'x')] (operators: ==, !=, &lt;, &lt;=, &gt;, &gt;=, &amp;&amp;, ||, !)</li>
+ * </ul>
+ * Sample code:<br>
+ * <br>
+ * TreeQuery query = TreeQuery.compile("$.items[?(@.qty &gt; 5)].price");<br>
+ * List&lt;Tree&gt; prices = query.select(document);<br>
+ * or<br>
+ * List&lt;Tree&gt; prices = document.query("items[*].price");
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public final class TreeQuery {
+
+	// --- CACHE OF COMPILED QUERIES ---
+
+	private static final Cache<String, TreeQuery> cache = new Cache<>(Config.CACHE_SIZE);
+
+	// --- PLAN ---
+
+	private final String expression;
+
+	private final Step[] steps;
+
+	private TreeQuery(String expression, Step[] steps) {
+		this.expression = expression;
+		this.steps = steps;
+	}
+
+	// --- COMPILER ---
+
+	/**
+	 * Compiles (or returns the cached copy of) the specified query.
+	 * 
+	 * @param expression
+	 *            JSONPath-style query expression (eg. "items[*].price")
+	 * 
+	 * @return compiled query
+	 * 
+	 * @throws IllegalArgumentException
+	 *             invalid syntax
+	 */
+	public static TreeQuery compile(String expression) {
+		TreeQuery query = cache.get(expression);
+		if (query == null) {
+			Parser parser = new Parser(expression);
+			query = new TreeQuery(expression, parser.parsePath(true));
+			if (parser.pos < expression.length()) {
+				throw parser.error("Unexpected character");
+			}
+			cache.put(expression, query);
+		}
+		return query;
+	}
+
+	// --- EXECUTION ---
+
+	/**
+	 * Executes this query on the specified node, and returns the matching
+	 * sub-nodes. The returned nodes are connected to the source structure (so
+	 * they can be modified).
+	 * 
+	 * @param node
+	 *            root node of the query
+	 * 
+	 * @return List of matching nodes
+	 */
+	public List<Tree> select(Tree node) {
+		List<Tree> results = new ArrayList<>();
+		new Execution(node, node.asObject(), results, null).run();
+		return results;
+	}
+
+	/**
+	 * Executes this query on the specified node, and returns the matching
+	 * sub-nodes as a Stream.
+	 * 
+	 * @param node
+	 *            root node of the query
+	 * 
+	 * @return Stream of matching nodes
+	 */
+	public Stream<Tree> stream(Tree node) {
+		return select(node).stream();
+	}
+
+	/**
+	 * Executes this query on the specified raw structure (Map, List, etc.),
+	 * and returns the matching raw values. This method does not create any
+	 * Tree objects.
+	 * 
+	 * @param value
+	 *            root of the query (Map, List, etc.)
+	 * 
+	 * @return List of matching values
+	 */
+	public List<Object> values(Object value) {
+		List<Object> results = new ArrayList<>();
+		new Execution(null, value, null, results).run();
+		return results;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	// --- EXECUTION CONTEXT ---
+
+	private final class Execution {
+
+		private final Tree node;
+		private final Object root;
+		private final List<Tree> nodes;
+		private final List<Object> values;
+
+		private Object[] keys = new Object[16];
+		private Object[] path = new Object[16];
+		private int depth;
+
+		private Execution(Tree node, Object root, List<Tree> nodes, List<Object> values) {
+			this.node = node;
+			this.root = root;
+			this.nodes = nodes;
+			this.values = values;
+		}
+
+		private final void run() {
+			if (steps.length == 0) {
+				emit(root);
+			} else {
+				steps[0].run(this, root, 0);
+			}
+		}
+
+		private final void next(Object key, Object value, int step) {
+			if (depth == keys.length) {
+				keys = Arrays.copyOf(keys, depth * 2);
+				path = Arrays.copyOf(path, depth * 2);
+			}
+			keys[depth] = key;
+			path[depth] = value;
+			depth++;
+			try {
+				if (step + 1 == steps.length) {
+					emit(value);
+				} else {
+					steps[step + 1].run(this, value, step + 1);
+				}
+			} finally {
+				depth--;
+			}
+		}
+
+		private final void emit(Object value) {
+			if (values != null) {
+				values.add(value);
+				return;
+			}
+			Tree current = node;
+			for (int i = 0; i < depth; i++) {
+				current = new Tree(current, keys[i], path[i]);
+			}
+			nodes.add(current);
+		}
+
+	}
+
+	// --- STEPS ---
+
+	private static abstract class Step {
+
+		abstract void run(Execution execution, Object value, int step);
+
+	}
+
+	private static final class Names extends Step {
+
+		private final String[] names;
+
+		private Names(String... names) {
+			this.names = names;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		final void run(Execution execution, Object value, int step) {
+			if (value instanceof Map) {
+				Map map = (Map) value;
+				for (String name : names) {
+					Object child = map.get(name);
+					if (child != null || map.containsKey(name)) {
+						execution.next(name, child, step);
+					}
+				}
+			}
+		}
+
+	}
+
+	private static class Wildcard extends Step {
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		void run(Execution execution, Object value, int step) {
+			if (value instanceof Map) {
+				for (Object object : ((Map) value).entrySet()) {
+					Map.Entry entry = (Map.Entry) object;
+					if (accept(execution, entry.getValue())) {
+						execution.next(entry.getKey(), entry.getValue(), step);
+					}
+				}
+			} else if (value instanceof Collection) {
+				int index = 0;
+				for (Object child : (Collection) value) {
+					if (accept(execution, child)) {
+						execution.next(index, child, step);
+					}
+					index++;
+				}
+			} else if (value != null && value.getClass().isArray()) {
+				int length = Array.getLength(value);
+				for (int index = 0; index < length; index++) {
+					Object child = Array.get(value, index);
+					if (accept(execution, child)) {
+						execution.next(index, child, step);
+					}
+				}
+			}
+		}
+
+		boolean accept(Execution execution, Object child) {
+			return true;
+		}
+
+	}
+
+	private static final class Filter extends Wildcard {
+
+		private final Expression expression;
+
+		private Filter(Expression expression) {
+			this.expression = expression;
+		}
+
+		@Override
+		final boolean accept(Execution execution, Object child) {
+			return isTrue(expression.eval(child, execution.root));
+		}
+
+	}
+
+	private static final class Indexes extends Step {
+
+		private final int[] indexes;
+
+		private Indexes(int[] indexes) {
+			this.indexes = indexes;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		final void run(Execution execution, Object value, int step) {
+			int size = size(value);
+			if (indexes.length > 1 && value instanceof Collection && !(value instanceof RandomAccess)) {
+				value = new ArrayList<Object>((Collection<?>) value);
+			}
+			for (int index : indexes) {
+				int i = index < 0 ? size + index : index;
+				if (i >= 0 && i < size) {
+					if (value instanceof List) {
+						execution.next(i, ((List) value).get(i), step);
+					} else if (value instanceof Collection) {
+						execution.next(i, elementAt((Collection) value, i), step);
+					} else {
+						execution.next(i, Array.get(value, i), step);
+					}
+				}
+			}
+		}
+
+	}
+
+	private static final class Slice extends Step {
+
+		private final Integer start;
+		private final Integer end;
+		private final int increment;
+
+		private Slice(Integer start, Integer end, int increment) {
+			this.start = start;
+			this.end = end;
+			this.increment = increment;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		final void run(Execution execution, Object value, int step) {
+			int size = size(value);
+			if (size == 0) {
+				return;
+			}
+			if (value instanceof Collection && !(value instanceof RandomAccess)) {
+				value = new ArrayList<Object>((Collection<?>) value);
+			}
+			if (increment > 0) {
+				int from = bound(start, 0, size);
+				int to = bound(end, size, size);
+				for (int i = from; i < to; i += increment) {
+					execution.next(i, get(value, i), step);
+				}
+			} else {
+				int from = start == null ? size - 1 : Math.min(bound(start, 0, size), size - 1);
+				int to = end == null ? -1 : bound(end, 0, size);
+				for (int i = from; i > to; i += increment) {
+					execution.next(i, get(value, i), step);
+				}
+			}
+		}
+
+		private static final int bound(Integer index, int defaultValue, int size) {
+			if (index == null) {
+				return defaultValue;
+			}
+			int i = index < 0 ? size + index : index;
+			return Math.max(0, Math.min(i, size));
+		}
+
+		@SuppressWarnings("rawtypes")
+		private static final Object get(Object value, int index) {
+			if (value instanceof List) {
+				return ((List) value).get(index);
+			}
+			return Array.get(value, index);
+		}
+
+	}
+
+	private static final class RecursiveDescent extends Step {
+
+		private final Step selector;
+
+		private RecursiveDescent(Step selector) {
+			this.selector = selector;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		final void run(Execution execution, Object value, int step) {
+			selector.run(execution, value, step);
+			if (value instanceof Map) {
+				for (Object object : ((Map) value).entrySet()) {
+					Map.Entry entry = (Map.Entry) object;
+					descend(execution, entry.getKey(), entry.getValue(), step);
+				}
+			} else if (value instanceof Collection) {
+				int index = 0;
+				for (Object child : (Collection) value) {
+					descend(execution, index++, child, step);
+				}
+			} else if (value != null && value.getClass().isArray()) {
+				int length = Array.getLength(value);
+				for (int index = 0; index < length; index++) {
+					descend(execution, index, Array.get(value, index), step);
+				}
+			}
+		}
+
+		private final void descend(Execution execution, Object key, Object child, int step) {
+			if (child instanceof Map || child instanceof Collection
+					|| (child != null && child.getClass().isArray() && !(child instanceof byte[]))) {
+				execution.keys = ensure(execution.keys, execution.depth);
+				execution.path = ensure(execution.path, execution.depth);
+				execution.keys[execution.depth] = key;
+				execution.path[execution.depth] = child;
+				execution.depth++;
+				try {
+					run(execution, child, step);
+				} finally {
+					execution.depth--;
+				}
+			}
+		}
+
+		private static final Object[] ensure(Object[] array, int depth) {
+			if (depth < array.length) {
+				return array;
+			}
+			return Arrays.copyOf(array, depth * 2);
+		}
+
+	}
+
+	// --- FILTER EXPRESSIONS ---
+
+	@FunctionalInterface
+	private static interface Expression {
+
+		Object eval(Object current, Object root);
+
+	}
+
+	// --- PARSER ---
+
+	private static final class Parser {
+
+		private final String source;
+		private int pos;
+
+		private Parser(String source) {
+			this.source = source;
+		}
+
+		// --- PATH ---
+
+		private final Step[] parsePath(boolean topLevel) {
+			List<Step> steps = new ArrayList<>();
+			skipWhitespaces();
+			if (peek() == '$' || (!topLevel && peek() == '@')) {
+				pos++;
+			} else if (topLevel && isNameChar(peek())) {
+				steps.add(new Names(parseName()));
+			}
+			while (pos < source.length()) {
+				char c = peek();
+				if (c == '.') {
+					pos++;
+					if (peek() == '.') {
+						pos++;
+						Step selector;
+						if (peek() == '[') {
+							pos++;
+							selector = parseBracket();
+						} else if (peek() == '*') {
+							pos++;
+							selector = new Wildcard();
+						} else {
+							selector = new Names(parseName());
+						}
+						steps.add(new RecursiveDescent(selector));
+					} else if (peek() == '*') {
+						pos++;
+						steps.add(new Wildcard());
+					} else {
+						steps.add(new Names(parseName()));
+					}
+				} else if (c == '[') {
+					pos++;
+					steps.add(parseBracket());
+				} else if (topLevel && Character.isWhitespace(c)) {
+					skipWhitespaces();
+				} else {
+					break;
+				}
+			}
+			return steps.toArray(new Step[steps.size()]);
+		}
+
+		private final Step parseBracket() {
+			skipWhitespaces();
+			char c = peek();
+			Step step;
+			if (c == '*') {
+				pos++;
+				step = new Wildcard();
+			} else if (c == '?') {
+				pos++;
+				expect('(');
+				Expression expression = parseOr();
+				expect(')');
+				step = new Filter(expression);
+			} else if (c == '\'' || c == '"') {
+				List<String> names = new ArrayList<>();
+				names.add(parseString());
+				skipWhitespaces();
+				while (peek() == ',') {
+					pos++;
+					skipWhitespaces();
+					names.add(parseString());
+					skipWhitespaces();
+				}
+				step = new Names(names.toArray(new String[names.size()]));
+			} else {
+				Integer first = parseInteger();
+				skipWhitespaces();
+				if (peek() == ':') {
+					pos++;
+					Integer end = parseInteger();
+					skipWhitespaces();
+					Integer increment = null;
+					if (peek() == ':') {
+						pos++;
+						increment = parseInteger();
+					}
+					if (increment != null && increment == 0) {
+						throw error("Slice step cannot be zero");
+					}
+					step = new Slice(first, end, increment == null ? 1 : increment);
+				} else {
+					if (first == null) {
+						throw error("Invalid selector");
+					}
+					List<Integer> indexes = new ArrayList<>();
+					indexes.add(first);
+					while (peek() == ',') {
+						pos++;
+						Integer index = parseInteger();
+						if (index == null) {
+							throw error("Invalid index");
+						}
+						indexes.add(index);
+						skipWhitespaces();
+					}
+					int[] array = new int[indexes.size()];
+					for (int i = 0; i < array.length; i++) {
+						array[i] = indexes.get(i);
+					}
+					step = new Indexes(array);
+				}
+			}
+			skipWhitespaces();
+			expect(']');
+			return step;
+		}
+
+		private final String parseName() {
+			int start = pos;
+			while (pos < source.length() && isNameChar(source.charAt(pos))) {
+				pos++;
+			}
+			if (start == pos) {
+				throw error("Name expected");
+			}
+			return source.substring(start, pos);
+		}
+
+		private final Integer parseInteger() {
+			skipWhitespaces();
+			int start = pos;
+			if (peek() == '-') {
+				pos++;
+			}
+			while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+				pos++;
+			}
+			if (start == pos) {
+				return null;
+			}
+			try {
+				return Integer.parseInt(source.substring(start, pos));
+			} catch (NumberFormatException cause) {
+				throw error("Invalid number");
+			}
+		}
+
+		private final String parseString() {
+			char quote = peek();
+			if (quote != '\'' && quote != '"') {
+				throw error("String expected");
+			}
+			pos++;
+			StringBuilder txt = new StringBuilder();
+			while (pos < source.length()) {
+				char c = source.charAt(pos++);
+				if (c == quote) {
+					return txt.toString();
+				}
+				if (c == '\\' && pos < source.length()) {
+					c = source.charAt(pos++);
+				}
+				txt.append(c);
+			}
+			throw error("Unterminated String");
+		}
+
+		// --- FILTER EXPRESSION ---
+
+		private final Expression parseOr() {
+			Expression left = parseAnd();
+			while (match("||")) {
+				Expression a = left;
+				Expression b = parseAnd();
+				left = (current, root) -> isTrue(a.eval(current, root)) || isTrue(b.eval(current, root));
+			}
+			return left;
+		}
+
+		private final Expression parseAnd() {
+			Expression left = parseComparison();
+			while (match("&&")) {
+				Expression a = left;
+				Expression b = parseComparison();
+				left = (current, root) -> isTrue(a.eval(current, root)) && isTrue(b.eval(current, root));
+			}
+			return left;
+		}
+
+		private final Expression parseComparison() {
+			Expression left = parseUnary();
+			String[] operators = { "==", "!=", "<=", ">=", "<", ">" };
+			for (String operator : operators) {
+				if (match(operator)) {
+					Expression a = left;
+					Expression b = parseUnary();
+					switch (operator) {
+					case "==":
+						return (current, root) -> same(a.eval(current, root), b.eval(current, root));
+					case "!=":
+						return (current, root) -> !same(a.eval(current, root), b.eval(current, root));
+					case "<=":
+						return (current, root) -> {
+							Integer cmp = compare(a.eval(current, root), b.eval(current, root));
+							return cmp != null && cmp <= 0;
+						};
+					case ">=":
+						return (current, root) -> {
+							Integer cmp = compare(a.eval(current, root), b.eval(current, root));
+							return cmp != null && cmp >= 0;
+						};
+					case "<":
+						return (current, root) -> {
+							Integer cmp = compare(a.eval(current, root), b.eval(current, root));
+							return cmp != null && cmp < 0;
+						};
+					default:
+						return (current, root) -> {
+							Integer cmp = compare(a.eval(current, root), b.eval(current, root));
+							return cmp != null && cmp > 0;
+						};
+					}
+				}
+			}
+			return left;
+		}
+
+		private final Expression parseUnary() {
+			skipWhitespaces();
+			char c = peek();
+			if (c == '!' && !source.startsWith("!=", pos)) {
+				pos++;
+				Expression operand = parseUnary();
+				return (current, root) -> !isTrue(operand.eval(current, root));
+			}
+			if (c == '(') {
+				pos++;
+				Expression expression = parseOr();
+				expect(')');
+				return expression;
+			}
+			if (c == '@' || c == '$') {
+				boolean relative = c == '@';
+				Step[] steps = parsePath(false);
+				TreeQuery query = new TreeQuery(relative ? "@" : "$", steps);
+				return (current, root) -> {
+					List<Object> values = query.values(relative ? current : root);
+					return values.isEmpty() ? MISSING : values.get(0);
+				};
+			}
+			if (c == '\'' || c == '"') {
+				String txt = parseString();
+				return (current, root) -> txt;
+			}
+			if (c == '-' || Character.isDigit(c)) {
+				int start = pos;
+				pos++;
+				while (pos < source.length()
+						&& (Character.isDigit(peek()) || peek() == '.' || peek() == 'e' || peek() == 'E')) {
+					pos++;
+				}
+				BigDecimal number;
+				try {
+					number = new BigDecimal(source.substring(start, pos));
+				} catch (NumberFormatException cause) {
+					throw error("Invalid number");
+				}
+				return (current, root) -> number;
+			}
+			if (match("true")) {
+				return (current, root) -> Boolean.TRUE;
+			}
+			if (match("false")) {
+				return (current, root) -> Boolean.FALSE;
+			}
+			if (match("null")) {
+				return (current, root) -> null;
+			}
+			throw error("Invalid filter expression");
+		}
+
+		// --- UTILITIES ---
+
+		private final boolean match(String token) {
+			skipWhitespaces();
+			if (source.startsWith(token, pos)) {
+				pos += token.length();
+				return true;
+			}
+			return false;
+		}
+
+		private final void expect(char c) {
+			skipWhitespaces();
+			if (peek() != c) {
+				throw error("'" + c + "' expected");
+			}
+			pos++;
+		}
+
+		private final char peek() {
+			return pos < source.length() ? source.charAt(pos) : 0;
+		}
+
+		private final void skipWhitespaces() {
+			while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		private static final boolean isNameChar(char c) {
+			return c != 0 && c != '.' && c != '[' && c != ']' && c != '(' && c != ')' && c != '=' && c != '!'
+					&& c != '<' && c != '>' && c != '&' && c != '|' && c != ',' && c != '\'' && c != '"' && c != '*'
+					&& c != '$' && c != '@' && !Character.isWhitespace(c);
+		}
+
+		private final IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + pos + " in query \"" + source + "\"!");
+		}
+
+	}
+
+	// --- VALUE UTILITIES ---
+
+	/**
+	 * Result of a filter path, which does not match any node.
+	 */
+	private static final Object MISSING = new Object();
+
+	private static final boolean isTrue(Object value) {
+		return value != null && value != MISSING && !Boolean.FALSE.equals(value);
+	}
+
+	private static final boolean same(Object a, Object b) {
+		if (a == MISSING || b == MISSING) {
+			return false;
+		}
+		if (a instanceof Number && b instanceof Number) {
+			Integer cmp = compare(a, b);
+			return cmp != null && cmp == 0;
+		}
+		if (a == null || b == null) {
+			return a == b;
+		}
+		if (a instanceof String || b instanceof String) {
+			return String.valueOf(a).equals(String.valueOf(b));
+		}
+		return a.equals(b);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static final Integer compare(Object a, Object b) {
+		if (a == null || b == null || a == MISSING || b == MISSING) {
+			return null;
+		}
+		if (a instanceof Number && b instanceof Number) {
+			try {
+				return toBigDecimal((Number) a).compareTo(toBigDecimal((Number) b));
+			} catch (NumberFormatException notComparable) {
+				return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+			}
+		}
+		if (a instanceof String || b instanceof String) {
+			return String.valueOf(a).compareTo(String.valueOf(b));
+		}
+		if (a instanceof Comparable && a.getClass() == b.getClass()) {
+			return ((Comparable) a).compareTo(b);
+		}
+		return null;
+	}
+
+	private static final BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		}
+		return new BigDecimal(number.toString());
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static final int size(Object value) {
+		if (value instanceof Collection) {
+			return ((Collection) value).size();
+		}
+		if (value != null && value.getClass().isArray()) {
+			return Array.getLength(value);
+		}
+		return 0;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static final Object elementAt(Collection collection, int index) {
+		int i = 0;
+		for (Object element : collection) {
+			if (i++ == index) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,238 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking file reader and writer, based on AsynchronousFileChannel. The
+ * files are transferred in 64 KB chunks, through pooled direct buffers (so the
+ * JDK does not allocate temporary direct buffers of the file's size). The
+ * returned CompletableFutures are completed by the I/O threads of the
+ * channels. Sample code:<br>
+ * <br>
+ * AsyncFiles.read(path).thenAccept((bytes) -&gt; {<br>
+ * ...<br>
+ * });
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class AsyncFiles {
+
+	// --- BUFFER POOL ---
+
+	protected static final int CHUNK_SIZE = 65536;
+
+	protected static final Pool<ByteBuffer> buffers = new Pool<>(Config.POOL_SIZE, () -> {
+		return ByteBuffer.allocateDirect(CHUNK_SIZE);
+	}, (buffer) -> {
+		return buffer.capacity();
+	});
+
+	// --- PRIVATE CONSTRUCTOR ---
+
+	private AsyncFiles() {
+	}
+
+	// --- READ FILE ---
+
+	/**
+	 * Reads the content of the specified file.
+	 * 
+	 * @param source
+	 *            path of the file
+	 * 
+	 * @return content of the file
+	 */
+	public static final CompletableFuture<byte[]> read(Path source) {
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+		AsynchronousFileChannel channel = null;
+		try {
+			channel = AsynchronousFileChannel.open(source, StandardOpenOption.READ);
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("File is too large (" + size + " bytes): " + source);
+			}
+			new ReadHandler(channel, new byte[(int) size], future).next();
+		} catch (Throwable cause) {
+			close(channel);
+			future.completeExceptionally(cause);
+		}
+		return future;
+	}
+
+	// --- WRITE FILE ---
+
+	/**
+	 * Writes the specified bytes into a file. Creates the file if it does not
+	 * exist, and overwrites the previous content.
+	 * 
+	 * @param destination
+	 *            path of the file
+	 * @param bytes
+	 *            new content of the file
+	 * 
+	 * @return future (completed when the bytes are written)
+	 */
+	public static final CompletableFuture<Void> write(Path destination, byte[] bytes) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		AsynchronousFileChannel channel = null;
+		try {
+			channel = AsynchronousFileChannel.open(destination, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			new WriteHandler(channel, bytes, future).next();
+		} catch (Throwable cause) {
+			close(channel);
+			future.completeExceptionally(cause);
+		}
+		return future;
+	}
+
+	// --- COMPLETION HANDLERS ---
+
+	protected static final class ReadHandler implements CompletionHandler<Integer, Void> {
+
+		protected final AsynchronousFileChannel channel;
+		protected final byte[] bytes;
+		protected final CompletableFuture<byte[]> future;
+		protected final ByteBuffer buffer = buffers.acquire();
+
+		protected int position;
+
+		protected ReadHandler(AsynchronousFileChannel channel, byte[] bytes, CompletableFuture<byte[]> future) {
+			this.channel = channel;
+			this.bytes = bytes;
+			this.future = future;
+		}
+
+		protected final void next() {
+			if (position >= bytes.length) {
+				finish(bytes);
+				return;
+			}
+			buffer.clear();
+			buffer.limit(Math.min(buffer.capacity(), bytes.length - position));
+			try {
+				channel.read(buffer, position, null, this);
+			} catch (Throwable cause) {
+				failed(cause, null);
+			}
+		}
+
+		@Override
+		public final void completed(Integer count, Void attachment) {
+			if (count < 0) {
+
+				// The file is truncated
+				finish(Arrays.copyOf(bytes, position));
+				return;
+			}
+			buffer.flip();
+			buffer.get(bytes, position, count);
+			position += count;
+			next();
+		}
+
+		@Override
+		public final void failed(Throwable cause, Void attachment) {
+			close(channel);
+			buffers.release(buffer);
+			future.completeExceptionally(cause);
+		}
+
+		protected final void finish(byte[] result) {
+			close(channel);
+			buffers.release(buffer);
+			future.complete(result);
+		}
+
+	}
+
+	protected static final class WriteHandler implements CompletionHandler<Integer, Void> {
+
+		protected final AsynchronousFileChannel channel;
+		protected final byte[] bytes;
+		protected final CompletableFuture<Void> future;
+		protected final ByteBuffer buffer = buffers.acquire();
+
+		/**
+		 * Number of written bytes (the buffer contains the next bytes).
+		 */
+		protected int position;
+
+		protected WriteHandler(AsynchronousFileChannel channel, byte[] bytes, CompletableFuture<Void> future) {
+			this.channel = channel;
+			this.bytes = bytes;
+			this.future = future;
+			buffer.clear();
+			buffer.limit(0);
+		}
+
+		protected final void next() {
+			if (position >= bytes.length) {
+				close(channel);
+				buffers.release(buffer);
+				future.complete(null);
+				return;
+			}
+			if (!buffer.hasRemaining()) {
+				buffer.clear();
+				buffer.put(bytes, position, Math.min(buffer.capacity(), bytes.length - position));
+				buffer.flip();
+			}
+			try {
+				channel.write(buffer, position, null, this);
+			} catch (Throwable cause) {
+				failed(cause, null);
+			}
+		}
+
+		@Override
+		public final void completed(Integer count, Void attachment) {
+			position += count;
+			next();
+		}
+
+		@Override
+		public final void failed(Throwable cause, Void attachment) {
+			close(channel);
+			buffers.release(buffer);
+			future.completeExceptionally(cause);
+		}
+
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	protected static final void close(AsynchronousFileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (Exception ignored) {
+			}
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holder of a (heap, direct or memory-mapped) ByteBuffer with explicit
+ * lifecycle. The read-only views of the "indexed" format read the data through
+ * this class, so after the segment is closed the views throw an
+ * IllegalStateException instead of reading freed memory. The views acquire
+ * the buffer once per read operation (eg. per lookup of a key, including the
+ * binary search and the decoding of the value, or per step of an iterator;
+ * see {@link #acquire()} and {@link #release()}). If the segment owns the
+ * buffer, the direct (off-heap) memory is released when the segment is closed
+ * and the last running read operation is finished, without waiting for the
+ * garbage collector. So the segment can be closed while other threads are
+ * reading it.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class BufferSegment implements AutoCloseable {
+
+	// --- BUFFERS ---
+
+	/**
+	 * The original (allocated or mapped) buffer.
+	 */
+	protected final ByteBuffer memory;
+
+	/**
+	 * Read-only slice of the original buffer (or {@code null}, if the segment
+	 * is closed).
+	 */
+	protected volatile ByteBuffer buffer;
+
+	/**
+	 * Release the memory of the original buffer on close.
+	 */
+	protected final boolean owner;
+
+	/**
+	 * Number of running read operations, plus one until the segment is
+	 * closed. The memory is released when it reaches zero.
+	 */
+	protected final AtomicInteger references = new AtomicInteger(1);
+
+	// --- CONSTRUCTORS ---
+
+	/**
+	 * Creates a segment over the specified buffer (from its position to its
+	 * limit). Closing this segment does not release the buffer's memory.
+	 * 
+	 * @param buffer
+	 *            source buffer
+	 */
+	public BufferSegment(ByteBuffer buffer) {
+		this(buffer, false);
+	}
+
+	/**
+	 * Creates a segment over the specified buffer (from its position to its
+	 * limit).
+	 * 
+	 * @param buffer
+	 *            source buffer
+	 * @param owner
+	 *            release the direct memory of the buffer on close
+	 */
+	public BufferSegment(ByteBuffer buffer, boolean owner) {
+		this.memory = buffer;
+		this.buffer = buffer.slice().asReadOnlyBuffer();
+		this.owner = owner;
+	}
+
+	// --- ACCESS ---
+
+	/**
+	 * Returns the content of the segment. The memory of the returned buffer
+	 * may be released by a concurrent {@link #close()}; use
+	 * {@link #acquire()} and {@link #release()} if the segment can be closed
+	 * by an other thread.
+	 * 
+	 * @return read-only buffer
+	 * 
+	 * @throws IllegalStateException
+	 *             if the segment is closed
+	 */
+	public ByteBuffer buffer() {
+		ByteBuffer current = buffer;
+		if (current == null) {
+			throw new IllegalStateException("Buffer segment is closed!");
+		}
+		return current;
+	}
+
+	/**
+	 * Starts a read operation. The memory of the returned buffer is not
+	 * released until the {@link #release()} method is called (even if the
+	 * segment is closed in the meantime). Sample code:<br>
+	 * <br>
+	 * ByteBuffer buffer = segment.acquire();<br>
+	 * try {<br>
+	 * int value = buffer.getInt(offset);<br>
+	 * } finally {<br>
+	 * segment.release();<br>
+	 * }
+	 * 
+	 * @return read-only buffer
+	 * 
+	 * @throws IllegalStateException
+	 *             if the segment is closed
+	 */
+	public ByteBuffer acquire() {
+		for (;;) {
+			int count = references.get();
+			if (count == 0) {
+				throw new IllegalStateException("Buffer segment is closed!");
+			}
+			if (references.compareAndSet(count, count + 1)) {
+				break;
+			}
+		}
+		ByteBuffer current = buffer;
+		if (current == null) {
+			release();
+			throw new IllegalStateException("Buffer segment is closed!");
+		}
+		return current;
+	}
+
+	/**
+	 * Finishes a read operation (started by {@link #acquire()}).
+	 */
+	public void release() {
+		if (references.decrementAndGet() == 0 && owner && memory.isDirect()) {
+			release(memory);
+		}
+	}
+
+	/**
+	 * Returns the size of the segment in bytes.
+	 * 
+	 * @return size of the segment
+	 */
+	public int size() {
+		return buffer().limit();
+	}
+
+	/**
+	 * Returns {@code true} if the segment is stored outside of the Java heap.
+	 * 
+	 * @return {@code true} if the buffer is direct (or memory-mapped)
+	 */
+	public boolean isDirect() {
+		return memory.isDirect();
+	}
+
+	/**
+	 * Returns {@code true} if the segment is closed.
+	 * 
+	 * @return {@code true} if the segment is closed
+	 */
+	public boolean isClosed() {
+		return buffer == null;
+	}
+
+	// --- LIFECYCLE ---
+
+	/**
+	 * Closes the segment. If the segment owns a direct or memory-mapped buffer,
+	 * its memory will be released immediately (or after the running read
+	 * operations of other threads).
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (buffer == null) {
+				return;
+			}
+			buffer = null;
+		}
+		release();
+	}
+
+	// --- RELEASE DIRECT MEMORY ---
+
+	/**
+	 * Releases the memory of a direct (or memory-mapped) buffer. Uses
+	 * "sun.misc.Unsafe.invokeCleaner" on Java 9+, and the buffer's Cleaner on
+	 * Java 8. If neither is available, the memory will be released by the
+	 * garbage collector.
+	 * 
+	 * @param buffer
+	 *            direct buffer (NOT a slice or duplicate)
+	 */
+	protected static final void release(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Throwable ignored) {
+
+			// Java 8 (or not supported)
+		}
+		try {
+			Method cleaner = buffer.getClass().getMethod("cleaner");
+			cleaner.setAccessible(true);
+			Object instance = cleaner.invoke(buffer);
+			if (instance != null) {
+				instance.getClass().getMethod("clean").invoke(instance);
+			}
+		} catch (Throwable ignored) {
+
+			// Released by the GC
+		}
+	}
+
+}
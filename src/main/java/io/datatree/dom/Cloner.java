@@ -0,0 +1,45 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+/**
+ * Functional Interface for cloning values of a specific type (see
+ * {@link DeepCloner#addCloner(Class, Cloner)}).
+ * 
+ * @param <T>
+ *            type of the cloned values
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@FunctionalInterface
+public interface Cloner<T> {
+
+	/**
+	 * Creates a copy of the specified (non-null) value.
+	 * 
+	 * @param from
+	 *            source object
+	 * 
+	 * @return copy of the source object
+	 * 
+	 * @throws Exception
+	 *             any exception
+	 */
+	public T clone(T from) throws Exception;
+
+}
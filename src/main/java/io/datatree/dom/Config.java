@@ -28,10 +28,15 @@ import java.util.TimeZone;
  * <li>-Ddatatree.timestamp.format="yyyy-MM-dd'T'HH:mm:ss.SSSX"</li>
  * <li>-Ddatatree.cache.size=1024</li>
  * <li>-Ddatatree.pool.size=16</li>
+ * <li>-Ddatatree.pool.max.object=1048576</li>
+ * <li>-Ddatatree.pool.max.retained=16777216</li>
  * <li>-Ddatatree.use.timestamps=true</li>
  * <li>-Ddatatree.adapter.packages=your.adapter.package1,your.adapter.package2
  * </li>
  * <li>-Ddatatree.base64.codec=your.base64.Codec</li>
+ * <li>-Ddatatree.parallel.threshold=4096</li>
+ * <li>-Ddatatree.jfr.events=true</li>
+ * <li>-Ddatatree.detect.java=true</li>
  * </ul>
  * 
  * @author Andras Berkes [andras.berkes@programmer.net]
@@ -58,6 +63,14 @@ public class Config {
 	// -Ddatatree.pool.size=16
 	public static final int POOL_SIZE;
 
+	// Maximum size of a pooled object (eg. StringBuilder), in bytes
+	// -Ddatatree.pool.max.object=1048576
+	public static final int POOL_MAX_OBJECT_SIZE;
+
+	// Maximum size of all objects in a pool, in bytes
+	// -Ddatatree.pool.max.retained=16777216
+	public static final long POOL_MAX_RETAINED_SIZE;
+
 	// Write dates as formatted timestamps instead of msec values
 	// -Ddatatree.use.timestamps=true
 	public static final boolean USE_TIMESTAMPS;
@@ -70,6 +83,18 @@ public class Config {
 	// -Ddatatree.base64.codec=your.base64.Codec
 	public static final String BASE64_CODEC;
 
+	// Minimum size of a container that is split into parallel tasks
+	// -Ddatatree.parallel.threshold=4096
+	public static final int PARALLEL_THRESHOLD;
+
+	// Create Java Flight Recorder events (if the JFR API is available)
+	// -Ddatatree.jfr.events=true
+	public static final boolean JFR_EVENTS;
+
+	// Detect the Java serialization format (Tree(byte[]) constructor)
+	// -Ddatatree.detect.java=true
+	public static final boolean DETECT_JAVA;
+
 	/**
 	 * Name of the metadata node. Metadata node contains processing
 	 * instructions, similar to "head" block in HTML pages.<br>
@@ -114,6 +139,23 @@ public class Config {
 		}
 		POOL_SIZE = size;
 
+		// Size limits of the pooled objects
+		try {
+			size = Integer.parseInt(System.getProperty("datatree.pool.max.object", "1048576"));
+		} catch (Exception cause) {
+			cause.printStackTrace();
+			size = 1048576;
+		}
+		POOL_MAX_OBJECT_SIZE = size;
+		long retained;
+		try {
+			retained = Long.parseLong(System.getProperty("datatree.pool.max.retained", "16777216"));
+		} catch (Exception cause) {
+			cause.printStackTrace();
+			retained = 16777216L;
+		}
+		POOL_MAX_RETAINED_SIZE = retained;
+
 		// Use formatted timestamps (Date -> JSON)
 		USE_TIMESTAMPS = "true".equalsIgnoreCase(System.getProperty("datatree.use.timestamps", "true"));
 
@@ -122,9 +164,24 @@ public class Config {
 
 		// BASE64 implementation (class name)
 		BASE64_CODEC = System.getProperty("datatree.base64.codec");
-		
+
+		// Minimum size of a container that is cloned in parallel tasks
+		try {
+			size = Integer.parseInt(System.getProperty("datatree.parallel.threshold", "4096"));
+		} catch (Exception cause) {
+			cause.printStackTrace();
+			size = 4096;
+		}
+		PARALLEL_THRESHOLD = Math.max(size, 2);
+
+		// Java Flight Recorder events
+		JFR_EVENTS = "true".equalsIgnoreCase(System.getProperty("datatree.jfr.events", "true"));
+
+		// Format detection of Java-serialized sources
+		DETECT_JAVA = "true".equalsIgnoreCase(System.getProperty("datatree.detect.java", "false"));
+
 		// Name of the metadata node
 		META = System.getProperty("datatree.meta.name", "_meta");
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
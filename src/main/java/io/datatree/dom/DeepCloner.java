@@ -19,25 +19,56 @@ package io.datatree.dom;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Currency;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+import io.datatree.dom.converters.DataConverterRegistry;
 
 /**
- * Recursive deep cloner utility.
+ * Recursive deep cloner utility. The cloning strategy of a class (immutable,
+ * registered cloner, array copy, public "clone" method, copy-constructor) is
+ * determined at the first use, and cached per class. The "clone" method of
+ * the JDK classes is used as is; the fields of the copies of other Cloneable
+ * classes, which are still shared with the source, are cloned recursively
+ * (the fields which cannot be cloned remain shared). Java serialization is
+ * used only as a last resort, for unknown Serializable classes. The
+ * registration methods of this class are thread-safe.
  * 
  * @author Andras Berkes [andras.berkes@programmer.net]
  */
@@ -46,14 +77,49 @@ public class DeepCloner {
 	// --- IMMUTABLE CLASSES ---
 
 	/**
-	 * List of immutable objects (Long, Integer, String, etc.).
+	 * Set of immutable classes (Long, Integer, String, etc.).
+	 */
+	private static final Set<Class<?>> immutableClasses = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Classes removed from the set of immutable classes (overrides the
+	 * built-in rules, eg. for enums and "java.time" classes).
 	 */
-	private static final HashSet<Class<?>> immutableClasses = new HashSet<>(64);
+	private static final Set<Class<?>> mutableClasses = ConcurrentHashMap.newKeySet();
+
+	// --- CUSTOM CLONERS ---
+
+	/**
+	 * Registered cloners by class.
+	 */
+	private static final ConcurrentHashMap<Class<?>, Cloner<Object>> cloners = new ConcurrentHashMap<>();
+
+	// --- CACHED CLONING STRATEGIES ---
+
+	private static final Cloner<Object> IMMUTABLE = (from) -> {
+		return from;
+	};
+
+	private static final Cloner<Object> DATE = (from) -> {
+		return new Date(((Date) from).getTime());
+	};
+
+	private static final ClassValue<Cloner<Object>> strategies = new ClassValue<Cloner<Object>>() {
+
+		@Override
+		protected final Cloner<Object> computeValue(Class<?> type) {
+			return createStrategy(type);
+		}
+
+	};
+
+	// --- BUILT-IN IMMUTABLE CLASSES ---
 
 	static {
-		addImmutableClass(String.class, Boolean.class, BigDecimal.class, BigInteger.class, InetAddress.class,
-				Inet4Address.class, Inet6Address.class, Long.class, Double.class, Float.class, Short.class, Byte.class,
-				Integer.class);
+		addImmutableClass(String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class,
+				Long.class, Float.class, Double.class, BigDecimal.class, BigInteger.class, InetAddress.class,
+				Inet4Address.class, Inet6Address.class, InetSocketAddress.class, UUID.class, Locale.class,
+				Currency.class, Pattern.class, URI.class, URL.class, File.class, Class.class);
 	}
 
 	// --- PRIVATE CONSTRUCTOR ---
@@ -62,25 +128,67 @@ public class DeepCloner {
 	}
 
 	/**
-	 * Adds immutable classes (for faster cloning). This method is not
-	 * thread-safe!
+	 * Adds immutable classes (for faster cloning). This method is
+	 * thread-safe.
 	 * 
 	 * @param immutableClass
 	 *            classes
 	 */
 	public static final void addImmutableClass(Class<?>... immutableClass) {
-		immutableClasses.addAll(Arrays.asList(immutableClass));
+		List<Class<?>> classes = Arrays.asList(immutableClass);
+		immutableClasses.addAll(classes);
+		mutableClasses.removeAll(classes);
+		invalidate(immutableClass);
 	}
 
 	/**
-	 * Removes mutable classes from internal Set. This method is not
-	 * thread-safe!
+	 * Removes mutable classes from internal Set. This method is thread-safe.
 	 * 
 	 * @param mutableClass
 	 *            classes
 	 */
 	public static final void removeImmutableClass(Class<?>... mutableClass) {
-		immutableClasses.removeAll(Arrays.asList(mutableClass));
+		List<Class<?>> classes = Arrays.asList(mutableClass);
+		immutableClasses.removeAll(classes);
+		mutableClasses.addAll(classes);
+		invalidate(mutableClass);
+	}
+
+	/**
+	 * Registers a custom cloner for the specified class. This method is
+	 * thread-safe. Sample code:<br>
+	 * <br>
+	 * DeepCloner.addCloner(StringBuilder.class, (from) -&gt; {<br>
+	 * return new StringBuilder(from);<br>
+	 * });
+	 * 
+	 * @param type
+	 *            class of the cloned values
+	 * @param cloner
+	 *            cloner function
+	 */
+	@SuppressWarnings("unchecked")
+	public static final <T> void addCloner(Class<T> type, Cloner<T> cloner) {
+		cloners.put(type, (Cloner<Object>) cloner);
+		invalidate(type);
+	}
+
+	/**
+	 * Removes the custom cloner of the specified class. This method is
+	 * thread-safe.
+	 * 
+	 * @param type
+	 *            class of the cloned values
+	 */
+	public static final void removeCloner(Class<?> type) {
+		cloners.remove(type);
+		invalidate(type);
+	}
+
+	private static final void invalidate(Class<?>... types) {
+		for (Class<?> type : types) {
+			strategies.remove(type);
+		}
 	}
 
 	// --- VALUE / MAP / LIST / SET CLONER ---
@@ -114,21 +222,370 @@ public class DeepCloner {
 			return toCollection;
 		}
 
+		// Cloning other values (by the cached strategy)
+		return strategies.get(from.getClass()).clone(from);
+	}
+
+	// --- CLONING STRATEGIES ---
+
+	protected static final Cloner<Object> createStrategy(Class<?> type) {
+
+		// Load the (eg. MongoDB / BSON) converter set of the type
+		DataConverterRegistry.prepare(type);
+
+		// Registered cloner
+		Cloner<Object> cloner = cloners.get(type);
+		if (cloner != null) {
+			return cloner;
+		}
+
 		// "Cloning" immutable objects
-		if (immutableClasses.contains(from.getClass())) {
-			return from;
+		if (!mutableClasses.contains(type)) {
+			if (immutableClasses.contains(type) || Enum.class.isAssignableFrom(type)
+					|| type.getName().startsWith("java.time.")) {
+				return IMMUTABLE;
+			}
+		}
+
+		// Cloning arrays
+		if (type.isArray()) {
+			if (type.getComponentType().isPrimitive()) {
+				return DeepCloner::shallowClone;
+			}
+			return DeepCloner::cloneArray;
 		}
 
-		// Cloning byte arrays
-		if (from instanceof byte[]) {
-			byte[] src = (byte[]) from;
-			byte[] dst = new byte[src.length];
-			System.arraycopy(src, 0, dst, 0, src.length);
-			return dst;
+		// Cloning Dates
+		if (type == Date.class) {
+			return DATE;
 		}
 
-		// Cloning via object serialization
-		return deserialize(serialize(from));
+		// Cloning by the public "clone" method
+		if (Cloneable.class.isAssignableFrom(type)) {
+			try {
+				Method method = type.getMethod("clone");
+				if (!Modifier.isAbstract(method.getModifiers())) {
+					method.setAccessible(true);
+					if (isJdkClass(type)) {
+						return (from) -> {
+							return method.invoke(from);
+						};
+					}
+
+					// The "clone" method may be shallow (Object.clone)
+					Field[] fields = getReferenceFields(type);
+					return (from) -> {
+						return cloneFields(method, fields, from);
+					};
+				}
+			} catch (Exception ignored) {
+
+				// Not a public method (or inaccessible fields)
+			}
+		}
+
+		// Cloning by copy-constructor
+		try {
+			Constructor<?> constructor = type.getConstructor(type);
+			return (from) -> {
+				return constructor.newInstance(from);
+			};
+		} catch (Exception ignored) {
+
+			// Copy-constructor not found
+		}
+
+		// Cloning via object serialization (slow, last resort)
+		if (Serializable.class.isAssignableFrom(type)) {
+			return (from) -> {
+				return deserialize(serialize(from));
+			};
+		}
+		return (from) -> {
+			throw new UnsupportedOperationException("Unable to clone instance of " + type.getName() + "!");
+		};
+	}
+
+	/**
+	 * Copies of the objects (cloned by their "clone" method) in the current
+	 * thread (to handle circular references).
+	 */
+	private static final ThreadLocal<IdentityHashMap<Object, Object>> copies = new ThreadLocal<>();
+
+	/**
+	 * Invokes the "clone" method of the object, then clones the fields of the
+	 * copy, which are still shared with the source. The fields which cannot
+	 * be cloned (eg. locks, Loggers) remain shared.
+	 */
+	protected static final Object cloneFields(Method method, Field[] fields, Object from) throws Exception {
+		IdentityHashMap<Object, Object> map = copies.get();
+		boolean first = map == null;
+		if (first) {
+			map = new IdentityHashMap<>();
+			copies.set(map);
+		} else {
+			Object copy = map.get(from);
+			if (copy != null) {
+				return copy;
+			}
+		}
+		try {
+			Object to = method.invoke(from);
+			if (to == from || to == null) {
+				return to;
+			}
+			map.put(from, to);
+			for (Field field : fields) {
+				Object value = field.get(to);
+				if (value == null || value != field.get(from)) {
+					continue;
+				}
+				Object copy = map.get(value);
+				if (copy == null) {
+					try {
+						copy = clone(value);
+					} catch (Exception unsupported) {
+
+						// Keep the original value
+						continue;
+					}
+				}
+				field.set(to, copy);
+			}
+			return to;
+		} finally {
+			if (first) {
+				copies.remove();
+			}
+		}
+	}
+
+	protected static final boolean isJdkClass(Class<?> type) {
+		String name = type.getName();
+		return name.startsWith("java.") || name.startsWith("javax.");
+	}
+
+	protected static final Field[] getReferenceFields(Class<?> type) {
+		ArrayList<Field> fields = new ArrayList<>();
+		for (Class<?> c = type; c != null && !isJdkClass(c); c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!field.getType().isPrimitive() && !Modifier.isStatic(field.getModifiers())) {
+					field.setAccessible(true);
+					fields.add(field);
+				}
+			}
+		}
+		return fields.toArray(new Field[fields.size()]);
+	}
+
+	protected static final Object cloneArray(Object from) throws Exception {
+		int length = Array.getLength(from);
+		Object array = Array.newInstance(from.getClass().getComponentType(), length);
+		for (int i = 0; i < length; i++) {
+			Array.set(array, i, clone(Array.get(from, i)));
+		}
+		return array;
+	}
+
+	// --- PARALLEL (FORK-JOIN) CLONER ---
+
+	/**
+	 * Creates a deep copy of the specified value using the common
+	 * ForkJoinPool. Maps and Collections larger than the
+	 * "datatree.parallel.threshold" System Property (default 4096 elements)
+	 * are split into parallel subtasks, the smaller containers are cloned
+	 * sequentially. The order of the elements (of Maps, Lists and Sets) is
+	 * preserved.
+	 * 
+	 * @param from
+	 *            source object
+	 * 
+	 * @return deep copy of the source object
+	 * 
+	 * @throws CloneFailure
+	 *             unable to clone a value (the cause is the original
+	 *             exception)
+	 */
+	public static final Object parallelClone(Object from) {
+		return parallelClone(from, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a deep copy of the specified value using the specified
+	 * ForkJoinPool.
+	 * 
+	 * @param from
+	 *            source object
+	 * @param pool
+	 *            ForkJoinPool of the cloner tasks
+	 * 
+	 * @return deep copy of the source object
+	 * 
+	 * @throws CloneFailure
+	 *             unable to clone a value (the cause is the original
+	 *             exception)
+	 */
+	public static final Object parallelClone(Object from, ForkJoinPool pool) {
+		if (ForkJoinTask.getPool() == pool) {
+			return cloneInParallel(from);
+		}
+		return pool.invoke(new CloneTask(from));
+	}
+
+	@SuppressWarnings("unchecked")
+	protected static final Object cloneInParallel(Object from) {
+
+		// Cloning "null" value
+		if (from == null) {
+			return null;
+		}
+
+		// Cloning Maps
+		if (from instanceof Map) {
+			Map<Object, Object> fromMap = (Map<Object, Object>) from;
+			int size = fromMap.size();
+			Map<Object, Object> toMap = new LinkedHashMap<>(size + 1, 1);
+			if (size < Config.PARALLEL_THRESHOLD) {
+				for (Map.Entry<Object, Object> entry : fromMap.entrySet()) {
+					toMap.put(entry.getKey(), cloneInParallel(entry.getValue()));
+				}
+				return toMap;
+			}
+			Object[] keys = new Object[size];
+			Object[] values = new Object[size];
+			int i = 0;
+			for (Map.Entry<Object, Object> entry : fromMap.entrySet()) {
+				keys[i] = entry.getKey();
+				values[i++] = entry.getValue();
+			}
+			new RangeTask(values, 0, size).invoke();
+			for (i = 0; i < size; i++) {
+				toMap.put(keys[i], values[i]);
+			}
+			return toMap;
+		}
+
+		// Cloning collections (Lists and Sets)
+		if (from instanceof Collection) {
+			Collection<Object> fromCollection = (Collection<Object>) from;
+			int size = fromCollection.size();
+			Collection<Object> toCollection = from instanceof List ? new ArrayList<Object>(size + 1)
+					: new LinkedHashSet<Object>();
+			if (size < Config.PARALLEL_THRESHOLD) {
+				for (Object object : fromCollection) {
+					toCollection.add(cloneInParallel(object));
+				}
+				return toCollection;
+			}
+			Object[] values = fromCollection.toArray();
+			new RangeTask(values, 0, values.length).invoke();
+			toCollection.addAll(Arrays.asList(values));
+			return toCollection;
+		}
+
+		// Cloning other values (by the cached strategy)
+		try {
+			return strategies.get(from.getClass()).clone(from);
+		} catch (Exception cause) {
+			throw new CloneFailure(cause);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	protected static final class CloneTask extends RecursiveTask<Object> {
+
+		private final Object from;
+
+		protected CloneTask(Object from) {
+			this.from = from;
+		}
+
+		@Override
+		protected final Object compute() {
+			return cloneInParallel(from);
+		}
+
+	}
+
+	@SuppressWarnings("serial")
+	protected static final class RangeTask extends RecursiveAction {
+
+		private final Object[] values;
+		private final int start;
+		private final int end;
+
+		protected RangeTask(Object[] values, int start, int end) {
+			this.values = values;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected final void compute() {
+			if (end - start <= Math.max(Config.PARALLEL_THRESHOLD / 4, 1)) {
+				for (int i = start; i < end; i++) {
+					values[i] = cloneInParallel(values[i]);
+				}
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new RangeTask(values, start, middle), new RangeTask(values, middle, end));
+		}
+
+	}
+
+	/**
+	 * Thrown by the parallel cloner when a value cannot be cloned (eg. an
+	 * unknown, non-Serializable object). The cause is the original exception.
+	 */
+	@SuppressWarnings("serial")
+	public static final class CloneFailure extends RuntimeException {
+
+		protected CloneFailure(Exception cause) {
+			super(cause);
+		}
+
+	}
+
+	// --- SHALLOW CONTAINER COPY ---
+
+	/**
+	 * Creates a shallow copy of a container (Map, List, Set or array). The
+	 * copy has the same type of ordering as the source container, but the
+	 * sub-containers and values are shared between the source and the copy.
+	 * Other (non-container) values are returned without copying.
+	 * 
+	 * @param from
+	 *            source container
+	 * 
+	 * @return shallow copy of the container
+	 */
+	@SuppressWarnings("unchecked")
+	public static final Object shallowClone(Object from) {
+		if (from == null) {
+			return null;
+		}
+		if (from instanceof Map) {
+			Map<Object, Object> fromMap = (Map<Object, Object>) from;
+			Map<Object, Object> toMap = new LinkedHashMap<>(fromMap.size() + 1, 1);
+			toMap.putAll(fromMap);
+			return toMap;
+		}
+		if (from instanceof List) {
+			return from instanceof ArrayList ? new ArrayList<Object>((List<Object>) from)
+					: new LinkedList<Object>((List<Object>) from);
+		}
+		if (from instanceof Collection) {
+			return new LinkedHashSet<Object>((Collection<Object>) from);
+		}
+		Class<?> type = from.getClass();
+		if (type.isArray()) {
+			int length = Array.getLength(from);
+			Object array = Array.newInstance(type.getComponentType(), length);
+			System.arraycopy(from, 0, array, 0, length);
+			return array;
+		}
+		return from;
 	}
 
 	private static final byte[] serialize(Object object) throws IOException {
@@ -144,4 +601,4 @@ public class DeepCloner {
 		return ois.readObject();
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,271 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events of the DataTree API. The event types are
+ * created at runtime by the "jdk.jfr.EventFactory" (Java 11, or Java 8 update
+ * 262 and later), using reflection, so the API remains compatible with older
+ * Java runtimes (where this class does nothing). If no recording is running
+ * (or the event type is disabled), {@link #begin(int)} returns {@code null}
+ * without creating an event. Event types and default thresholds:
+ * <ul>
+ * <li>io.datatree.Parse (format, size) - 1 ms</li>
+ * <li>io.datatree.Write (format, size) - 1 ms</li>
+ * <li>io.datatree.Clone (type, items) - 1 ms</li>
+ * <li>io.datatree.AdapterScan (packages, formats) - 0 ms</li>
+ * <li>io.datatree.DateParse (pattern, length) - 100 us</li>
+ * </ul>
+ * The thresholds can be changed in the JFR settings (eg.
+ * "io.datatree.Parse#threshold=0 ms"). The events can be disabled by the
+ * "datatree.jfr.events=false" System Property. Sample code:<br>
+ * <br>
+ * Object event = FlightEvents.begin(FlightEvents.PARSE);<br>
+ * Object value = reader.parse(bytes);<br>
+ * FlightEvents.commit(event, "json", bytes.length);
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class FlightEvents {
+
+	// --- EVENT TYPES ---
+
+	public static final int PARSE = 0;
+	public static final int WRITE = 1;
+	public static final int CLONE = 2;
+	public static final int ADAPTER_SCAN = 3;
+	public static final int DATE_PARSE = 4;
+
+	// --- EVENT FACTORIES ---
+
+	private static final Object[] factories = new Object[5];
+
+	/**
+	 * Events for the "isEnabled" checks.
+	 */
+	private static final Object[] prototypes = new Object[5];
+
+	// --- EVENT METHODS ---
+
+	private static final MethodHandle newEvent;
+	private static final MethodHandle isEnabled;
+	private static final MethodHandle begin;
+	private static final MethodHandle end;
+	private static final MethodHandle shouldCommit;
+	private static final MethodHandle set;
+	private static final MethodHandle commit;
+
+	private static final boolean available;
+
+	// --- CREATE EVENT TYPES ---
+
+	static {
+		MethodHandle[] handles = new MethodHandle[7];
+		boolean loaded = false;
+		if (Config.JFR_EVENTS) {
+			try {
+				ClassLoader loader = ClassLoader.getSystemClassLoader();
+				Class<?> eventClass = Class.forName("jdk.jfr.Event", false, loader);
+				Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory", false, loader);
+				Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+				Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor", false, loader);
+				Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+				Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+				Method create = factoryClass.getMethod("create", List.class, List.class);
+				EventType[] types = new EventType[] {
+						new EventType("io.datatree.Parse", "DataTree Parse", "1 ms", true, "format", "Format", "size",
+								"Size"),
+						new EventType("io.datatree.Write", "DataTree Write", "1 ms", true, "format", "Format", "size",
+								"Size"),
+						new EventType("io.datatree.Clone", "DataTree Clone", "1 ms", true, "type", "Type", "items",
+								"Items"),
+						new EventType("io.datatree.AdapterScan", "DataTree Adapter Scan", "0 ms", true, "packages",
+								"Packages", "formats", "Formats"),
+						new EventType("io.datatree.DateParse", "DataTree Date Parse", "100 us", false, "pattern",
+								"Pattern", "length", "Length") };
+				for (int i = 0; i < types.length; i++) {
+					EventType type = types[i];
+					List<Object> annotations = new ArrayList<>();
+					annotations.add(annotation.newInstance(loadAnnotation(loader, "Name"), type.name));
+					annotations.add(annotation.newInstance(loadAnnotation(loader, "Label"), type.label));
+					annotations.add(
+							annotation.newInstance(loadAnnotation(loader, "Category"), new String[] { "DataTree" }));
+					annotations.add(annotation.newInstance(loadAnnotation(loader, "Threshold"), type.threshold));
+					annotations.add(annotation.newInstance(loadAnnotation(loader, "StackTrace"), type.stackTrace));
+					List<Object> fields = Arrays.asList(
+							descriptor.newInstance(String.class, type.textField, Collections.singletonList(
+									annotation.newInstance(loadAnnotation(loader, "Label"), type.textLabel))),
+							descriptor.newInstance(long.class, type.numberField, Collections.singletonList(
+									annotation.newInstance(loadAnnotation(loader, "Label"), type.numberLabel))));
+					factories[i] = create.invoke(null, annotations, fields);
+				}
+
+				// Method handles (with Object parameters)
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				handles[0] = lookup.unreflect(factoryClass.getMethod("newEvent"))
+						.asType(MethodType.methodType(Object.class, Object.class));
+				handles[1] = lookup.unreflect(eventClass.getMethod("isEnabled"))
+						.asType(MethodType.methodType(boolean.class, Object.class));
+				handles[2] = lookup.unreflect(eventClass.getMethod("begin"))
+						.asType(MethodType.methodType(void.class, Object.class));
+				handles[3] = lookup.unreflect(eventClass.getMethod("end"))
+						.asType(MethodType.methodType(void.class, Object.class));
+				handles[4] = lookup.unreflect(eventClass.getMethod("shouldCommit"))
+						.asType(MethodType.methodType(boolean.class, Object.class));
+				handles[5] = lookup.unreflect(eventClass.getMethod("set", int.class, Object.class))
+						.asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+				handles[6] = lookup.unreflect(eventClass.getMethod("commit"))
+						.asType(MethodType.methodType(void.class, Object.class));
+				for (int i = 0; i < factories.length; i++) {
+					prototypes[i] = (Object) handles[0].invokeExact(factories[i]);
+				}
+				loaded = true;
+			} catch (Throwable notAvailable) {
+
+				// Java Flight Recorder API is not available
+			}
+		}
+		newEvent = handles[0];
+		isEnabled = handles[1];
+		begin = handles[2];
+		end = handles[3];
+		shouldCommit = handles[4];
+		set = handles[5];
+		commit = handles[6];
+		available = loaded;
+	}
+
+	// --- PRIVATE CONSTRUCTOR ---
+
+	private FlightEvents() {
+	}
+
+	// --- BEGIN EVENT ---
+
+	/**
+	 * Returns {@code true} if the Java Flight Recorder API is available (and
+	 * the events are not disabled by the "datatree.jfr.events" System
+	 * Property).
+	 * 
+	 * @return {@code true} if the events are available
+	 */
+	public static final boolean isAvailable() {
+		return available;
+	}
+
+	/**
+	 * Creates and starts an event (if the event type is enabled in the current
+	 * recording).
+	 * 
+	 * @param type
+	 *            type of the event (eg. {@link #PARSE})
+	 * 
+	 * @return started event (or {@code null})
+	 */
+	public static final Object begin(int type) {
+		if (!available) {
+			return null;
+		}
+		try {
+			if (!(boolean) isEnabled.invokeExact(prototypes[type])) {
+				return null;
+			}
+			Object event = (Object) newEvent.invokeExact(factories[type]);
+			begin.invokeExact(event);
+			return event;
+		} catch (Throwable ignored) {
+			return null;
+		}
+	}
+
+	// --- COMMIT EVENT ---
+
+	/**
+	 * Ends the specified event, and writes it to the recording (if the
+	 * duration of the event exceeds the threshold).
+	 * 
+	 * @param event
+	 *            event (created by the {@link #begin(int)} method, or
+	 *            {@code null})
+	 * @param text
+	 *            first (String) field of the event (eg. format)
+	 * @param number
+	 *            second (numeric) field of the event (eg. size)
+	 */
+	public static final void commit(Object event, String text, long number) {
+		if (event == null) {
+			return;
+		}
+		try {
+			end.invokeExact(event);
+			if ((boolean) shouldCommit.invokeExact(event)) {
+				set.invokeExact(event, 0, (Object) text);
+				set.invokeExact(event, 1, (Object) number);
+				commit.invokeExact(event);
+			}
+		} catch (Throwable ignored) {
+
+			// Do nothing
+		}
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Annotation> loadAnnotation(ClassLoader loader, String name)
+			throws ClassNotFoundException {
+		return (Class<? extends Annotation>) Class.forName("jdk.jfr." + name, false, loader);
+	}
+
+	private static final class EventType {
+
+		private final String name;
+		private final String label;
+		private final String threshold;
+		private final boolean stackTrace;
+		private final String textField;
+		private final String textLabel;
+		private final String numberField;
+		private final String numberLabel;
+
+		private EventType(String name, String label, String threshold, boolean stackTrace, String textField,
+				String textLabel, String numberField, String numberLabel) {
+			this.name = name;
+			this.label = label;
+			this.threshold = threshold;
+			this.stackTrace = stackTrace;
+			this.textField = textField;
+			this.textLabel = textLabel;
+			this.numberField = numberField;
+			this.numberLabel = numberLabel;
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+/**
+ * Recognizes a data format by the leading (magic) bytes of the source. The
+ * detectors are registered in the {@link FormatDetectorRegistry}. Sample
+ * detector:<br>
+ * <br>
+ * FormatDetectorRegistry.setDetector("custom", (source) -&gt; {<br>
+ * return source.length &gt; 1 &amp;&amp; source[0] == 'C' &amp;&amp; source[1] == 'F';<br>
+ * });
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@FunctionalInterface
+public interface FormatDetector {
+
+	/**
+	 * Returns {@code true} if the specified source is in the format of this
+	 * detector. Implementations should inspect only the first few bytes of the
+	 * source.
+	 * 
+	 * @param source
+	 *            source bytes (not empty)
+	 * 
+	 * @return {@code true} if the format is recognized
+	 */
+	boolean matches(byte[] source);
+
+}
@@ -0,0 +1,271 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of format detectors. The detectors check the leading (magic)
+ * bytes of the source, so the format of a byte array (or InputStream) is
+ * recognized in constant time. The Tree(byte[]) and Tree(InputStream)
+ * constructors use this registry when the format is not specified; sources
+ * in unknown formats are parsed as JSON. Built-in detectors, in the order of
+ * their checks: "bson", "binary", "indexed", "ion", "smile", "cbor" and
+ * "msgpack" (the readers of the "bson", "ion", "smile", "cbor" and "msgpack"
+ * formats are in the "datatree-adapters" package). The custom detectors are
+ * checked before the built-in ones. The detector of the Java serialization
+ * format is not enabled by default, because it would pass untrusted input
+ * to the ObjectInputStream; it can be enabled by the
+ * "-Ddatatree.detect.java=true" System Property, or by the
+ * <code>setDetector("java", FormatDetectorRegistry.JAVA)</code> call. Sample
+ * code:<br>
+ * <br>
+ * Tree node = new Tree(bytesInAnyFormat);<br>
+ * <br>
+ * Registering a custom detector:<br>
+ * <br>
+ * FormatDetectorRegistry.setDetector("custom", (source) -&gt; {<br>
+ * return source[0] == 'C';<br>
+ * });
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class FormatDetectorRegistry {
+
+	// --- JAVA SERIALIZATION DETECTOR ---
+
+	/**
+	 * Detector of the Java serialization format (or the JSON fallback of the
+	 * "java" format). Not enabled by default.
+	 */
+	public static final FormatDetector JAVA = (source) -> {
+		return startsWith(source, 1, 0xAC, 0xED) || startsWith(source, 0, '{') || startsWith(source, 0, '[');
+	};
+
+	// --- DETECTOR REGISTRY ---
+
+	/**
+	 * Custom detectors (the last registered is the first).
+	 */
+	private static Map<String, FormatDetector> customDetectors = Collections.emptyMap();
+
+	/**
+	 * Built-in detectors (the more specific is the first).
+	 */
+	private static Map<String, FormatDetector> builtinDetectors = Collections.emptyMap();
+
+	/**
+	 * All detectors, in the order of their checks.
+	 */
+	private static volatile Map<String, FormatDetector> detectors = Collections.emptyMap();
+
+	/**
+	 * Cached results of the "TreeReaderRegistry.isAvailable" method.
+	 */
+	private static final ConcurrentHashMap<String, Boolean> availableReaders = new ConcurrentHashMap<>();
+
+	// --- BUILT-IN DETECTORS ---
+
+	static {
+
+		// BSON document (little-endian length, closed by a zero byte)
+		addBuiltinDetector("bson", (source) -> {
+			if (source.length < 5 || source[source.length - 1] != 0) {
+				return false;
+			}
+			int length = (source[0] & 0xFF) | (source[1] & 0xFF) << 8 | (source[2] & 0xFF) << 16
+					| (source[3] & 0xFF) << 24;
+			return length == source.length;
+		});
+
+		// Datatree formats ("DTB1" and "DTI1" headers)
+		addBuiltinDetector("binary", (source) -> {
+			return startsWith(source, 'D', 'T', 'B', 1);
+		});
+		addBuiltinDetector("indexed", (source) -> {
+			return startsWith(source, 'D', 'T', 'I', 1);
+		});
+
+		// Amazon Ion (binary version marker)
+		addBuiltinDetector("ion", (source) -> {
+			return startsWith(source, 0xE0, 0x01, 0x00, 0xEA);
+		});
+
+		// Smile (":)\n" header)
+		addBuiltinDetector("smile", (source) -> {
+			return startsWith(source, ':', ')', '\n');
+		});
+
+		// CBOR (self-described CBOR, or map)
+		addBuiltinDetector("cbor", (source) -> {
+			int first = source[0] & 0xFF;
+			return startsWith(source, 0xD9, 0xD9, 0xF7) || (first >= 0xA0 && first <= 0xBF);
+		});
+
+		// MessagePack (fixmap, map16, map32, array16, array32)
+		addBuiltinDetector("msgpack", (source) -> {
+			int first = source[0] & 0xFF;
+			return (first >= 0x80 && first <= 0x8F) || (first >= 0xDC && first <= 0xDF);
+		});
+
+		// Java serialization (opt-in)
+		if (Config.DETECT_JAVA) {
+			setDetector("java", JAVA);
+		}
+	}
+
+	// --- PRIVATE CONSTRUCTOR ---
+
+	private FormatDetectorRegistry() {
+	}
+
+	// --- REGISTER DETECTOR ---
+
+	/**
+	 * Binds the given FormatDetector instance to the specified data format.
+	 * Custom detectors are checked before the built-in ones (and the last
+	 * registered custom detector is checked first).
+	 * 
+	 * @param format
+	 *            name of the format (eg. "cbor", "custom", etc.)
+	 * @param detector
+	 *            FormatDetector instance
+	 */
+	public static final synchronized void setDetector(String format, FormatDetector detector) {
+		LinkedHashMap<String, FormatDetector> copy = new LinkedHashMap<>();
+		String key = format.toLowerCase();
+		copy.put(key, detector);
+		for (Map.Entry<String, FormatDetector> entry : customDetectors.entrySet()) {
+			if (!key.equals(entry.getKey())) {
+				copy.put(entry.getKey(), entry.getValue());
+			}
+		}
+		customDetectors = copy;
+		update();
+	}
+
+	private static final synchronized void addBuiltinDetector(String format, FormatDetector detector) {
+		LinkedHashMap<String, FormatDetector> copy = new LinkedHashMap<>(builtinDetectors);
+		copy.put(format, detector);
+		builtinDetectors = copy;
+		update();
+	}
+
+	private static final void update() {
+		LinkedHashMap<String, FormatDetector> copy = new LinkedHashMap<>(customDetectors);
+		for (Map.Entry<String, FormatDetector> entry : builtinDetectors.entrySet()) {
+			copy.putIfAbsent(entry.getKey(), entry.getValue());
+		}
+		detectors = copy;
+	}
+
+	// --- DEREGISTER DETECTOR ---
+
+	/**
+	 * Deregisters the detector of the given format.
+	 * 
+	 * @param format
+	 *            name of the format (eg. "custom", "cbor", etc.)
+	 */
+	public static final synchronized void removeDetector(String format) {
+		String key = format.toLowerCase();
+		LinkedHashMap<String, FormatDetector> copy = new LinkedHashMap<>(customDetectors);
+		copy.remove(key);
+		customDetectors = copy;
+		copy = new LinkedHashMap<>(builtinDetectors);
+		copy.remove(key);
+		builtinDetectors = copy;
+		update();
+	}
+
+	// --- DETECT FORMAT ---
+
+	/**
+	 * Recognizes the format of the specified source. Returns {@code null} if
+	 * the format is unknown (or it is JSON), or there is no reader for the
+	 * recognized format.
+	 * 
+	 * @param source
+	 *            source bytes
+	 * 
+	 * @return name of the format (eg. "cbor") or {@code null}
+	 */
+	public static final String detect(byte[] source) {
+		if (source == null || source.length == 0) {
+			return null;
+		}
+		for (Map.Entry<String, FormatDetector> entry : detectors.entrySet()) {
+			try {
+				if (entry.getValue().matches(source)) {
+					String format = entry.getKey();
+					Boolean available = availableReaders.get(format);
+					if (available == null) {
+						available = TreeReaderRegistry.isAvailable(format);
+						availableReaders.put(format, available);
+					}
+					if (available) {
+						return format;
+					}
+				}
+			} catch (RuntimeException ignored) {
+
+				// Invalid detector
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Clears the cached availability of the readers (the
+	 * {@link TreeReaderRegistry} calls this method when a reader is
+	 * registered or removed).
+	 */
+	static final void clearCache() {
+		availableReaders.clear();
+	}
+
+	// --- FORMAT INFO ---
+
+	/**
+	 * Returns the names of the recognized formats.
+	 * 
+	 * @return Set of format names (eg. "bson", "cbor", etc.)
+	 */
+	public static final Set<String> getDetectedFormats() {
+		return Collections.unmodifiableSet(detectors.keySet());
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	private static final boolean startsWith(byte[] source, int... header) {
+		if (source.length < header.length) {
+			return false;
+		}
+		for (int i = 0; i < header.length; i++) {
+			if ((source[i] & 0xFF) != header[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
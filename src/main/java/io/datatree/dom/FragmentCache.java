@@ -0,0 +1,260 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import io.datatree.dom.SharedContainers.Key;
+
+/**
+ * Cache of the serialized (compact JSON) forms of the containers (Maps, Lists
+ * and Sets). The containers are identified by reference, and held by weak
+ * references. When a container is modified through the Tree API, the
+ * fragments of the container and its ancestors are removed from the cache,
+ * so the re-serialization of a large, mostly unchanged structure only has to
+ * process the modified parts. The fragments are not copied: the cache stores
+ * the positions of the containers in the last output (the nested containers
+ * share the same String), so the cache needs about as much memory as one
+ * serialized document, independently of the depth of the structure. Small
+ * containers (shorter than {@link #MIN_FRAGMENT_LENGTH} characters) are not
+ * cached. This class is thread-safe.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class FragmentCache {
+
+	// --- CONSTANTS ---
+
+	/**
+	 * Minimum length of the cached fragments.
+	 */
+	public static final int MIN_FRAGMENT_LENGTH = 64;
+
+	// --- INTERNAL VARIABLES ---
+
+	protected final HashMap<Key, Fragment> fragments = new HashMap<>();
+
+	protected final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+	/**
+	 * Fragments of the running serialization (without output).
+	 */
+	protected final ArrayList<Fragment> added = new ArrayList<>();
+
+	/**
+	 * Copied fragments of the running serialization, by their sources
+	 * (start, end and new position).
+	 */
+	protected final IdentityHashMap<String, ArrayList<int[]>> moves = new IdentityHashMap<>();
+
+	// --- APPEND / PUT / COMMIT ---
+
+	/**
+	 * Appends the cached fragment of the specified container to the output
+	 * of the running serialization.
+	 * 
+	 * @param builder
+	 *            output of the serialization
+	 * @param container
+	 *            Map or Collection
+	 * 
+	 * @return {@code true} if the fragment was found (and appended)
+	 */
+	public synchronized boolean append(StringBuilder builder, Object container) {
+		if (fragments.isEmpty()) {
+			return false;
+		}
+		Fragment fragment = fragments.get(new Key(container, null));
+		if (fragment == null || fragment.source == null) {
+			return false;
+		}
+		ArrayList<int[]> list = moves.get(fragment.source);
+		if (list == null) {
+			list = new ArrayList<>();
+			moves.put(fragment.source, list);
+		}
+		list.add(new int[] { fragment.start, fragment.end, builder.length() });
+		builder.append(fragment.source, fragment.start, fragment.end);
+		return true;
+	}
+
+	/**
+	 * Stores the position of the specified (serialized) container in the
+	 * output of the running serialization.
+	 * 
+	 * @param container
+	 *            Map or Collection
+	 * @param start
+	 *            start position (inclusive)
+	 * @param end
+	 *            end position (exclusive)
+	 */
+	public synchronized void put(Object container, int start, int end) {
+		if (end - start >= MIN_FRAGMENT_LENGTH) {
+			expungeStaleEntries();
+			Fragment fragment = new Fragment(start, end);
+			fragments.put(new Key(container, queue), fragment);
+			added.add(fragment);
+		}
+	}
+
+	/**
+	 * Finishes the running serialization. The new fragments, and the
+	 * fragments inside the copied fragments, will refer to the new output.
+	 * 
+	 * @param output
+	 *            output of the serialization (or {@code null}, if the
+	 *            serialization failed)
+	 */
+	public synchronized void commit(String output) {
+		try {
+			if (output == null) {
+				fragments.values().removeIf((fragment) -> fragment.source == null);
+				return;
+			}
+			for (Fragment fragment : added) {
+				fragment.source = output;
+			}
+			if (moves.isEmpty()) {
+				return;
+			}
+			for (ArrayList<int[]> list : moves.values()) {
+				list.sort((a, b) -> Integer.compare(a[0], b[0]));
+			}
+			Iterator<Fragment> i = fragments.values().iterator();
+			while (i.hasNext()) {
+				Fragment fragment = i.next();
+				if (fragment.source == output) {
+					continue;
+				}
+				ArrayList<int[]> list = moves.get(fragment.source);
+				if (list != null) {
+					int[] move = find(list, fragment.start);
+					if (move != null && fragment.end <= move[1]) {
+						int offset = move[2] - move[0];
+						fragment.source = output;
+						fragment.start += offset;
+						fragment.end += offset;
+					}
+				}
+			}
+		} finally {
+			added.clear();
+			moves.clear();
+		}
+	}
+
+	// --- GET / INVALIDATE ---
+
+	/**
+	 * Returns the cached fragment of the specified container.
+	 * 
+	 * @param container
+	 *            Map or Collection
+	 * 
+	 * @return serialized container (or {@code null})
+	 */
+	public synchronized String get(Object container) {
+		if (fragments.isEmpty()) {
+			return null;
+		}
+		Fragment fragment = fragments.get(new Key(container, null));
+		if (fragment == null || fragment.source == null) {
+			return null;
+		}
+		return fragment.source.substring(fragment.start, fragment.end);
+	}
+
+	/**
+	 * Removes the fragment of the specified container.
+	 * 
+	 * @param container
+	 *            modified container
+	 */
+	public synchronized void invalidate(Object container) {
+		if (!fragments.isEmpty() && container != null) {
+			fragments.remove(new Key(container, null));
+		}
+	}
+
+	/**
+	 * Removes all fragments.
+	 */
+	public synchronized void clear() {
+		fragments.clear();
+	}
+
+	/**
+	 * Returns the number of the cached fragments.
+	 * 
+	 * @return number of fragments
+	 */
+	public synchronized int size() {
+		expungeStaleEntries();
+		return fragments.size();
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	protected void expungeStaleEntries() {
+		Object key;
+		while ((key = queue.poll()) != null) {
+			fragments.remove(key);
+		}
+	}
+
+	/**
+	 * Finds the last move which starts at (or before) the specified position.
+	 */
+	protected static final int[] find(ArrayList<int[]> list, int position) {
+		int low = 0;
+		int high = list.size() - 1;
+		int[] found = null;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int[] move = list.get(middle);
+			if (move[0] <= position) {
+				found = move;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return found;
+	}
+
+	// --- POSITION OF A CONTAINER ---
+
+	protected static final class Fragment {
+
+		protected String source;
+		protected int start;
+		protected int end;
+
+		protected Fragment(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of a Map with an extra (virtual) meta entry at the end. The
+ * writers serialize this view instead of inserting the meta structure into the
+ * source Map, so the source is never modified, and the same (shared) Tree can
+ * be serialized by multiple threads at the same time.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class MetaMap extends AbstractMap<Object, Object> implements Serializable {
+
+	// --- SERIAL VERSION UID ---
+
+	private static final long serialVersionUID = 2894734620377715317L;
+
+	// --- VALUES ---
+
+	protected final Map<Object, Object> source;
+	protected final Object meta;
+
+	// --- CONSTRUCTOR ---
+
+	public MetaMap(Map<Object, Object> source, Object meta) {
+		this.source = source;
+		this.meta = meta;
+	}
+
+	// --- MAP METHODS ---
+
+	@Override
+	public int size() {
+		return source.containsKey(Config.META) ? source.size() : source.size() + 1;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return false;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return Config.META.equals(key) || source.containsKey(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		return Config.META.equals(key) ? meta : source.get(key);
+	}
+
+	@Override
+	public Set<Entry<Object, Object>> entrySet() {
+		return new AbstractSet<Entry<Object, Object>>() {
+
+			@Override
+			public final int size() {
+				return MetaMap.this.size();
+			}
+
+			@Override
+			public final Iterator<Entry<Object, Object>> iterator() {
+				return new Iterator<Entry<Object, Object>>() {
+
+					private final Iterator<Entry<Object, Object>> entries = source.entrySet().iterator();
+
+					private Entry<Object, Object> next = find();
+
+					private boolean metaReturned;
+
+					private final Entry<Object, Object> find() {
+						while (entries.hasNext()) {
+							Entry<Object, Object> entry = entries.next();
+							if (!Config.META.equals(entry.getKey())) {
+								return entry;
+							}
+						}
+						return null;
+					}
+
+					@Override
+					public final boolean hasNext() {
+						return next != null || !metaReturned;
+					}
+
+					@Override
+					public final Entry<Object, Object> next() {
+						if (next != null) {
+							Entry<Object, Object> current = next;
+							next = find();
+							return current;
+						}
+						if (metaReturned) {
+							throw new NoSuchElementException();
+						}
+						metaReturned = true;
+						return new SimpleImmutableEntry<Object, Object>(Config.META, meta);
+					}
+
+				};
+			}
+
+		};
+	}
+
+	// --- JAVA SERIALIZATION ---
+
+	/**
+	 * Serialized as a standard LinkedHashMap (with the meta entry).
+	 * 
+	 * @return copy of this view
+	 * 
+	 * @throws ObjectStreamException
+	 *             never thrown
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+		return new LinkedHashMap<Object, Object>(this);
+	}
+
+}
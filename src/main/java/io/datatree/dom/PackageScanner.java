@@ -17,10 +17,13 @@
  */
 package io.datatree.dom;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -29,23 +32,39 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
- * Package scanner.
+ * Package scanner. Finds the readers and writers by the
+ * "META-INF/datatree/adapters.index" resources (without loading the adapter
+ * classes), then by probing the known adapter classes that are present on the
+ * classpath (or by scanning the packages of the "datatree.adapter.packages"
+ * System Property). Lines of the index file:<br>
+ * <br>
+ * # format priority kind class<br>
+ * json 1 rw io.datatree.dom.builtin.JsonBuiltin<br>
+ * <br>
+ * The "kind" is "r" (reader), "w" (writer) or "rw" (both).
  * 
  * @author Andras Berkes [andras.berkes@programmer.net]
  */
 public final class PackageScanner {
 
+	// --- ADAPTER INDEX ---
+
+	/**
+	 * Name of the adapter index resources.
+	 */
+	public static final String INDEX = "META-INF/datatree/adapters.index";
+
 	// --- SCAN PACKAGES ---
 
-	private static final AtomicBoolean scanned = new AtomicBoolean();
+	private static volatile boolean scanned;
 
 	private static final HashMap<String, LinkedHashSet<String>> readers = new HashMap<>();
 	private static final HashMap<String, LinkedHashSet<String>> writers = new HashMap<>();
+	private static final HashMap<String, Integer> priorities = new HashMap<>();
 
 	protected static final Set<String> getReadersByFormat(String format) {
 		LinkedHashSet<String> set = readers.get(format);
@@ -63,8 +82,39 @@ public final class PackageScanner {
 		return Collections.unmodifiableSet(set);
 	}
 
-	protected static synchronized final String findByFormat(String format, boolean isReader) {
-		if (scanned.compareAndSet(false, true)) {
+	protected static final String findByFormat(String format, boolean isReader) {
+		if (!scanned) {
+			scanAll();
+		}
+
+		// Get reader / writer by format
+		HashMap<String, LinkedHashSet<String>> map = isReader ? readers : writers;
+		HashSet<String> implementation = map.get(format);
+		if (implementation != null && !implementation.isEmpty()) {
+			return implementation.iterator().next();
+		}
+
+		// Get reader / writer by class name
+		for (HashSet<String> classNames : map.values()) {
+			for (String className : classNames) {
+				int i = className.lastIndexOf('.');
+				String test = i > -1 ? className.substring(i + 1) : className;
+				if (format.equalsIgnoreCase(test)) {
+					return className;
+				}
+			}
+		}
+
+		// Not found
+		return null;
+	}
+
+	private static synchronized final void scanAll() {
+		if (!scanned) {
+			Object event = FlightEvents.begin(FlightEvents.ADAPTER_SCAN);
+
+			// Load indexes (without loading the adapter classes)
+			loadIndexes();
 
 			// Get scanned packages
 			if (Config.ADAPTER_PACKAGES != null && !Config.ADAPTER_PACKAGES.isEmpty()) {
@@ -95,7 +145,7 @@ public final class PackageScanner {
 			} else {
 
 				// Try to load default adapters
-				tryToLoadAll("io.datatree.dom.builtin", "DebugBuiltin", "JavaBuiltin", "JsonBuiltin");
+				tryToLoadAll("io.datatree.dom.builtin", "BinaryBuiltin", "DebugBuiltin", "IndexedBuiltin", "JavaBuiltin", "JsonBuiltin");
 				tryToLoadAll("io.datatree.dom.adapters", "BsonJackson", "CborJackson", "CsvOpenCSV", "IonIon",
 						"JsonBoon", "JsonBson", "JsonDSL", "JsonFast", "JsonFlex", "JsonGenson", "JsonGson", "JsonIon",
 						"JsonJackson", "JsonJodd", "JsonJohnzon", "JsonJsonIO", "JsonNano", "JsonSimple", "JsonSmart",
@@ -108,58 +158,75 @@ public final class PackageScanner {
 			// Sort reader and writers by priority
 			sortByPriority(readers);
 			sortByPriority(writers);
+			if (event != null) {
+				HashSet<String> formats = new HashSet<>(readers.keySet());
+				formats.addAll(writers.keySet());
+				FlightEvents.commit(event, Config.ADAPTER_PACKAGES == null ? "default" : Config.ADAPTER_PACKAGES,
+						formats.size());
+			}
+			scanned = true;
 		}
+	}
 
-		// Get reader / writer by format
-		HashMap<String, LinkedHashSet<String>> map = isReader ? readers : writers;
-		HashSet<String> implementation = map.get(format);
-		if (implementation != null && !implementation.isEmpty()) {
-			return implementation.iterator().next();
-		}
+	private static final void loadIndexes() {
+		try {
+			Enumeration<URL> urls = getClassLoader().getResources(INDEX);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				try (BufferedReader in = new BufferedReader(
+						new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = in.readLine()) != null) {
+						line = line.trim();
+						if (line.isEmpty() || line.charAt(0) == '#') {
+							continue;
+						}
+						String[] tokens = line.split("\\s+");
+						if (tokens.length != 4) {
+							continue;
+						}
+						try {
+							int priority = Integer.parseInt(tokens[1]);
+							String kind = tokens[2].toLowerCase();
+							register(tokens[0], tokens[3], priority, kind.indexOf('r') > -1, kind.indexOf('w') > -1);
+						} catch (NumberFormatException invalidLine) {
 
-		// Get reader / writer by class name
-		for (HashSet<String> classNames : map.values()) {
-			for (String className : classNames) {
-				int i = className.lastIndexOf('.');
-				String test = i > -1 ? className.substring(i + 1) : className;
-				if (format.equalsIgnoreCase(test)) {
-					return className;
+							// Skip line
+						}
+					}
 				}
 			}
+		} catch (Exception cause) {
+			cause.printStackTrace();
 		}
-
-		// Not found
-		return null;
 	}
 
 	private static final void tryToLoadAll(String packageName, String... classNames) {
+		ClassLoader loader = getClassLoader();
 		for (String className : classNames) {
-			tryToLoad(packageName + '.' + className);
+			String fullName = packageName + '.' + className;
+
+			// Skip indexed and missing classes
+			if (!priorities.containsKey(fullName)
+					&& loader.getResource(fullName.replace('.', '/') + ".class") != null) {
+				tryToLoad(fullName);
+			}
 		}
 	}
 
 	private static final void tryToLoad(String className) {
+		if (priorities.containsKey(className)) {
+			return;
+		}
 		try {
 			Object o = Class.forName(className).newInstance();
+			Priority priority = o.getClass().getAnnotation(Priority.class);
+			int value = priority == null ? 1000 : priority.value();
 			if (o instanceof TreeReader) {
-				TreeReader reader = (TreeReader) o;
-				String formatName = reader.getFormat();
-				LinkedHashSet<String> set = readers.get(formatName);
-				if (set == null) {
-					set = new LinkedHashSet<>();
-					readers.put(formatName, set);
-				}
-				set.add(reader.getClass().getName());
+				register(((TreeReader) o).getFormat(), className, value, true, false);
 			}
 			if (o instanceof TreeWriter) {
-				TreeWriter writer = (TreeWriter) o;
-				String formatName = writer.getFormat();
-				LinkedHashSet<String> set = writers.get(formatName);
-				if (set == null) {
-					set = new LinkedHashSet<>();
-					writers.put(formatName, set);
-				}
-				set.add(writer.getClass().getName());
+				register(((TreeWriter) o).getFormat(), className, value, false, true);
 			}
 		} catch (Throwable ignored) {
 
@@ -167,30 +234,47 @@ public final class PackageScanner {
 		}
 	}
 
+	private static final void register(String format, String className, int priority, boolean isReader,
+			boolean isWriter) {
+		if (isReader) {
+			LinkedHashSet<String> set = readers.get(format);
+			if (set == null) {
+				set = new LinkedHashSet<>();
+				readers.put(format, set);
+			}
+			set.add(className);
+		}
+		if (isWriter) {
+			LinkedHashSet<String> set = writers.get(format);
+			if (set == null) {
+				set = new LinkedHashSet<>();
+				writers.put(format, set);
+			}
+			set.add(className);
+		}
+		priorities.put(className, priority);
+	}
+
 	private static final void sortByPriority(HashMap<String, LinkedHashSet<String>> map) {
 		for (LinkedHashSet<String> set : map.values()) {
-			try {
-				ArrayList<Class<?>> classes = new ArrayList<>();
-				for (String className : set) {
-					classes.add(Class.forName(className));
-				}
-				classes.sort((c1, c2) -> {
-					Priority p1 = c1.getAnnotation(Priority.class);
-					Priority p2 = c2.getAnnotation(Priority.class);
-					int v1 = p1 == null ? 1000 : p1.value();
-					int v2 = p2 == null ? 1000 : p2.value();
-					return v2 - v1;
-				});
-				set.clear();
-				for (Class<?> c : classes) {
-					set.add(c.getName());
-				}
-			} catch (Throwable cause) {
-				cause.printStackTrace();
-			}
+			ArrayList<String> classNames = new ArrayList<>(set);
+			classNames.sort((c1, c2) -> {
+				Integer p1 = priorities.get(c1);
+				Integer p2 = priorities.get(c2);
+				int v1 = p1 == null ? 1000 : p1;
+				int v2 = p2 == null ? 1000 : p2;
+				return v2 - v1;
+			});
+			set.clear();
+			set.addAll(classNames);
 		}
 	}
 
+	private static final ClassLoader getClassLoader() {
+		ClassLoader loader = PackageScanner.class.getClassLoader();
+		return loader == null ? ClassLoader.getSystemClassLoader() : loader;
+	}
+
 	public static final LinkedList<String> scan(String packageName) throws Exception {
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 		LinkedList<String> names = new LinkedList<>();
@@ -271,4 +355,4 @@ public final class PackageScanner {
 		}
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
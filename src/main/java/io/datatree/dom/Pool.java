@@ -0,0 +1,271 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded pool of reusable objects (buffers, builders, parser states). The
+ * pooled objects are stored in a fixed-size array, the threads start
+ * searching for a free (or empty) slot at different positions, and the slots
+ * are taken and filled by compare-and-set operations, so the threads do not
+ * block each other. The pool is bounded by the number of objects, and by the
+ * retained size of the pooled objects. Objects larger than the maximum
+ * object size (eg. a StringBuilder used to produce a very large JSON) are not
+ * pooled. Sample code:<br>
+ * <br>
+ * Pool&lt;StringBuilder&gt; builders = new Pool&lt;&gt;(16, () -&gt; new
+ * StringBuilder(512), (builder) -&gt; builder.capacity() * 2);<br>
+ * StringBuilder builder = builders.acquire();<br>
+ * builder.setLength(0);<br>
+ * ...<br>
+ * builders.release(builder);
+ * 
+ * @param <T>
+ *            Type (class) of pooled objects
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class Pool<T> {
+
+	// --- CONSTANTS ---
+
+	/**
+	 * Maximum number of the inspected slots per acquire / release.
+	 */
+	protected static final int MAX_PROBES = 8;
+
+	// --- POOLED OBJECTS ---
+
+	protected final AtomicReferenceArray<T> slots;
+	protected final int mask;
+
+	// --- OBJECT FACTORY AND SIZE ---
+
+	protected final Supplier<T> factory;
+	protected final ToIntFunction<T> sizer;
+
+	// --- LIMITS ---
+
+	protected final int maxObjectSize;
+	protected final long maxRetainedSize;
+
+	protected final AtomicLong retainedSize = new AtomicLong();
+
+	// --- STATISTICS ---
+
+	protected final LongAdder hits = new LongAdder();
+	protected final LongAdder misses = new LongAdder();
+	protected final LongAdder discarded = new LongAdder();
+
+	// --- CONSTRUCTORS ---
+
+	/**
+	 * Creates a pool with the default size limits ("datatree.pool.max.object"
+	 * and "datatree.pool.max.retained" System Properties).
+	 * 
+	 * @param capacity
+	 *            maximum number of pooled objects
+	 * @param factory
+	 *            creates a new object when the pool is empty
+	 * @param sizer
+	 *            returns the (approximate) size of an object, in bytes
+	 */
+	public Pool(int capacity, Supplier<T> factory, ToIntFunction<T> sizer) {
+		this(capacity, Config.POOL_MAX_OBJECT_SIZE, Config.POOL_MAX_RETAINED_SIZE, factory, sizer);
+	}
+
+	/**
+	 * Creates a pool with the specified limits.
+	 * 
+	 * @param capacity
+	 *            maximum number of pooled objects
+	 * @param maxObjectSize
+	 *            larger objects are discarded (in bytes)
+	 * @param maxRetainedSize
+	 *            maximum size of all pooled objects (in bytes)
+	 * @param factory
+	 *            creates a new object when the pool is empty
+	 * @param sizer
+	 *            returns the (approximate) size of an object, in bytes
+	 */
+	public Pool(int capacity, int maxObjectSize, long maxRetainedSize, Supplier<T> factory, ToIntFunction<T> sizer) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		int length = Integer.highestOneBit(capacity);
+		if (length < capacity) {
+			length <<= 1;
+		}
+		this.slots = new AtomicReferenceArray<>(length);
+		this.mask = length - 1;
+		this.factory = factory;
+		this.sizer = sizer;
+		this.maxObjectSize = maxObjectSize;
+		this.maxRetainedSize = maxRetainedSize;
+	}
+
+	// --- ACQUIRE / RELEASE ---
+
+	/**
+	 * Takes an object from the pool, or creates a new one if the pool is
+	 * empty. The returned object is not reset.
+	 * 
+	 * @return pooled or new object
+	 */
+	public T acquire() {
+		int start = start();
+		int probes = Math.min(MAX_PROBES, mask + 1);
+		for (int i = 0; i < probes; i++) {
+			int index = (start + i) & mask;
+			T object = slots.get(index);
+			if (object != null && slots.compareAndSet(index, object, null)) {
+				retainedSize.addAndGet(-sizer.applyAsInt(object));
+				hits.increment();
+				return object;
+			}
+		}
+		misses.increment();
+		return factory.get();
+	}
+
+	/**
+	 * Returns the object into the pool. The object is discarded if it is
+	 * larger than the maximum object size, or the pool is full.
+	 * 
+	 * @param object
+	 *            object to reuse (or {@code null})
+	 */
+	public void release(T object) {
+		if (object == null) {
+			return;
+		}
+		int size = sizer.applyAsInt(object);
+		if (size > maxObjectSize) {
+			discarded.increment();
+			return;
+		}
+		if (retainedSize.addAndGet(size) > maxRetainedSize) {
+			retainedSize.addAndGet(-size);
+			discarded.increment();
+			return;
+		}
+		int start = start();
+		int probes = Math.min(MAX_PROBES, mask + 1);
+		for (int i = 0; i < probes; i++) {
+			int index = (start + i) & mask;
+			if (slots.get(index) == null && slots.compareAndSet(index, null, object)) {
+				return;
+			}
+		}
+		retainedSize.addAndGet(-size);
+		discarded.increment();
+	}
+
+	/**
+	 * Removes all objects from the pool.
+	 */
+	public void clear() {
+		for (int i = 0; i <= mask; i++) {
+			T object = slots.getAndSet(i, null);
+			if (object != null) {
+				retainedSize.addAndGet(-sizer.applyAsInt(object));
+			}
+		}
+	}
+
+	// --- STATISTICS ---
+
+	/**
+	 * Returns the number of acquires served from the pool.
+	 * 
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of acquires that created a new object.
+	 * 
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of released objects that were not pooled (because
+	 * they were too large, or the pool was full).
+	 * 
+	 * @return number of discarded objects
+	 */
+	public long getDiscarded() {
+		return discarded.sum();
+	}
+
+	/**
+	 * Returns the size of the pooled objects, in bytes.
+	 * 
+	 * @return retained size
+	 */
+	public long getRetainedSize() {
+		return retainedSize.get();
+	}
+
+	/**
+	 * Returns the number of pooled objects.
+	 * 
+	 * @return number of pooled objects
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i <= mask; i++) {
+			if (slots.get(i) != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the maximum number of pooled objects.
+	 * 
+	 * @return capacity of the pool
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	/**
+	 * Returns the first inspected slot of the current thread.
+	 * 
+	 * @return index of a slot
+	 */
+	protected int start() {
+		long id = Thread.currentThread().getId();
+		return (int) (id * 0x9E3779B9L >>> 16) & mask;
+	}
+
+}
@@ -0,0 +1,350 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of containers (Maps, Lists, Sets and arrays), which are shared
+ * between copy-on-write (lazy) clones. Shared containers are never modified;
+ * the first write copies the container (shallow copy), and the sub-containers
+ * of the copy become shared. The registry counts the holders of each shared
+ * container, so the last holder can modify the container without copying it.
+ * The registry also remembers the source of each copy, so the nodes (Tree
+ * wrappers) which were created before the copy can switch to the new
+ * container. The registry tracks the root nodes of the clones (the holders);
+ * when only one holder remains (the others are garbage collected or
+ * released), the marks are dropped and the registry stops sharing. The
+ * containers and holders are held by weak references, so they are garbage
+ * collected as usual. This class is thread-safe.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class SharedContainers {
+
+	// --- NUMBER OF REGISTRIES ---
+
+	/**
+	 * Number of created registries.
+	 */
+	protected static final AtomicInteger registries = new AtomicInteger();
+
+	// --- INTERNAL VARIABLES ---
+
+	/**
+	 * Shared containers and the number of their additional holders.
+	 */
+	protected final HashMap<Key, Integer> containers = new HashMap<>();
+
+	/**
+	 * Copies and their source containers.
+	 */
+	protected final HashMap<Key, WeakReference<Object>> sources = new HashMap<>();
+
+	protected final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+	/**
+	 * Root nodes of the clones, which share the containers.
+	 */
+	protected final HashSet<Key> holders = new HashSet<>();
+
+	protected final ReferenceQueue<Object> holderQueue = new ReferenceQueue<>();
+
+	/**
+	 * Number of copies (taken by this registry).
+	 */
+	protected volatile long copies;
+
+	/**
+	 * Are there shared containers and more than one holders?
+	 */
+	protected volatile boolean sharing;
+
+	// --- CONSTRUCTOR ---
+
+	public SharedContainers() {
+		registries.incrementAndGet();
+	}
+
+	// --- HOLDERS ---
+
+	/**
+	 * Registers a holder (the root node of a clone) of the shared containers.
+	 * 
+	 * @param holder
+	 *            root node
+	 */
+	public synchronized void addHolder(Object holder) {
+		expungeStaleHolders();
+		holders.add(new Key(holder, holderQueue));
+		updateSharing();
+	}
+
+	/**
+	 * Removes a holder (eg. a clone which is no longer used). If only one
+	 * holder remains, the containers are no longer shared.
+	 * 
+	 * @param holder
+	 *            root node
+	 */
+	public synchronized void removeHolder(Object holder) {
+		holders.remove(new Key(holder, null));
+		expungeStaleHolders();
+	}
+
+	// --- SHARE / COPY ---
+
+	/**
+	 * Marks the container as shared (read-only) by one more holder.
+	 * 
+	 * @param container
+	 *            Map, Collection or array
+	 */
+	public synchronized void share(Object container) {
+		if (isContainer(container)) {
+			expungeStaleEntries();
+			mark(container);
+			updateSharing();
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the specified container is shared (so it cannot
+	 * be modified).
+	 * 
+	 * @param container
+	 *            Map, Collection or array
+	 * 
+	 * @return {@code true} if the container is shared
+	 */
+	public synchronized boolean isShared(Object container) {
+		if (containers.isEmpty() || !isContainer(container)) {
+			return false;
+		}
+		return containers.containsKey(new Key(container, null));
+	}
+
+	/**
+	 * Creates a modifiable, shallow copy of the specified shared container. The
+	 * sub-containers of the new copy will be shared. The copy is taken by one
+	 * of the holders of the container, so the container has one less holder
+	 * (and it is no longer shared when only one holder remains).
+	 * 
+	 * @param container
+	 *            Map, Collection or array
+	 * 
+	 * @return modifiable copy of the container
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized Object copy(Object container) {
+		Object copy = DeepCloner.shallowClone(container);
+		expungeStaleEntries();
+		if (copy instanceof Map) {
+			for (Object child : ((Map<Object, Object>) copy).values()) {
+				if (isContainer(child)) {
+					mark(child);
+				}
+			}
+		} else if (copy instanceof Collection) {
+			for (Object child : (Collection<Object>) copy) {
+				if (isContainer(child)) {
+					mark(child);
+				}
+			}
+		} else if (copy != null && !copy.getClass().getComponentType().isPrimitive()) {
+			int len = Array.getLength(copy);
+			for (int i = 0; i < len; i++) {
+				Object child = Array.get(copy, i);
+				if (isContainer(child)) {
+					mark(child);
+				}
+			}
+		}
+		unmark(container);
+		if (copy != container) {
+			sources.put(new Key(copy, queue), new WeakReference<Object>(container));
+			copies++;
+		}
+		updateSharing();
+		return copy;
+	}
+
+	/**
+	 * Returns {@code true} if the "copy" container was created (directly or
+	 * through other copies) from the "source" container by the
+	 * {@link #copy(Object)} method.
+	 * 
+	 * @param copy
+	 *            the (possible) copy
+	 * @param source
+	 *            the (possible) source of the copy
+	 * 
+	 * @return {@code true} if "copy" is a copy of "source"
+	 */
+	public synchronized boolean isCopyOf(Object copy, Object source) {
+		if (sources.isEmpty() || !isContainer(copy) || !isContainer(source)) {
+			return false;
+		}
+		Object current = copy;
+		while (current != null) {
+			WeakReference<Object> reference = sources.get(new Key(current, null));
+			if (reference == null) {
+				return false;
+			}
+			current = reference.get();
+			if (current == source) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// --- STATE OF THE REGISTRY ---
+
+	/**
+	 * Returns {@code true} if there are shared containers, and more than one
+	 * (living) holders. If not, the modifications can skip the copy-on-write
+	 * checks. This method also releases the garbage collected holders.
+	 * 
+	 * @return {@code true} if there are shared containers
+	 */
+	public boolean isSharing() {
+		if (sharing && holderQueue.poll() != null) {
+			synchronized (this) {
+				holders.removeIf((key) -> {
+					return key.get() == null;
+				});
+				expungeStaleHolders();
+			}
+		}
+		return sharing;
+	}
+
+	/**
+	 * Returns the number of copies (taken by this registry). The nodes which
+	 * were created earlier may refer to a replaced container.
+	 * 
+	 * @return number of copies
+	 */
+	public long getVersion() {
+		return copies;
+	}
+
+	/**
+	 * Returns the number of created registries. The nodes which were created
+	 * before the registry of their root node look up the registry again when
+	 * this number changes.
+	 * 
+	 * @return number of registries
+	 */
+	public static final int getRegistries() {
+		return registries.get();
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	protected static final boolean isContainer(Object value) {
+		return value != null && (value instanceof Map || value instanceof Collection || value.getClass().isArray());
+	}
+
+	protected void mark(Object container) {
+		Key key = new Key(container, null);
+		Integer holders = containers.get(key);
+		if (holders == null) {
+			containers.put(new Key(container, queue), 1);
+		} else {
+			containers.put(key, holders + 1);
+		}
+	}
+
+	protected void unmark(Object container) {
+		Key key = new Key(container, null);
+		Integer holders = containers.get(key);
+		if (holders == null) {
+			return;
+		}
+		if (holders > 1) {
+			containers.put(key, holders - 1);
+		} else {
+			containers.remove(key);
+		}
+	}
+
+	protected void expungeStaleEntries() {
+		Object key;
+		while ((key = queue.poll()) != null) {
+			containers.remove(key);
+			sources.remove(key);
+		}
+	}
+
+	protected void expungeStaleHolders() {
+		Object key;
+		while ((key = holderQueue.poll()) != null) {
+			holders.remove(key);
+		}
+		if (holders.size() < 2) {
+
+			// The containers are no longer shared
+			containers.clear();
+		}
+		updateSharing();
+	}
+
+	protected void updateSharing() {
+		sharing = holders.size() > 1 && !containers.isEmpty();
+	}
+
+	// --- WEAK IDENTITY KEY ---
+
+	protected static final class Key extends WeakReference<Object> {
+
+		private final int hashCode;
+
+		protected Key(Object container, ReferenceQueue<Object> queue) {
+			super(container, queue);
+			hashCode = System.identityHashCode(container);
+		}
+
+		@Override
+		public final int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public final boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (obj instanceof Key) {
+				Object container = get();
+				return container != null && container == ((Key) obj).get();
+			}
+			return false;
+		}
+
+	}
+
+}
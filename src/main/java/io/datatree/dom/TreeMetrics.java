@@ -0,0 +1,84 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+/**
+ * Listener of the parse and serialization operations of the Tree API (Tree
+ * constructors with String, byte array, File, URL, InputStream or Channel
+ * source, and the toString, toBinary and writeTo methods). The listeners are
+ * registered in the {@link TreeMetricsRegistry}. If there is no registered
+ * listener, the Tree API does not measure the operations. Sample
+ * listener:<br>
+ * <br>
+ * TreeMetricsRegistry.setMetrics(new TreeMetrics() {<br>
+ * public void parsed(String format, long size, long nanos, int nodes) {<br>
+ * parseTimer.record(nanos, TimeUnit.NANOSECONDS);<br>
+ * }<br>
+ * });
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public interface TreeMetrics {
+
+	/**
+	 * Invoked after parsing a source (String, byte array, File, etc.).
+	 * 
+	 * @param format
+	 *            name of the format (eg. "json", "cbor", etc.)
+	 * @param size
+	 *            size of the source (number of bytes, or number of characters
+	 *            of String sources)
+	 * @param nanos
+	 *            duration of the parsing in nanoseconds
+	 * @param nodes
+	 *            number of the parsed nodes (or -1 if
+	 *            {@link #isNodeCountEnabled()} returns {@code false})
+	 */
+	default void parsed(String format, long size, long nanos, int nodes) {
+	}
+
+	/**
+	 * Invoked after serializing a Tree (by the toString, toBinary or writeTo
+	 * methods).
+	 * 
+	 * @param format
+	 *            name of the format (eg. "json", "cbor", etc.)
+	 * @param size
+	 *            size of the output (number of bytes, or number of characters
+	 *            of String outputs)
+	 * @param nanos
+	 *            duration of the serialization in nanoseconds
+	 * @param nodes
+	 *            number of the serialized nodes (or -1 if
+	 *            {@link #isNodeCountEnabled()} returns {@code false})
+	 */
+	default void written(String format, long size, long nanos, int nodes) {
+	}
+
+	/**
+	 * Returns {@code true} if this listener needs the number of nodes. The
+	 * nodes are counted by walking the whole structure, so it's disabled by
+	 * default.
+	 * 
+	 * @return {@code true} = count the nodes
+	 */
+	default boolean isNodeCountEnabled() {
+		return false;
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the {@link TreeMetrics} listeners. A listener can be registered
+ * globally (for all formats), or for a specified format. If no listener is
+ * registered, the only cost of the instrumentation is reading a volatile
+ * field. Sample code:<br>
+ * <br>
+ * TreeMetricsRegistry.setMetrics(myMetrics);<br>
+ * TreeMetricsRegistry.setMetrics("cbor", myCborMetrics);<br>
+ * ...<br>
+ * TreeMetricsRegistry.removeMetrics();
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class TreeMetricsRegistry {
+
+	// --- LISTENER REGISTRY ---
+
+	private static volatile TreeMetrics global;
+
+	private static volatile Map<String, TreeMetrics> listeners = Collections.emptyMap();
+
+	private static volatile boolean enabled;
+
+	// --- PRIVATE CONSTRUCTOR ---
+
+	private TreeMetricsRegistry() {
+	}
+
+	// --- REGISTER LISTENER ---
+
+	/**
+	 * Sets the global listener (invoked for all formats).
+	 * 
+	 * @param metrics
+	 *            TreeMetrics instance (or {@code null})
+	 */
+	public static final synchronized void setMetrics(TreeMetrics metrics) {
+		global = metrics;
+		enabled = global != null || !listeners.isEmpty();
+	}
+
+	/**
+	 * Binds the given listener to the specified data format.
+	 * 
+	 * @param format
+	 *            name of the format (eg. "json", "cbor", etc.)
+	 * @param metrics
+	 *            TreeMetrics instance
+	 */
+	public static final synchronized void setMetrics(String format, TreeMetrics metrics) {
+		HashMap<String, TreeMetrics> copy = new HashMap<>(listeners);
+		copy.put(getFormatName(format), metrics);
+		listeners = copy;
+		enabled = true;
+	}
+
+	// --- DEREGISTER LISTENER ---
+
+	/**
+	 * Removes the global listener.
+	 */
+	public static final void removeMetrics() {
+		setMetrics((TreeMetrics) null);
+	}
+
+	/**
+	 * Removes the listener of the specified data format.
+	 * 
+	 * @param format
+	 *            name of the format (eg. "json", "cbor", etc.)
+	 */
+	public static final synchronized void removeMetrics(String format) {
+		HashMap<String, TreeMetrics> copy = new HashMap<>(listeners);
+		copy.remove(getFormatName(format));
+		listeners = copy;
+		enabled = global != null || !listeners.isEmpty();
+	}
+
+	// --- INSTRUMENTATION ---
+
+	/**
+	 * Returns {@code true} if any listener is registered.
+	 * 
+	 * @return {@code true} if the operations should be measured
+	 */
+	public static final boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Notifies the listeners about a parse operation.
+	 * 
+	 * @param format
+	 *            name of the format ({@code null} = JSON)
+	 * @param size
+	 *            size of the source
+	 * @param start
+	 *            start time (System.nanoTime() before parsing)
+	 * @param value
+	 *            parsed structure
+	 */
+	public static final void parsed(String format, long size, long start, Object value) {
+		long nanos = System.nanoTime() - start;
+		String name = getFormatName(format);
+		TreeMetrics metrics = global;
+		if (metrics != null) {
+			metrics.parsed(name, size, nanos, countNodes(metrics, value));
+		}
+		metrics = listeners.get(name);
+		if (metrics != null) {
+			metrics.parsed(name, size, nanos, countNodes(metrics, value));
+		}
+	}
+
+	/**
+	 * Notifies the listeners about a serialization.
+	 * 
+	 * @param format
+	 *            name of the format ({@code null} = JSON)
+	 * @param size
+	 *            size of the output
+	 * @param start
+	 *            start time (System.nanoTime() before serializing)
+	 * @param value
+	 *            serialized structure
+	 */
+	public static final void written(String format, long size, long start, Object value) {
+		long nanos = System.nanoTime() - start;
+		String name = getFormatName(format);
+		TreeMetrics metrics = global;
+		if (metrics != null) {
+			metrics.written(name, size, nanos, countNodes(metrics, value));
+		}
+		metrics = listeners.get(name);
+		if (metrics != null) {
+			metrics.written(name, size, nanos, countNodes(metrics, value));
+		}
+	}
+
+	// --- NODE COUNTER ---
+
+	/**
+	 * Counts the nodes of the specified structure (including the root node).
+	 * 
+	 * @param value
+	 *            Map, Collection, array or a single value
+	 * 
+	 * @return number of nodes
+	 */
+	public static final int countNodes(Object value) {
+		int count = 1;
+		if (value instanceof Map) {
+			for (Object child : ((Map<?, ?>) value).values()) {
+				count += countNodes(child);
+			}
+		} else if (value instanceof Collection) {
+			for (Object child : (Collection<?>) value) {
+				count += countNodes(child);
+			}
+		} else if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+			int length = Array.getLength(value);
+			for (int i = 0; i < length; i++) {
+				count += countNodes(Array.get(value, i));
+			}
+		}
+		return count;
+	}
+
+	// --- PRIVATE UTILITIES ---
+
+	private static final int countNodes(TreeMetrics metrics, Object value) {
+		return metrics.isNodeCountEnabled() ? countNodes(value) : -1;
+	}
+
+	private static final String getFormatName(String format) {
+		if (format == null || format.isEmpty()) {
+			return TreeWriterRegistry.JSON;
+		}
+		return format.toLowerCase();
+	}
+
+}
@@ -65,6 +65,7 @@ public class TreeReaderRegistry {
 		if (JSON.equals(key)) {
 			cachedJsonReader = reader;
 		}
+		FormatDetectorRegistry.clearCache();
 	}
 
 	// --- DEREGISTER READER ---
@@ -81,6 +82,7 @@ public class TreeReaderRegistry {
 			throw new IllegalArgumentException("Unable to delete the default JSON reader!");
 		}
 		readers.remove(key);
+		FormatDetectorRegistry.clearCache();
 	}
 
 	// --- GET READER BY FORMAT NAME ---
@@ -20,7 +20,7 @@ package io.datatree.dom.builtin;
 import java.util.Map;
 import java.util.function.Consumer;
 
-import io.datatree.dom.Config;
+import io.datatree.dom.MetaMap;
 import io.datatree.dom.TreeReader;
 import io.datatree.dom.TreeWriter;
 import io.datatree.dom.WriterFunction;
@@ -54,11 +54,9 @@ public abstract class AbstractAdapter implements TreeReader, TreeWriter {
 		}
 		Map<Object, Object> map = insertMeta(value, meta, insertMeta);
 		try {
-			return implementation.apply(value);
+			return implementation.apply(map == null ? value : map);
 		} catch (Exception cause) {
 			throw new IllegalArgumentException("Unable to deserialize object!", cause);
-		} finally {
-			removeMeta(map);
 		}
 	}
 	
@@ -68,15 +66,28 @@ public abstract class AbstractAdapter implements TreeReader, TreeWriter {
 		}
 		Map<Object, Object> map = insertMeta(value, meta, insertMeta);
 		try {
-			return implementation.apply(value);
+			return implementation.apply(map == null ? value : map);
 		} catch (Exception cause) {
 			cause.printStackTrace();
 			throw new IllegalArgumentException("Unable to deserialize object!", cause);
-		} finally {
-			removeMeta(map);
 		}
 	}
 	
+	/**
+	 * Returns a read-only view of the specified Map, with the meta structure
+	 * as an extra (virtual) entry. The source Map is not modified, so the
+	 * same Tree can be serialized by multiple threads at the same time.
+	 * 
+	 * @param value
+	 *            source value
+	 * @param meta
+	 *            meta structure (or null)
+	 * @param insertMeta
+	 *            insert meta structure
+	 * 
+	 * @return view of the Map with the meta entry, or {@code null} if the
+	 *         value is not a Map (or there is nothing to insert)
+	 */
 	@SuppressWarnings("unchecked")
 	protected static final Map<Object, Object> insertMeta(Object value, Object meta, boolean insertMeta) {
 		if (!insertMeta || value == null || meta == null) {
@@ -85,15 +96,20 @@ public abstract class AbstractAdapter implements TreeReader, TreeWriter {
 		if (!(value instanceof Map)) {
 			return null;
 		}
-		Map<Object, Object> map = (Map<Object, Object>) value;
-		map.put(Config.META, meta);
-		return map;
+		return new MetaMap((Map<Object, Object>) value, meta);
 	}
 
+	/**
+	 * Does nothing; the meta structure is no longer inserted into the source
+	 * Map (see {@link #insertMeta(Object, Object, boolean)}).
+	 * 
+	 * @param map
+	 *            view of the Map
+	 * 
+	 * @deprecated the source Map is not modified by the insertMeta method
+	 */
+	@Deprecated
 	protected static final void removeMeta(Map<Object, Object> map) {
-		if (map != null) {
-			map.remove(Config.META);
-		}
 	}
 	
 }
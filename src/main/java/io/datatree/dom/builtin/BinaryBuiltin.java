@@ -0,0 +1,937 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom.builtin;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import io.datatree.dom.BASE64;
+import io.datatree.dom.Config;
+import io.datatree.dom.Pool;
+import io.datatree.dom.Priority;
+import io.datatree.dom.converters.DataConverterRegistry;
+
+/**
+ * <b>BUILT-IN BINARY ADAPTER</b><br>
+ * <br>
+ * Description: Built-in, compact binary reader / writer ("datatree binary"
+ * format). Numbers are written as variable-length integers, the keys and the
+ * short Strings are stored in a per-document String table (so the repeated
+ * keys are written only once), and the Date, UUID, BigDecimal, BigInteger,
+ * byte[] and InetAddress values have their own type tags. This adapter does
+ * not use reflection or Java Serialization. Like the JSON format, the
+ * "datatree binary" format does not keep the types of the containers (Maps
+ * are read as LinkedHashMaps, Lists as ArrayLists, Sets as LinkedHashSets) and
+ * the subclasses of Date (eg. Timestamps are read as Dates); the shared
+ * containers are written as many times as they occur, and cyclic structures
+ * cannot be written. The Java Serialization of the Tree (which also uses this
+ * format, see the {@code writeTo} and {@code readFrom} methods) keeps these
+ * types and references.<br>
+ * <br>
+ * <b>Set as default (using Java System Properties):</b><br>
+ * <br>
+ * -Ddatatree.binary.reader=io.datatree.dom.builtin.BinaryBuiltin<br>
+ * -Ddatatree.binary.writer=io.datatree.dom.builtin.BinaryBuiltin<br>
+ * <br>
+ * <b>Set as default (using static methods):</b><br>
+ * <br>
+ * BinaryBuiltin binary = new BinaryBuiltin();<br>
+ * TreeReaderRegistry.setReader("binary", binary);<br>
+ * TreeWriterRegistry.setWriter("binary", binary);<br>
+ * <br>
+ * <b>Invoke serializer and deserializer:</b><br>
+ * <br>
+ * Tree node = new Tree(inputBytes, "binary");<br>
+ * byte[] outputBytes = node.toBinary("binary");
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@Priority(1)
+public class BinaryBuiltin extends AbstractAdapter {
+
+	// --- HEADER ---
+
+	/**
+	 * First bytes of the "datatree binary" format (magic bytes and version).
+	 */
+	public static final byte[] HEADER = { 'D', 'T', 'B', 1 };
+
+	// --- TYPE TAGS ---
+
+	protected static final int NULL = 0;
+	protected static final int TRUE = 1;
+	protected static final int FALSE = 2;
+	protected static final int BYTE = 3;
+	protected static final int SHORT = 4;
+	protected static final int INTEGER = 5;
+	protected static final int LONG = 6;
+	protected static final int FLOAT = 7;
+	protected static final int DOUBLE = 8;
+	protected static final int BIG_INTEGER = 9;
+	protected static final int BIG_DECIMAL = 10;
+	protected static final int STRING = 11;
+	protected static final int STRING_DEFINITION = 12;
+	protected static final int STRING_REFERENCE = 13;
+	protected static final int BYTES = 14;
+	protected static final int DATE = 15;
+	protected static final int UNIQUE_ID = 16;
+	protected static final int INET_ADDRESS = 17;
+	protected static final int MAP = 18;
+	protected static final int LIST = 19;
+	protected static final int SET = 20;
+
+	/**
+	 * Any other (Serializable) Object; used only by the ObjectOutput /
+	 * ObjectInput streams (see the {@code writeTo} and {@code readFrom}
+	 * methods).
+	 */
+	protected static final int OBJECT = 21;
+
+	/**
+	 * LinkedList (the default List type of the Tree); used only by the
+	 * ObjectOutput / ObjectInput streams.
+	 */
+	protected static final int LINKED_LIST = 22;
+
+	/**
+	 * Reference to an already written container (shared or cyclic reference);
+	 * used only by the ObjectOutput / ObjectInput streams.
+	 */
+	protected static final int CONTAINER_REFERENCE = 23;
+
+	/**
+	 * Maximum length of the (non-key) Strings stored in the String table.
+	 */
+	protected static final int MAX_SHARED_STRING_LENGTH = 32;
+
+	// --- NAME OF THE FORMAT ---
+
+	@Override
+	public String getFormat() {
+		return "binary";
+	}
+
+	// --- IMPLEMENTED WRITER METHODS ---
+
+	@Override
+	public byte[] toBinary(Object value, Object meta, boolean insertMeta) {
+		return serialize(value, meta, insertMeta);
+	}
+
+	@Override
+	public String toString(Object value, Object meta, boolean pretty, boolean insertMeta) {
+		return BASE64.encode(serialize(value, meta, insertMeta));
+	}
+
+	public static final byte[] serialize(Object value, Object meta, boolean insertMeta) {
+		Encoder encoder = new Encoder();
+		try {
+			encoder.write(HEADER, 0, HEADER.length);
+			encoder.writeRoot(value, insertMeta ? meta : null);
+			return encoder.toByteArray();
+		} finally {
+			encoder.release();
+		}
+	}
+
+	// --- IMPLEMENTED PARSER METHODS ---
+
+	@Override
+	public Object parse(byte[] source) throws Exception {
+		return deserialize(source);
+	}
+
+	@Override
+	public Object parse(String source) throws Exception {
+		return deserialize(BASE64.decode(source));
+	}
+
+	public static final Object deserialize(byte[] bytes) throws IOException {
+		if (bytes == null || bytes.length == 0) {
+			return new LinkedHashMap<>();
+		}
+		if (!isBinary(bytes)) {
+			throw new IllegalArgumentException("Invalid header (source isn't in \"datatree binary\" format)!");
+		}
+		Decoder decoder = new Decoder(bytes, HEADER.length);
+		return decoder.readValue();
+	}
+
+	/**
+	 * Returns {@code true} if the specified byte array starts with the
+	 * "datatree binary" header.
+	 * 
+	 * @param bytes
+	 *            source bytes
+	 * 
+	 * @return {@code true} if the bytes are in "datatree binary" format
+	 */
+	public static final boolean isBinary(byte[] bytes) {
+		if (bytes == null || bytes.length < HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < HEADER.length; i++) {
+			if (bytes[i] != HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// --- JAVA SERIALIZATION ---
+
+	/**
+	 * Writes the value (and the meta) directly into the specified
+	 * ObjectOutput (without creating an intermediate byte array). The types
+	 * not supported by this format (including the Serializable Maps,
+	 * Collections and Dates of non-default types, eg. TreeMaps and Timestamps)
+	 * are written by the ObjectOutput's {@code writeObject} method. The shared
+	 * and cyclic references between the Maps and Collections are preserved
+	 * (except the references between the containers written by the
+	 * {@code writeObject} method and the other containers).
+	 * 
+	 * @param out
+	 *            destination stream
+	 * @param value
+	 *            value (Map, List, Set, etc.)
+	 * @param meta
+	 *            meta container (or {@code null})
+	 * 
+	 * @throws IOException
+	 *             any I/O exception
+	 */
+	public static final void writeTo(ObjectOutput out, Object value, Object meta) throws IOException {
+		StreamEncoder encoder = new StreamEncoder(out);
+		try {
+			encoder.writeRoot(value, meta);
+			encoder.flush();
+		} catch (UncheckedIOException cause) {
+			throw cause.getCause();
+		} finally {
+			encoder.release();
+		}
+	}
+
+	/**
+	 * Reads a value from the specified ObjectInput (written by the
+	 * {@code writeTo} method).
+	 * 
+	 * @param in
+	 *            source stream
+	 * 
+	 * @return value (Map, List, Set, etc.)
+	 * 
+	 * @throws IOException
+	 *             any I/O exception
+	 * @throws ClassNotFoundException
+	 *             class of a serialized Object cannot be found
+	 */
+	public static final Object readFrom(ObjectInput in) throws IOException, ClassNotFoundException {
+		StreamDecoder decoder = new StreamDecoder(in);
+		try {
+			return decoder.readValue();
+		} catch (UncheckedIOException cause) {
+			Throwable original = cause.getCause().getCause();
+			if (original instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) original;
+			}
+			throw cause.getCause();
+		}
+	}
+
+	// --- BUFFER POOL ---
+
+	protected static final Pool<byte[]> buffers = new Pool<>(Config.POOL_SIZE, () -> {
+		return new byte[512];
+	}, (buffer) -> {
+		return buffer.length;
+	});
+
+	// --- ENCODER ---
+
+	protected static class Encoder {
+
+		protected byte[] buffer = buffers.acquire();
+		protected int count;
+
+		protected final HashMap<String, Integer> strings = new HashMap<>();
+
+		protected void writeRoot(Object value, Object meta) {
+			if (meta != null && value instanceof Map) {
+
+				// Write the metadata as a virtual entry
+				Map<?, ?> map = (Map<?, ?>) value;
+				writeTag(MAP);
+				writeVarInt(map.size() + 1);
+				writeEntries(map);
+				writeString(Config.META, true);
+				writeValue(meta);
+				return;
+			}
+			writeValue(value);
+		}
+
+		@SuppressWarnings("rawtypes")
+		protected void writeValue(Object value) {
+			if (value == null) {
+				writeTag(NULL);
+				return;
+			}
+			if (value instanceof String) {
+				String txt = (String) value;
+				writeString(txt, txt.length() <= MAX_SHARED_STRING_LENGTH);
+				return;
+			}
+			if (value instanceof Map) {
+				Map map = (Map) value;
+				writeTag(MAP);
+				writeVarInt(map.size());
+				writeEntries(map);
+				return;
+			}
+			if (value instanceof Collection) {
+				Collection collection = (Collection) value;
+				writeTag(value instanceof Set ? SET : LIST);
+				writeVarInt(collection.size());
+				for (Object item : collection) {
+					writeValue(item);
+				}
+				return;
+			}
+			if (value instanceof Integer) {
+				writeTag(INTEGER);
+				writeVarLong(zigZag((Integer) value));
+				return;
+			}
+			if (value instanceof Long) {
+				writeTag(LONG);
+				writeVarLong(zigZag((Long) value));
+				return;
+			}
+			if (value instanceof Boolean) {
+				writeTag((Boolean) value ? TRUE : FALSE);
+				return;
+			}
+			if (value instanceof Double) {
+				writeTag(DOUBLE);
+				writeFixedLong(Double.doubleToLongBits((Double) value));
+				return;
+			}
+			if (value instanceof Float) {
+				writeTag(FLOAT);
+				writeFixedInt(Float.floatToIntBits((Float) value));
+				return;
+			}
+			if (value instanceof Short) {
+				writeTag(SHORT);
+				writeVarLong(zigZag((Short) value));
+				return;
+			}
+			if (value instanceof Byte) {
+				writeTag(BYTE);
+				writeByte((Byte) value);
+				return;
+			}
+			if (value instanceof BigDecimal) {
+				BigDecimal bigDecimal = (BigDecimal) value;
+				writeTag(BIG_DECIMAL);
+				writeVarLong(zigZag(bigDecimal.scale()));
+				writeBytes(bigDecimal.unscaledValue().toByteArray());
+				return;
+			}
+			if (value instanceof BigInteger) {
+				writeTag(BIG_INTEGER);
+				writeBytes(((BigInteger) value).toByteArray());
+				return;
+			}
+			if (value instanceof Date) {
+				writeTag(DATE);
+				writeVarLong(zigZag(((Date) value).getTime()));
+				return;
+			}
+			if (value instanceof UUID) {
+				UUID uuid = (UUID) value;
+				writeTag(UNIQUE_ID);
+				writeFixedLong(uuid.getMostSignificantBits());
+				writeFixedLong(uuid.getLeastSignificantBits());
+				return;
+			}
+			if (value instanceof InetAddress) {
+				writeTag(INET_ADDRESS);
+				writeBytes(((InetAddress) value).getAddress());
+				return;
+			}
+			if (value instanceof byte[]) {
+				writeTag(BYTES);
+				writeBytes((byte[]) value);
+				return;
+			}
+			if (value.getClass().isArray()) {
+				int length = Array.getLength(value);
+				writeTag(LIST);
+				writeVarInt(length);
+				for (int i = 0; i < length; i++) {
+					writeValue(Array.get(value, i));
+				}
+				return;
+			}
+			if (value instanceof Character) {
+				writeString(value.toString(), true);
+				return;
+			}
+			writeUnknown(value);
+		}
+
+		protected void writeUnknown(Object value) {
+			String txt = DataConverterRegistry.convert(String.class, value);
+			writeString(txt, txt.length() <= MAX_SHARED_STRING_LENGTH);
+		}
+
+		@SuppressWarnings("rawtypes")
+		protected void writeEntries(Map map) {
+			for (Object object : map.entrySet()) {
+				Map.Entry entry = (Map.Entry) object;
+				Object key = entry.getKey();
+				if (key instanceof String) {
+					writeString((String) key, true);
+				} else {
+					writeValue(key);
+				}
+				writeValue(entry.getValue());
+			}
+		}
+
+		protected void writeString(String txt, boolean shared) {
+			if (shared) {
+				Integer index = strings.get(txt);
+				if (index != null) {
+					writeTag(STRING_REFERENCE);
+					writeVarInt(index);
+					return;
+				}
+				strings.put(txt, strings.size());
+				writeTag(STRING_DEFINITION);
+			} else {
+				writeTag(STRING);
+			}
+			writeBytes(txt.getBytes(StandardCharsets.UTF_8));
+		}
+
+		protected void writeTag(int tag) {
+			writeByte(tag);
+		}
+
+		protected void writeBytes(byte[] bytes) {
+			writeVarInt(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+
+		protected void writeVarInt(int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		protected void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[count++] = (byte) value;
+		}
+
+		protected void writeFixedInt(int value) {
+			ensureCapacity(4);
+			buffer[count++] = (byte) (value >>> 24);
+			buffer[count++] = (byte) (value >>> 16);
+			buffer[count++] = (byte) (value >>> 8);
+			buffer[count++] = (byte) value;
+		}
+
+		protected void writeFixedLong(long value) {
+			writeFixedInt((int) (value >>> 32));
+			writeFixedInt((int) value);
+		}
+
+		protected void writeByte(int value) {
+			ensureCapacity(1);
+			buffer[count++] = (byte) value;
+		}
+
+		protected void write(byte[] bytes, int offset, int length) {
+			ensureCapacity(length);
+			System.arraycopy(bytes, offset, buffer, count, length);
+			count += length;
+		}
+
+		protected void ensureCapacity(int length) {
+			if (count + length > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + length));
+			}
+		}
+
+		protected byte[] toByteArray() {
+			return Arrays.copyOf(buffer, count);
+		}
+
+		/**
+		 * Returns the buffer into the pool (the encoder can not be used after
+		 * this call).
+		 */
+		protected void release() {
+			buffers.release(buffer);
+			buffer = null;
+		}
+
+		protected static final long zigZag(long value) {
+			return (value << 1) ^ (value >> 63);
+		}
+
+	}
+
+	// --- DECODER ---
+
+	protected static class Decoder {
+
+		protected final byte[] bytes;
+		protected int position;
+
+		protected final ArrayList<String> strings = new ArrayList<>();
+
+		protected Decoder(byte[] bytes, int position) {
+			this.bytes = bytes;
+			this.position = position;
+		}
+
+		protected Object readValue() throws IOException {
+			int tag = readByte();
+			switch (tag) {
+			case NULL:
+				return null;
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case BYTE:
+				return (byte) readByte();
+			case SHORT:
+				return (short) unZigZag(readVarLong());
+			case INTEGER:
+				return (int) unZigZag(readVarLong());
+			case LONG:
+				return unZigZag(readVarLong());
+			case FLOAT:
+				return Float.intBitsToFloat(readFixedInt());
+			case DOUBLE:
+				return Double.longBitsToDouble(readFixedLong());
+			case BIG_INTEGER:
+				return new BigInteger(readBytes());
+			case BIG_DECIMAL:
+				int scale = (int) unZigZag(readVarLong());
+				return new BigDecimal(new BigInteger(readBytes()), scale);
+			case STRING:
+				return readString();
+			case STRING_DEFINITION:
+				String txt = readString();
+				strings.add(txt);
+				return txt;
+			case STRING_REFERENCE:
+				int index = readVarInt();
+				if (index >= strings.size()) {
+					throw new IOException("Invalid String reference (" + index + ")!");
+				}
+				return strings.get(index);
+			case BYTES:
+				return readBytes();
+			case DATE:
+				return new Date(unZigZag(readVarLong()));
+			case UNIQUE_ID:
+				return new UUID(readFixedLong(), readFixedLong());
+			case INET_ADDRESS:
+				return InetAddress.getByAddress(readBytes());
+			case MAP:
+				int size = readSize();
+				LinkedHashMap<Object, Object> map = new LinkedHashMap<>(Math.max(4, (int) (capacity(size) / 0.75f) + 1));
+				registerContainer(map);
+				for (int i = 0; i < size; i++) {
+					Object key = readValue();
+					map.put(key, readValue());
+				}
+				return map;
+			case LIST:
+				size = readSize();
+				List<Object> list = new ArrayList<>(capacity(size));
+				registerContainer(list);
+				for (int i = 0; i < size; i++) {
+					list.add(readValue());
+				}
+				return list;
+			case SET:
+				size = readSize();
+				Set<Object> set = new LinkedHashSet<>(Math.max(4, (int) (capacity(size) / 0.75f) + 1));
+				registerContainer(set);
+				for (int i = 0; i < size; i++) {
+					set.add(readValue());
+				}
+				return set;
+			default:
+				return readUnknown(tag);
+			}
+		}
+
+		protected Object readUnknown(int tag) throws IOException {
+			throw new IOException("Invalid type tag (" + tag + ")!");
+		}
+
+		/**
+		 * Called when a new container is created (before its content is
+		 * read).
+		 * 
+		 * @param container
+		 *            new Map or Collection
+		 */
+		protected void registerContainer(Object container) {
+		}
+
+		/**
+		 * Returns the initial capacity of a container with the specified size.
+		 * 
+		 * @param size
+		 *            number of elements (checked by the {@code readSize}
+		 *            method)
+		 * 
+		 * @return initial capacity
+		 */
+		protected int capacity(int size) {
+			return size;
+		}
+
+		protected String readString() throws IOException {
+			int length = readSize();
+			String txt = new String(bytes, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return txt;
+		}
+
+		protected byte[] readBytes() throws IOException {
+			int length = readSize();
+			byte[] array = new byte[length];
+			readFully(array, 0, length);
+			return array;
+		}
+
+		protected int readSize() throws IOException {
+			int size = readVarInt();
+			if (size < 0 || size > available()) {
+				throw new IOException("Invalid size (" + size + ")!");
+			}
+			return size;
+		}
+
+		protected int readVarInt() throws IOException {
+			return (int) readVarLong();
+		}
+
+		protected long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed variable-length number!");
+		}
+
+		protected int readFixedInt() throws IOException {
+			return (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8
+					| (readByte() & 0xFF);
+		}
+
+		protected long readFixedLong() throws IOException {
+			return ((long) readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+		}
+
+		protected int available() {
+			return bytes.length - position;
+		}
+
+		protected int readByte() throws IOException {
+			if (position >= bytes.length) {
+				throw new IOException("Unexpected end of data!");
+			}
+			return bytes[position++] & 0xFF;
+		}
+
+		protected void readFully(byte[] array, int offset, int length) throws IOException {
+			System.arraycopy(bytes, position, array, offset, length);
+			position += length;
+		}
+
+		protected static final long unZigZag(long value) {
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+	}
+
+	// --- STREAM ENCODER ---
+
+	/**
+	 * Encoder for ObjectOutputs. Uses a fixed-size buffer, which is flushed
+	 * into the stream when it is full.
+	 */
+	protected static class StreamEncoder extends Encoder {
+
+		protected final ObjectOutput out;
+
+		/**
+		 * Written containers and their indexes.
+		 */
+		protected final IdentityHashMap<Object, Integer> containers = new IdentityHashMap<>();
+
+		protected StreamEncoder(ObjectOutput out) {
+			this.out = out;
+		}
+
+		@Override
+		protected void writeRoot(Object value, Object meta) {
+			if (meta != null && value instanceof Map) {
+
+				// The root Map is written with the meta entry
+				containers.put(value, containers.size());
+			}
+			super.writeRoot(value, meta);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		protected void writeValue(Object value) {
+			if (value instanceof Map || value instanceof Collection) {
+
+				// Shared or cyclic reference
+				Integer index = containers.get(value);
+				if (index != null) {
+					writeTag(CONTAINER_REFERENCE);
+					writeVarInt(index);
+					return;
+				}
+				Class<?> type = value.getClass();
+				if (type == LinkedList.class) {
+					containers.put(value, containers.size());
+					Collection collection = (Collection) value;
+					writeTag(LINKED_LIST);
+					writeVarInt(collection.size());
+					for (Object item : collection) {
+						writeValue(item);
+					}
+					return;
+				}
+				if (type != LinkedHashMap.class && type != ArrayList.class && type != LinkedHashSet.class
+						&& value instanceof Serializable) {
+
+					// Keep the original type (eg. TreeMap)
+					writeUnknown(value);
+					return;
+				}
+				containers.put(value, containers.size());
+			} else if (value instanceof Character || (value instanceof Date && value.getClass() != Date.class)
+					|| (value != null && value.getClass().isArray() && !(value instanceof byte[]))) {
+
+				// Keep the original type (eg. Timestamp)
+				writeUnknown(value);
+				return;
+			}
+			super.writeValue(value);
+		}
+
+		@Override
+		protected void writeUnknown(Object value) {
+			writeTag(OBJECT);
+			flush();
+			try {
+				out.writeObject(value);
+			} catch (IOException cause) {
+				throw new UncheckedIOException(cause);
+			}
+		}
+
+		@Override
+		protected void ensureCapacity(int length) {
+			if (count + length > buffer.length) {
+				flush();
+				super.ensureCapacity(length);
+			}
+		}
+
+		protected void flush() {
+			if (count > 0) {
+				try {
+					out.write(buffer, 0, count);
+				} catch (IOException cause) {
+					throw new UncheckedIOException(cause);
+				}
+				count = 0;
+			}
+		}
+
+	}
+
+	// --- STREAM DECODER ---
+
+	/**
+	 * Decoder for ObjectInputs.
+	 */
+	protected static class StreamDecoder extends Decoder {
+
+		/**
+		 * Maximum initial capacity of the containers and arrays. The sizes in
+		 * the stream cannot be checked against the length of the stream, so
+		 * the containers and arrays grow as their content is read (and a
+		 * corrupted or crafted size does not allocate the memory in advance).
+		 */
+		protected static final int MAX_INITIAL_CAPACITY = 1024;
+
+		/**
+		 * Maximum size of a container, String or byte array.
+		 */
+		protected static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+		protected final ObjectInput in;
+
+		/**
+		 * Read containers (by their indexes).
+		 */
+		protected final ArrayList<Object> containers = new ArrayList<>();
+
+		protected StreamDecoder(ObjectInput in) {
+			super(new byte[0], 0);
+			this.in = in;
+		}
+
+		@Override
+		protected Object readUnknown(int tag) throws IOException {
+			if (tag == LINKED_LIST) {
+				int size = readSize();
+				LinkedList<Object> list = new LinkedList<>();
+				registerContainer(list);
+				for (int i = 0; i < size; i++) {
+					list.addLast(readValue());
+				}
+				return list;
+			}
+			if (tag == CONTAINER_REFERENCE) {
+				int index = readVarInt();
+				if (index < 0 || index >= containers.size()) {
+					throw new IOException("Invalid container reference (" + index + ")!");
+				}
+				return containers.get(index);
+			}
+			if (tag != OBJECT) {
+				return super.readUnknown(tag);
+			}
+			try {
+				return in.readObject();
+			} catch (ClassNotFoundException cause) {
+				throw new UncheckedIOException(new IOException(cause));
+			}
+		}
+
+		@Override
+		protected void registerContainer(Object container) {
+			containers.add(container);
+		}
+
+		@Override
+		protected int capacity(int size) {
+			return Math.min(size, MAX_INITIAL_CAPACITY);
+		}
+
+		@Override
+		protected String readString() throws IOException {
+			return new String(readBytes(), StandardCharsets.UTF_8);
+		}
+
+		@Override
+		protected byte[] readBytes() throws IOException {
+			int length = readSize();
+			byte[] array = new byte[Math.min(length, MAX_INITIAL_CAPACITY * 64)];
+			int count = 0;
+			while (true) {
+				int chunk = array.length - count;
+				readFully(array, count, chunk);
+				count += chunk;
+				if (count == length) {
+					return array;
+				}
+				array = Arrays.copyOf(array, (int) Math.min(length, array.length * 2L));
+			}
+		}
+
+		@Override
+		protected int readSize() throws IOException {
+			int size = readVarInt();
+			if (size < 0 || size > MAX_SIZE) {
+				throw new IOException("Invalid size (" + size + ")!");
+			}
+			return size;
+		}
+
+		@Override
+		protected int available() {
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		protected int readByte() throws IOException {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Unexpected end of stream!");
+			}
+			return b;
+		}
+
+		@Override
+		protected void readFully(byte[] array, int offset, int length) throws IOException {
+			in.readFully(array, offset, length);
+		}
+
+	}
+
+}
@@ -21,6 +21,8 @@ import java.lang.reflect.Array;
 import java.util.Collection;
 import java.util.Map;
 
+import io.datatree.dom.Config;
+import io.datatree.dom.Pool;
 import io.datatree.dom.Priority;
 
 /**
@@ -33,6 +35,14 @@ import io.datatree.dom.Priority;
 @Priority(1)
 public class DebugBuiltin extends AbstractTextAdapter {
 
+	// --- BUILDER POOL ---
+
+	protected final Pool<StringBuilder> builders = new Pool<>(Config.POOL_SIZE, () -> {
+		return new StringBuilder(1024);
+	}, (builder) -> {
+		return builder.capacity() * 2;
+	});
+
 	// --- NAME OF THE FORMAT ---
 	
 	@Override
@@ -45,9 +55,12 @@ public class DebugBuiltin extends AbstractTextAdapter {
 	@Override
 	public String toString(Object value, Object meta, boolean pretty, boolean insertMeta) {
 		return toString(value, meta, insertMeta, (input) -> {
-			StringBuilder out = new StringBuilder(1024);
+			StringBuilder out = builders.acquire();
+			out.setLength(0);
 			dump(out, input, pretty ? 0 : -1);
-			return out.toString().trim();			
+			String txt = out.toString().trim();
+			builders.release(out);
+			return txt;
 		});
 	}
 
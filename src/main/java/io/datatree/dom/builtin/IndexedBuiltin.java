@@ -0,0 +1,855 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2017 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom.builtin;
+
+import static io.datatree.dom.builtin.BinaryBuiltin.BIG_DECIMAL;
+import static io.datatree.dom.builtin.BinaryBuiltin.BIG_INTEGER;
+import static io.datatree.dom.builtin.BinaryBuiltin.BYTE;
+import static io.datatree.dom.builtin.BinaryBuiltin.BYTES;
+import static io.datatree.dom.builtin.BinaryBuiltin.DATE;
+import static io.datatree.dom.builtin.BinaryBuiltin.DOUBLE;
+import static io.datatree.dom.builtin.BinaryBuiltin.FALSE;
+import static io.datatree.dom.builtin.BinaryBuiltin.FLOAT;
+import static io.datatree.dom.builtin.BinaryBuiltin.INET_ADDRESS;
+import static io.datatree.dom.builtin.BinaryBuiltin.INTEGER;
+import static io.datatree.dom.builtin.BinaryBuiltin.LIST;
+import static io.datatree.dom.builtin.BinaryBuiltin.LONG;
+import static io.datatree.dom.builtin.BinaryBuiltin.MAP;
+import static io.datatree.dom.builtin.BinaryBuiltin.MAX_SHARED_STRING_LENGTH;
+import static io.datatree.dom.builtin.BinaryBuiltin.NULL;
+import static io.datatree.dom.builtin.BinaryBuiltin.SET;
+import static io.datatree.dom.builtin.BinaryBuiltin.SHORT;
+import static io.datatree.dom.builtin.BinaryBuiltin.STRING;
+import static io.datatree.dom.builtin.BinaryBuiltin.TRUE;
+import static io.datatree.dom.builtin.BinaryBuiltin.UNIQUE_ID;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+
+import io.datatree.dom.BASE64;
+import io.datatree.dom.BufferSegment;
+import io.datatree.dom.Config;
+import io.datatree.dom.Priority;
+import io.datatree.dom.converters.DataConverterRegistry;
+
+/**
+ * <b>BUILT-IN INDEXED (RANDOM-ACCESS) BINARY ADAPTER</b><br>
+ * <br>
+ * Description: Built-in reader / writer of the "datatree indexed" format. This
+ * format is designed for read-mostly caches: the parser does not deserialize
+ * the document, it returns a read-only Map (or List) view over the source
+ * bytes. Every Map has an offset table and a key directory (sorted by the
+ * UTF-8 bytes of the keys), every List and Set has an offset table, so the
+ * <code>node.get("a.b[3]")</code> call jumps straight to the value (binary
+ * search in the Maps, direct indexing in the Lists), without decoding the rest
+ * of the document. The views do not copy the source array; they can be
+ * created over any (heap, direct or memory-mapped) ByteBuffer. Modifying the
+ * view throws an UnsupportedOperationException; use the
+ * <code>node.clone()</code> method to create a modifiable copy.<br>
+ * <br>
+ * <b>Set as default (using Java System Properties):</b><br>
+ * <br>
+ * -Ddatatree.indexed.reader=io.datatree.dom.builtin.IndexedBuiltin<br>
+ * -Ddatatree.indexed.writer=io.datatree.dom.builtin.IndexedBuiltin<br>
+ * <br>
+ * <b>Set as default (using static methods):</b><br>
+ * <br>
+ * IndexedBuiltin indexed = new IndexedBuiltin();<br>
+ * TreeReaderRegistry.setReader("indexed", indexed);<br>
+ * TreeWriterRegistry.setWriter("indexed", indexed);<br>
+ * <br>
+ * <b>Invoke serializer and deserializer:</b><br>
+ * <br>
+ * byte[] outputBytes = node.toBinary("indexed");<br>
+ * Tree view = new Tree(inputBytes, "indexed");<br>
+ * or<br>
+ * Tree view = new Tree(ByteBuffer.wrap(inputBytes));
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+@Priority(1)
+public class IndexedBuiltin extends AbstractAdapter {
+
+	// --- HEADER ---
+
+	/**
+	 * First bytes of the "datatree indexed" format (magic bytes and version).
+	 * The header is followed by the offset of the root value and the offset of
+	 * the meta Map (or -1).
+	 */
+	public static final byte[] HEADER = { 'D', 'T', 'I', 1 };
+
+	/**
+	 * Length of the header (magic bytes and the two offsets).
+	 */
+	protected static final int HEADER_LENGTH = HEADER.length + 8;
+
+	// --- NAME OF THE FORMAT ---
+
+	@Override
+	public String getFormat() {
+		return "indexed";
+	}
+
+	// --- IMPLEMENTED WRITER METHODS ---
+
+	@Override
+	public byte[] toBinary(Object value, Object meta, boolean insertMeta) {
+		return serialize(value, meta, insertMeta);
+	}
+
+	@Override
+	public String toString(Object value, Object meta, boolean pretty, boolean insertMeta) {
+		return BASE64.encode(serialize(value, meta, insertMeta));
+	}
+
+	public static final byte[] serialize(Object value, Object meta, boolean insertMeta) {
+		Encoder encoder = new Encoder();
+		byte[] bytes;
+		try {
+			encoder.writeDocument(value, meta, insertMeta);
+			bytes = encoder.toByteArray();
+		} finally {
+			encoder.release();
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.putInt(HEADER.length, encoder.root);
+		buffer.putInt(HEADER.length + 4, encoder.meta);
+		return bytes;
+	}
+
+	/**
+	 * Serializes the specified value (in "datatree indexed" format) into a
+	 * newly allocated direct ByteBuffer. The document is encoded twice: the
+	 * first pass calculates the exact size of the buffer, and the second pass
+	 * writes the data into the direct buffer (through a small, pooled heap
+	 * buffer), so the serialized document is never stored in the Java heap.
+	 * 
+	 * @param value
+	 *            value to serialize
+	 * @param meta
+	 *            meta Map (or {@code null})
+	 * @param insertMeta
+	 *            write the meta Map
+	 * 
+	 * @return direct buffer (from position zero to the end of the document)
+	 * 
+	 * @throws IllegalStateException
+	 *             if the value was modified during the serialization
+	 */
+	public static final ByteBuffer allocate(Object value, Object meta, boolean insertMeta) {
+
+		// Calculate the size
+		BufferEncoder encoder = new BufferEncoder(null);
+		int size;
+		try {
+			encoder.writeDocument(value, meta, insertMeta);
+			size = encoder.position();
+		} finally {
+			encoder.release();
+		}
+
+		// Write into the direct buffer
+		ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+		encoder = new BufferEncoder(buffer);
+		try {
+			encoder.writeDocument(value, meta, insertMeta);
+			encoder.flush();
+		} catch (BufferOverflowException cause) {
+			throw new IllegalStateException("The structure was modified during the serialization!", cause);
+		} finally {
+			encoder.release();
+		}
+		if (buffer.position() != size) {
+			throw new IllegalStateException("The structure was modified during the serialization!");
+		}
+		buffer.putInt(HEADER.length, encoder.root);
+		buffer.putInt(HEADER.length + 4, encoder.meta);
+		buffer.clear();
+		return buffer;
+	}
+
+	// --- IMPLEMENTED PARSER METHODS ---
+
+	@Override
+	public Object parse(byte[] source) throws Exception {
+		return view(ByteBuffer.wrap(source));
+	}
+
+	@Override
+	public Object parse(String source) throws Exception {
+		return view(ByteBuffer.wrap(BASE64.decode(source)));
+	}
+
+	/**
+	 * Creates a read-only view over the specified ByteBuffer. The content of
+	 * the buffer must be in "datatree indexed" format, starting at the
+	 * buffer's position. The view does not modify the position or limit of
+	 * the buffer (it uses absolute reads), so it can be used by multiple
+	 * threads concurrently.
+	 * 
+	 * @param buffer
+	 *            source buffer (heap, direct or memory-mapped buffer)
+	 * 
+	 * @return read-only Map, List or Set view (or the root value, if it is not
+	 *         a container)
+	 */
+	public static final Object view(ByteBuffer buffer) {
+		if (buffer == null || !buffer.hasRemaining()) {
+			return new IndexedMap(new BufferSegment(ByteBuffer.allocate(0)), null, -1, -1);
+		}
+		return view(new BufferSegment(buffer));
+	}
+
+	/**
+	 * Creates a read-only view over the specified segment. After the segment
+	 * is closed, the view (and its sub-views) throw an IllegalStateException.
+	 * 
+	 * @param segment
+	 *            source segment in "datatree indexed" format
+	 * 
+	 * @return read-only Map, List or Set view (or the root value, if it is not
+	 *         a container)
+	 */
+	public static final Object view(BufferSegment segment) {
+		ByteBuffer source = segment.acquire();
+		try {
+			if (!isIndexed(source)) {
+				throw new IllegalArgumentException("Invalid header (source isn't in \"datatree indexed\" format)!");
+			}
+			int root = source.getInt(HEADER.length);
+			int meta = source.getInt(HEADER.length + 4);
+			if (source.get(root) == MAP) {
+				return new IndexedMap(segment, source, root, meta);
+			}
+			return readValue(segment, source, root);
+		} finally {
+			segment.release();
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the specified object is a read-only view, created
+	 * by one of the {@code view} methods.
+	 * 
+	 * @param value
+	 *            value to check
+	 * 
+	 * @return {@code true} if the value is an indexed Map, List or Set view
+	 */
+	public static final boolean isView(Object value) {
+		return value instanceof IndexedMap || value instanceof IndexedList || value instanceof IndexedSet;
+	}
+
+	/**
+	 * Reads the meta of a root Map view (the meta is stored next to the root,
+	 * it is not the part of the entry set).
+	 * 
+	 * @param view
+	 *            root view, created by one of the {@code view} methods
+	 * 
+	 * @return the meta Map of the document, or {@code null} if the document
+	 *         has no meta (or the view is not a root Map)
+	 */
+	public static final Object readMeta(Object view) {
+		if (view instanceof IndexedMap) {
+			IndexedMap map = (IndexedMap) view;
+			return map.meta < 0 ? null : readValue(map.segment, map.meta);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns {@code true} if the specified buffer (from its position) starts
+	 * with the "datatree indexed" header.
+	 * 
+	 * @param buffer
+	 *            source buffer
+	 * 
+	 * @return {@code true} if the bytes are in "datatree indexed" format
+	 */
+	public static final boolean isIndexed(ByteBuffer buffer) {
+		if (buffer == null || buffer.remaining() < HEADER_LENGTH) {
+			return false;
+		}
+		int position = buffer.position();
+		for (int i = 0; i < HEADER.length; i++) {
+			if (buffer.get(position + i) != HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// --- VALUE READER ---
+
+	/**
+	 * Reads the value from the specified (absolute) offset. Containers are
+	 * returned as lazy, read-only views.
+	 * 
+	 * @param segment
+	 *            source segment
+	 * @param offset
+	 *            offset of the value's type tag
+	 * 
+	 * @return decoded value or view
+	 */
+	protected static final Object readValue(BufferSegment segment, int offset) {
+		ByteBuffer buffer = segment.acquire();
+		try {
+			return readValue(segment, buffer, offset);
+		} finally {
+			segment.release();
+		}
+	}
+
+	/**
+	 * Reads the value from the specified (absolute) offset of a buffer, which
+	 * is already acquired by the caller. The views acquire the segment only
+	 * once per operation (eg. per "get" or per step of an iterator), and
+	 * read everything else from the same buffer.
+	 * 
+	 * @param segment
+	 *            source segment (of the sub-views)
+	 * @param buffer
+	 *            acquired buffer of the segment
+	 * @param offset
+	 *            offset of the value's type tag
+	 * 
+	 * @return decoded value or view
+	 */
+	protected static final Object readValue(BufferSegment segment, ByteBuffer buffer, int offset) {
+		int tag = buffer.get(offset);
+		int pos = offset + 1;
+		switch (tag) {
+		case NULL:
+			return null;
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case BYTE:
+			return buffer.get(pos);
+		case SHORT:
+			return buffer.getShort(pos);
+		case INTEGER:
+			return buffer.getInt(pos);
+		case LONG:
+			return buffer.getLong(pos);
+		case FLOAT:
+			return buffer.getFloat(pos);
+		case DOUBLE:
+			return buffer.getDouble(pos);
+		case BIG_INTEGER:
+			return new BigInteger(readBytes(buffer, pos));
+		case BIG_DECIMAL:
+			int scale = buffer.getInt(pos);
+			return new BigDecimal(new BigInteger(readBytes(buffer, pos + 4)), scale);
+		case STRING:
+			return new String(readBytes(buffer, pos), StandardCharsets.UTF_8);
+		case BYTES:
+			return readBytes(buffer, pos);
+		case DATE:
+			return new Date(buffer.getLong(pos));
+		case UNIQUE_ID:
+			return new UUID(buffer.getLong(pos), buffer.getLong(pos + 8));
+		case INET_ADDRESS:
+			try {
+				return InetAddress.getByAddress(readBytes(buffer, pos));
+			} catch (UnknownHostException cause) {
+				throw new IllegalArgumentException("Invalid IP address!", cause);
+			}
+		case MAP:
+			return new IndexedMap(segment, buffer, offset, -1);
+		case LIST:
+			return new IndexedList(segment, buffer, offset);
+		case SET:
+			return new IndexedSet(segment, buffer, offset);
+		default:
+			throw new IllegalArgumentException("Invalid type tag (" + tag + ") at offset " + offset + "!");
+		}
+	}
+
+	protected static final byte[] readBytes(ByteBuffer buffer, int offset) {
+		int length = buffer.getInt(offset);
+		if (length < 0 || offset + 4 + length > buffer.limit()) {
+			throw new IllegalArgumentException("Invalid length (" + length + ") at offset " + offset + "!");
+		}
+		byte[] bytes = new byte[length];
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + offset + 4, bytes, 0, length);
+		} else {
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.position(offset + 4);
+			duplicate.get(bytes);
+		}
+		return bytes;
+	}
+
+	// --- READ-ONLY MAP VIEW ---
+
+	/**
+	 * Map layout: type tag, number of entries, (key offset, value offset)
+	 * pairs in insertion order, then the indexes of the entries, sorted by
+	 * keys.
+	 */
+	protected static class IndexedMap extends AbstractMap<String, Object> {
+
+		protected final BufferSegment segment;
+		protected final int offset;
+		protected final int size;
+		protected final int meta;
+
+		protected IndexedMap(BufferSegment segment, ByteBuffer buffer, int offset, int meta) {
+			this.segment = segment;
+			this.offset = offset;
+			this.size = offset < 0 ? 0 : buffer.getInt(offset + 1);
+			this.meta = meta;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Object get(Object key) {
+			if (size == 0 || key == null) {
+				return null;
+			}
+			ByteBuffer buffer = segment.acquire();
+			try {
+				int entry = find(buffer, key);
+				return entry < 0 ? null : readValue(segment, buffer, valueOffset(buffer, entry));
+			} finally {
+				segment.release();
+			}
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			if (size == 0 || key == null) {
+				return false;
+			}
+			ByteBuffer buffer = segment.acquire();
+			try {
+				return find(buffer, key) > -1;
+			} finally {
+				segment.release();
+			}
+		}
+
+		@Override
+		public Object remove(Object key) {
+			if (containsKey(key) || (meta > -1 && Config.META.equals(key))) {
+				throw new UnsupportedOperationException("Indexed (read-only) Map cannot be modified!");
+			}
+			return null;
+		}
+
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+
+				@Override
+				public final Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+
+						int entry;
+
+						@Override
+						public final boolean hasNext() {
+							return entry < size;
+						}
+
+						@Override
+						public final Entry<String, Object> next() {
+							if (entry >= size) {
+								throw new NoSuchElementException();
+							}
+							ByteBuffer buffer = segment.acquire();
+							try {
+								String key = (String) readValue(segment, buffer, keyOffset(buffer, entry));
+								Object value = readValue(segment, buffer, valueOffset(buffer, entry));
+								entry++;
+								return new SimpleImmutableEntry<String, Object>(key, value);
+							} finally {
+								segment.release();
+							}
+						}
+
+					};
+				}
+
+				@Override
+				public final int size() {
+					return size;
+				}
+
+			};
+		}
+
+		// --- BINARY SEARCH IN THE KEY DIRECTORY ---
+
+		protected int find(ByteBuffer buffer, Object key) {
+			byte[] bytes = String.valueOf(key).getBytes(StandardCharsets.UTF_8);
+			int directory = offset + 5 + size * 8;
+			int low = 0;
+			int high = size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int entry = buffer.getInt(directory + middle * 4);
+				int cmp = compare(buffer, keyOffset(buffer, entry), bytes);
+				if (cmp < 0) {
+					low = middle + 1;
+				} else if (cmp > 0) {
+					high = middle - 1;
+				} else {
+					return entry;
+				}
+			}
+			return -1;
+		}
+
+		protected int compare(ByteBuffer buffer, int keyOffset, byte[] key) {
+			int length = buffer.getInt(keyOffset + 1);
+			int start = keyOffset + 5;
+			int max = Math.min(length, key.length);
+			for (int i = 0; i < max; i++) {
+				int cmp = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return length - key.length;
+		}
+
+		protected int keyOffset(ByteBuffer buffer, int entry) {
+			return buffer.getInt(offset + 5 + entry * 8);
+		}
+
+		protected int valueOffset(ByteBuffer buffer, int entry) {
+			return buffer.getInt(offset + 9 + entry * 8);
+		}
+
+	}
+
+	// --- READ-ONLY LIST VIEW ---
+
+	/**
+	 * List layout: type tag, number of items, offsets of the items.
+	 */
+	protected static class IndexedList extends AbstractList<Object> implements RandomAccess {
+
+		protected final BufferSegment segment;
+		protected final int offset;
+		protected final int size;
+
+		protected IndexedList(BufferSegment segment, ByteBuffer buffer, int offset) {
+			this.segment = segment;
+			this.offset = offset;
+			this.size = buffer.getInt(offset + 1);
+		}
+
+		@Override
+		public Object get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			ByteBuffer buffer = segment.acquire();
+			try {
+				return readValue(segment, buffer, buffer.getInt(offset + 5 + index * 4));
+			} finally {
+				segment.release();
+			}
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+	// --- READ-ONLY SET VIEW ---
+
+	/**
+	 * Set layout: same as the List layout (with different type tag).
+	 */
+	protected static class IndexedSet extends AbstractSet<Object> {
+
+		protected final IndexedList items;
+
+		protected IndexedSet(BufferSegment segment, ByteBuffer buffer, int offset) {
+			this.items = new IndexedList(segment, buffer, offset);
+		}
+
+		@Override
+		public Iterator<Object> iterator() {
+			return items.iterator();
+		}
+
+		@Override
+		public int size() {
+			return items.size;
+		}
+
+	}
+
+	// --- ENCODER ---
+
+	/**
+	 * Writes the values in post-order (the children precede their container),
+	 * so the offsets of the children are known when the offset table of the
+	 * container is written. Short Strings (eg. the keys) are stored only once.
+	 */
+	protected static class Encoder extends BinaryBuiltin.Encoder {
+
+		protected final HashMap<String, Integer> offsets = new HashMap<>();
+
+		protected int root;
+		protected int meta = -1;
+
+		protected void writeDocument(Object value, Object meta, boolean insertMeta) {
+			write(HEADER, 0, HEADER.length);
+			writeFixedLong(0);
+			root = writeIndexed(value);
+			this.meta = insertMeta && meta != null ? writeIndexed(meta) : -1;
+		}
+
+		/**
+		 * Returns the absolute offset of the next byte.
+		 * 
+		 * @return current offset
+		 */
+		protected int position() {
+			return count;
+		}
+
+		@SuppressWarnings("rawtypes")
+		protected int writeIndexed(Object value) {
+			if (value instanceof Map) {
+				Map map = (Map) value;
+				int size = map.size();
+				int[] keys = new int[size];
+				int[] values = new int[size];
+				byte[][] names = new byte[size][];
+				int i = 0;
+				for (Object object : map.entrySet()) {
+					Map.Entry entry = (Map.Entry) object;
+					String key = String.valueOf(entry.getKey());
+					names[i] = key.getBytes(StandardCharsets.UTF_8);
+					keys[i] = writeIndexedString(key);
+					values[i] = writeIndexed(entry.getValue());
+					i++;
+				}
+				Integer[] directory = new Integer[size];
+				for (i = 0; i < size; i++) {
+					directory[i] = i;
+				}
+				Arrays.sort(directory, (a, b) -> compare(names[a], names[b]));
+				int offset = position();
+				writeTag(MAP);
+				writeFixedInt(size);
+				for (i = 0; i < size; i++) {
+					writeFixedInt(keys[i]);
+					writeFixedInt(values[i]);
+				}
+				for (i = 0; i < size; i++) {
+					writeFixedInt(directory[i]);
+				}
+				return offset;
+			}
+			if (value instanceof Collection) {
+				Collection collection = (Collection) value;
+				int[] items = new int[collection.size()];
+				int i = 0;
+				for (Object item : collection) {
+					items[i++] = writeIndexed(item);
+				}
+				return writeTable(value instanceof Set ? SET : LIST, items);
+			}
+			if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+				int[] items = new int[Array.getLength(value)];
+				for (int i = 0; i < items.length; i++) {
+					items[i] = writeIndexed(Array.get(value, i));
+				}
+				return writeTable(LIST, items);
+			}
+			if (value instanceof String) {
+				return writeIndexedString((String) value);
+			}
+			if (value instanceof Character) {
+				return writeIndexedString(value.toString());
+			}
+			int offset = position();
+			if (value == null) {
+				writeTag(NULL);
+			} else if (value instanceof Integer) {
+				writeTag(INTEGER);
+				writeFixedInt((Integer) value);
+			} else if (value instanceof Long) {
+				writeTag(LONG);
+				writeFixedLong((Long) value);
+			} else if (value instanceof Boolean) {
+				writeTag((Boolean) value ? TRUE : FALSE);
+			} else if (value instanceof Double) {
+				writeTag(DOUBLE);
+				writeFixedLong(Double.doubleToLongBits((Double) value));
+			} else if (value instanceof Float) {
+				writeTag(FLOAT);
+				writeFixedInt(Float.floatToIntBits((Float) value));
+			} else if (value instanceof Short) {
+				writeTag(SHORT);
+				writeByte((Short) value >> 8);
+				writeByte((Short) value);
+			} else if (value instanceof Byte) {
+				writeTag(BYTE);
+				writeByte((Byte) value);
+			} else if (value instanceof BigDecimal) {
+				BigDecimal bigDecimal = (BigDecimal) value;
+				writeTag(BIG_DECIMAL);
+				writeFixedInt(bigDecimal.scale());
+				writeFixedBytes(bigDecimal.unscaledValue().toByteArray());
+			} else if (value instanceof BigInteger) {
+				writeTag(BIG_INTEGER);
+				writeFixedBytes(((BigInteger) value).toByteArray());
+			} else if (value instanceof Date) {
+				writeTag(DATE);
+				writeFixedLong(((Date) value).getTime());
+			} else if (value instanceof UUID) {
+				UUID uuid = (UUID) value;
+				writeTag(UNIQUE_ID);
+				writeFixedLong(uuid.getMostSignificantBits());
+				writeFixedLong(uuid.getLeastSignificantBits());
+			} else if (value instanceof InetAddress) {
+				writeTag(INET_ADDRESS);
+				writeFixedBytes(((InetAddress) value).getAddress());
+			} else if (value instanceof byte[]) {
+				writeTag(BYTES);
+				writeFixedBytes((byte[]) value);
+			} else {
+				return writeIndexedString(DataConverterRegistry.convert(String.class, value));
+			}
+			return offset;
+		}
+
+		protected int writeTable(int tag, int[] items) {
+			int offset = position();
+			writeTag(tag);
+			writeFixedInt(items.length);
+			for (int item : items) {
+				writeFixedInt(item);
+			}
+			return offset;
+		}
+
+		protected int writeIndexedString(String txt) {
+			boolean shared = txt.length() <= MAX_SHARED_STRING_LENGTH;
+			if (shared) {
+				Integer offset = offsets.get(txt);
+				if (offset != null) {
+					return offset;
+				}
+			}
+			int offset = position();
+			writeTag(STRING);
+			writeFixedBytes(txt.getBytes(StandardCharsets.UTF_8));
+			if (shared) {
+				offsets.put(txt, offset);
+			}
+			return offset;
+		}
+
+		protected void writeFixedBytes(byte[] bytes) {
+			writeFixedInt(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+
+		protected static final int compare(byte[] a, byte[] b) {
+			int max = Math.min(a.length, b.length);
+			for (int i = 0; i < max; i++) {
+				int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return a.length - b.length;
+		}
+
+	}
+
+	// --- DIRECT BUFFER ENCODER ---
+
+	/**
+	 * Encoder for (direct) ByteBuffers. Uses a pooled buffer, which is flushed
+	 * into the target buffer when it is full. If the target is {@code null},
+	 * the encoder only calculates the size of the output.
+	 */
+	protected static class BufferEncoder extends Encoder {
+
+		protected final ByteBuffer target;
+		protected int flushed;
+
+		protected BufferEncoder(ByteBuffer target) {
+			this.target = target;
+		}
+
+		@Override
+		protected int position() {
+			return flushed + count;
+		}
+
+		@Override
+		protected void ensureCapacity(int length) {
+			if (count + length > buffer.length) {
+				flush();
+				super.ensureCapacity(length);
+			}
+		}
+
+		protected void flush() {
+			if (target != null) {
+				target.put(buffer, 0, count);
+			}
+			flushed += count;
+			count = 0;
+		}
+
+	}
+
+}
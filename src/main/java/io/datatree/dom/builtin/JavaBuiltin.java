@@ -28,6 +28,8 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import io.datatree.dom.BASE64;
+import io.datatree.dom.Config;
+import io.datatree.dom.Pool;
 import io.datatree.dom.Priority;
 import io.datatree.dom.TreeReaderRegistry;
 import io.datatree.dom.TreeWriterRegistry;
@@ -59,6 +61,14 @@ import io.datatree.dom.TreeWriterRegistry;
 @Priority(1)
 public class JavaBuiltin extends AbstractAdapter {
 
+	// --- BUFFER POOL ---
+
+	protected static final Pool<BufferOutputStream> buffers = new Pool<>(Config.POOL_SIZE, () -> {
+		return new BufferOutputStream();
+	}, (buffer) -> {
+		return buffer.capacity();
+	});
+
 	// --- NAME OF THE FORMAT ---
 
 	@Override
@@ -85,16 +95,17 @@ public class JavaBuiltin extends AbstractAdapter {
 		// Try to serialize content (type-safe serialization)
 		if ((value == null || value instanceof Serializable) && (meta == null || meta instanceof Serializable)) {
 			Map<Object, Object> map = insertMeta(value, meta, insertMeta);
+			BufferOutputStream baos = buffers.acquire();
 			try {
-				ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
+				baos.reset();
 				baos.write(1);
 				ObjectOutputStream oos = new ObjectOutputStream(baos);
-				oos.writeObject(value);
+				oos.writeObject(map == null ? value : map);
 				oos.flush();
 				return baos.toByteArray();
 			} catch (Throwable ignored) {
 			} finally {
-				removeMeta(map);
+				buffers.release(baos);
 			}
 		}
 
@@ -139,4 +150,18 @@ public class JavaBuiltin extends AbstractAdapter {
 		return TreeReaderRegistry.getReader(null).parse(json);
 	}
 
+	// --- POOLED OUTPUT STREAM ---
+
+	protected static final class BufferOutputStream extends ByteArrayOutputStream {
+
+		protected BufferOutputStream() {
+			super(512);
+		}
+
+		protected final int capacity() {
+			return buf.length;
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -30,6 +30,8 @@ import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import io.datatree.dom.Config;
+import io.datatree.dom.FragmentCache;
+import io.datatree.dom.Pool;
 import io.datatree.dom.Priority;
 import io.datatree.dom.converters.DataConverterRegistry;
 
@@ -73,12 +75,38 @@ public class JsonBuiltin extends AbstractTextAdapter {
 	protected static final char[] FF = "\\f".toCharArray();
 	protected static final char[] BS = "\\\\".toCharArray();
 	
-	// --- BUILDER CACHE ---
-
+	// --- BUILDER POOL ---
+
+	protected final Pool<StringBuilder> builderPool = new Pool<>(Config.POOL_SIZE, () -> {
+		return new StringBuilder(512);
+	}, (builder) -> {
+		return builder.capacity() * 2;
+	});
+
+	/**
+	 * Unused; the StringBuilders are pooled by a bounded {@link Pool} (see
+	 * {@link #getBuilderPool()}).
+	 * 
+	 * @deprecated replaced by {@link #getBuilderPool()}
+	 */
+	@Deprecated
 	public Queue<StringBuilder> builders = new ConcurrentLinkedQueue<>();
 
-	// --- SOURCE CACHE ---
-
+	// --- SOURCE POOL ---
+
+	protected final Pool<Source> sourcePool = new Pool<>(Config.POOL_SIZE, () -> {
+		return new Source();
+	}, (source) -> {
+		return 0;
+	});
+
+	/**
+	 * Unused; the parser sources are pooled by a bounded {@link Pool} (see
+	 * {@link #getSourcePool()}).
+	 * 
+	 * @deprecated replaced by {@link #getSourcePool()}
+	 */
+	@Deprecated
 	public Queue<Source> sources = new ConcurrentLinkedQueue<>();
 
 	// --- STATIC WRITER METHOD ---
@@ -89,6 +117,40 @@ public class JsonBuiltin extends AbstractTextAdapter {
 		return instance.toString(value, meta, false, true);
 	}
 
+	/**
+	 * Converts the value into compact JSON String. The unchanged containers
+	 * are copied from the specified cache, instead of serializing them again.
+	 * 
+	 * @param value
+	 *            value (Map, List, Set, etc.)
+	 * @param meta
+	 *            meta structure (or {@code null})
+	 * @param cache
+	 *            cache of the serialized containers
+	 * 
+	 * @return value in JSON format
+	 */
+	public static final String serialize(Object value, Object meta, FragmentCache cache) {
+		if (value == null) {
+			return "";
+		}
+		StringBuilder builder = new StringBuilder(512);
+		if (cache == null) {
+			toString(builder, value, meta, 0, null);
+			return builder.toString();
+		}
+		String json = null;
+		synchronized (cache) {
+			try {
+				toString(builder, value, meta, 0, cache);
+				json = builder.toString();
+			} finally {
+				cache.commit(json);
+			}
+		}
+		return json;
+	}
+
 	// --- IMPLEMENTED WRITER METHOD ---
 
 	@Override
@@ -96,25 +158,23 @@ public class JsonBuiltin extends AbstractTextAdapter {
 		if (value == null) {
 			return "";
 		}
-		StringBuilder builder = builders.poll();
-		if (builder == null) {
-			builder = new StringBuilder(512);
-		} else {
-			builder.setLength(0);
-		}
+		StringBuilder builder = builderPool.acquire();
+		builder.setLength(0);
 		toString(builder, value, insertMeta ? meta : null, pretty ? 1 : 0);
 		final String json = builder.toString();
-		if (builders.size() > Config.POOL_SIZE) {
-			return json;
-		}
-		builders.add(builder);
+		builderPool.release(builder);
 		return json;
 	}
 
 	// --- PROTECTED UTILITIES ---
 
-	@SuppressWarnings("rawtypes")
 	protected static final void toString(StringBuilder builder, Object value, Object meta, int indent) {
+		toString(builder, value, meta, indent, null);
+	}
+
+	@SuppressWarnings("rawtypes")
+	protected static final void toString(StringBuilder builder, Object value, Object meta, int indent,
+			FragmentCache cache) {
 
 		// Null value
 		if (value == null) {
@@ -128,6 +188,14 @@ public class JsonBuiltin extends AbstractTextAdapter {
 			return;
 		}
 
+		// Cached (unchanged) container
+		boolean cacheable = cache != null && meta == null && indent == 0
+				&& (value instanceof Map || value instanceof Collection);
+		int start = builder.length();
+		if (cacheable && cache.append(builder, value)) {
+			return;
+		}
+
 		// Map
 		if (value instanceof Map) {
 			Map map = (Map) value;
@@ -142,7 +210,7 @@ public class JsonBuiltin extends AbstractTextAdapter {
 				Map.Entry entry = (Map.Entry) child;
 				appendString(builder, entry.getKey(), false);
 				builder.append(':');
-				toString(builder, entry.getValue(), null, newIndent);
+				toString(builder, entry.getValue(), null, newIndent, cache);
 				if (++pos < max || meta != null) {
 					builder.append(',');
 					if (indent != 0) {
@@ -153,12 +221,15 @@ public class JsonBuiltin extends AbstractTextAdapter {
 			if (meta != null) {
 				appendString(builder, Config.META, false);
 				builder.append(':');
-				toString(builder, meta, null, newIndent);
+				toString(builder, meta, null, newIndent, cache);
 			}
 			if (indent != 0) {
 				appendIndent(builder, indent - 1);
 			}
 			builder.append('}');
+			if (cacheable) {
+				cache.put(value, start, builder.length());
+			}
 			return;
 
 		}
@@ -174,7 +245,7 @@ public class JsonBuiltin extends AbstractTextAdapter {
 			int pos = 0;
 			int newIndent = indent == 0 ? 0 : indent + 1;
 			for (Object child : array) {
-				toString(builder, child, null, newIndent);
+				toString(builder, child, null, newIndent, cache);
 				if (++pos < max) {
 					builder.append(',');
 					if (indent != 0) {
@@ -186,6 +257,9 @@ public class JsonBuiltin extends AbstractTextAdapter {
 				appendIndent(builder, indent - 1);
 			}
 			builder.append(']');
+			if (cacheable) {
+				cache.put(value, start, builder.length());
+			}
 			return;
 		}
 
@@ -206,7 +280,7 @@ public class JsonBuiltin extends AbstractTextAdapter {
 			int max = Array.getLength(value);
 			int newIndent = indent == 0 ? 0 : indent + 1;
 			for (int i = 0; i < max; i++) {
-				toString(builder, Array.get(value, i), null, newIndent);
+				toString(builder, Array.get(value, i), null, newIndent, cache);
 				if (i < max - 1) {
 					builder.append(',');
 					if (indent != 0) {
@@ -289,34 +363,49 @@ public class JsonBuiltin extends AbstractTextAdapter {
 		private int idx;
 		private char ch;
 
-		private Source(char[] chars) {
-			this.chars = chars;
-			this.last = chars.length - 1;
-		}
-
 		private final void set(char[] chars) {
 			this.chars = chars;
 			this.last = chars.length - 1;
 			this.idx = 0;
 		}
+
+		private final void clear() {
+			this.chars = null;
+			this.last = -1;
+		}
+	}
+
+	// --- POOLS ---
+
+	/**
+	 * Returns the pool of the StringBuilders (eg. for monitoring).
+	 * 
+	 * @return pool of the StringBuilders
+	 */
+	public Pool<StringBuilder> getBuilderPool() {
+		return builderPool;
+	}
+
+	/**
+	 * Returns the pool of the parser sources (eg. for monitoring).
+	 * 
+	 * @return pool of the parser sources
+	 */
+	public Pool<Source> getSourcePool() {
+		return sourcePool;
 	}
 
 	// --- IMPLEMENTED PARSER METHODS ---
 
 	@Override
 	public Object parse(String source) throws Exception {
-		Source s = sources.poll();
-		final char[] chars = source.toCharArray();
-		if (s == null) {
-			s = new Source(chars);
-		} else {
-			s.set(chars);
-		}
+		Source s = sourcePool.acquire();
+		s.set(source.toCharArray());
 		final Object result = parseNext(s);
-		if (sources.size() > Config.POOL_SIZE) {
-			return result;
-		}
-		sources.add(s);
+
+		// Do not retain the (possibly large) source
+		s.clear();
+		sourcePool.release(s);
 		return result;
 	}
 
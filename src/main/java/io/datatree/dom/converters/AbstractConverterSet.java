@@ -40,6 +40,7 @@ import java.util.UUID;
 
 import io.datatree.dom.Cache;
 import io.datatree.dom.Config;
+import io.datatree.dom.FlightEvents;
 
 /**
  * Utilities for "Basic" and "Bson" converter sets.
@@ -385,6 +386,7 @@ abstract class AbstractConverterSet {
 		}
 
 		// Formatted text to date (full date)
+		Object event = FlightEvents.begin(FlightEvents.DATE_PARSE);
 		SimpleDateFormat parser = new SimpleDateFormat("", Locale.US);
 		parser.setTimeZone(TimeZone.getTimeZone(Config.DEFAULT_TIME_ZONE));
 		ParsePosition pos = new ParsePosition(0);
@@ -392,6 +394,7 @@ abstract class AbstractConverterSet {
 			date = parse(parser, pos, parsePattern, txt);
 			if (date != null) {
 				objectToDateCache.put(from, date);
+				FlightEvents.commit(event, parsePattern, txt.length());
 				return date;
 			}
 		}
@@ -411,6 +414,7 @@ abstract class AbstractConverterSet {
 			date = parse(parser, pos, parsePattern, txt);
 			if (date != null) {
 				objectToDateCache.put(from, date);
+				FlightEvents.commit(event, parsePattern, txt.length());
 				return date;
 			}
 		}
@@ -418,6 +422,7 @@ abstract class AbstractConverterSet {
 		// Milliseconds since epoch
 		date = new Date(Long.parseLong(toNumericString(txt, false)));
 		objectToDateCache.put(from, date);
+		FlightEvents.commit(event, "millis", txt.length());
 		return date;
 	}
 
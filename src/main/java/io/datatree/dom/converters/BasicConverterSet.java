@@ -49,12 +49,67 @@ import io.datatree.dom.Config;
  */
 final class BasicConverterSet extends AbstractConverterSet {
 
-	// --- INIT DEFAULT CONVERTERS ---
+	// --- CONVERTERS BY TARGET TYPE ---
+
+	private static final HashMap<Class<?>, Runnable> installers = new HashMap<>(64);
 
 	static {
+		installers.put(String.class, BasicConverterSet::stringConverters);
+		installers.put(byte[].class, BasicConverterSet::byteArrayConverters);
+		installers.put(Byte.class, BasicConverterSet::byteConverters);
+		installers.put(Short.class, BasicConverterSet::shortConverters);
+		installers.put(Integer.class, BasicConverterSet::integerConverters);
+		installers.put(Long.class, BasicConverterSet::longConverters);
+		installers.put(Float.class, BasicConverterSet::floatConverters);
+		installers.put(Double.class, BasicConverterSet::doubleConverters);
+		installers.put(BigInteger.class, BasicConverterSet::bigIntegerConverters);
+		installers.put(BigDecimal.class, BasicConverterSet::bigDecimalConverters);
+		installers.put(Boolean.class, BasicConverterSet::booleanConverters);
+		installers.put(Date.class, BasicConverterSet::dateConverters);
+		installers.put(UUID.class, BasicConverterSet::uuidConverters);
+		installers.put(InetAddress.class, BasicConverterSet::inetAddressConverters);
+		installers.put(Inet4Address.class, BasicConverterSet::inetAddressConverters);
+		installers.put(Inet6Address.class, BasicConverterSet::inetAddressConverters);
+		installers.put(Object[].class, BasicConverterSet::objectArrayConverters);
+		installers.put(Set.class, BasicConverterSet::setConverters);
+		installers.put(HashSet.class, BasicConverterSet::setConverters);
+		installers.put(LinkedHashSet.class, BasicConverterSet::setConverters);
+		installers.put(Collection.class, BasicConverterSet::listConverters);
+		installers.put(List.class, BasicConverterSet::listConverters);
+		installers.put(LinkedList.class, BasicConverterSet::listConverters);
+		installers.put(Map.class, BasicConverterSet::mapConverters);
+		installers.put(HashMap.class, BasicConverterSet::mapConverters);
+		installers.put(LinkedHashMap.class, BasicConverterSet::mapConverters);
+
+		// --- JSON FORMATTING ---
+
+		if (!Config.USE_TIMESTAMPS) {
+			DataConverterRegistry.addUnquotedClass(Date.class);
+		}
+	}
+
+	// --- INSTALL CONVERTERS ---
+
+	/**
+	 * Registers the converters of the specified target type.
+	 * 
+	 * @param to
+	 *            target type
+	 * 
+	 * @return {@code true} if this set has converters for the target type
+	 */
+	static final boolean install(Class<?> to) {
+		Runnable installer = installers.get(to);
+		if (installer == null) {
+			return false;
+		}
+		installer.run();
+		return true;
+	}
 
-		// --- VALUE TO STRING CONVERTERS ---
+	// --- VALUE TO STRING CONVERTERS ---
 
+	private static final void stringConverters() {
 		register(String.class, (from) -> {
 			return String.valueOf(from);
 		});
@@ -77,9 +132,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(String.class, Inet6Address.class, (from) -> {
 			return from.getCanonicalHostName();
 		});
+	}
 
-		// --- VALUE TO BYTE ARRAY CONVERTERS ---
+	// --- VALUE TO BYTE ARRAY CONVERTERS ---
 
+	private static final void byteArrayConverters() {
 		register(byte[].class, (from) -> {
 			if (from instanceof Number) {
 				return numberStringToBytes(String.valueOf(from));
@@ -132,9 +189,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(byte[].class, Inet6Address.class, (from) -> {
 			return from.getAddress();
 		});
+	}
 
-		// --- VALUE TO BYTE CONVERTERS ---
+	// --- VALUE TO BYTE CONVERTERS ---
 
+	private static final void byteConverters() {
 		register(Byte.class, (from) -> {
 			if (from instanceof Number) {
 				return ((Number) from).byteValue();
@@ -163,9 +222,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Byte.class, Inet6Address.class, (from) -> {
 			return from.getAddress()[0];
 		});
+	}
 
-		// --- VALUE TO SHORT CONVERTERS ---
+	// --- VALUE TO SHORT CONVERTERS ---
 
+	private static final void shortConverters() {
 		register(Short.class, (from) -> {
 			if (from instanceof Number) {
 				return ((Number) from).shortValue();
@@ -194,9 +255,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Short.class, Inet6Address.class, (from) -> {
 			return new BigInteger(from.getAddress()).shortValue();
 		});
+	}
 
-		// --- VALUE TO INTEGER CONVERTERS ---
+	// --- VALUE TO INTEGER CONVERTERS ---
 
+	private static final void integerConverters() {
 		register(Integer.class, (from) -> {
 			if (from instanceof Number) {
 				return ((Number) from).intValue();
@@ -225,9 +288,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Integer.class, Inet6Address.class, (from) -> {
 			return new BigInteger(from.getAddress()).intValue();
 		});
+	}
 
-		// --- VALUE TO LONG CONVERTERS ---
+	// --- VALUE TO LONG CONVERTERS ---
 
+	private static final void longConverters() {
 		register(Long.class, (from) -> {
 			if (from instanceof Number) {
 				return ((Number) from).longValue();
@@ -256,9 +321,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Long.class, Inet6Address.class, (from) -> {
 			return new BigInteger(from.getAddress()).longValue();
 		});
+	}
 
-		// --- VALUE TO FLOAT CONVERTERS ---
+	// --- VALUE TO FLOAT CONVERTERS ---
 
+	private static final void floatConverters() {
 		register(Float.class, (from) -> {
 			if (from instanceof Number) {
 				return ((Number) from).floatValue();
@@ -287,9 +354,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Float.class, Inet6Address.class, (from) -> {
 			return new BigInteger(from.getAddress()).floatValue();
 		});
+	}
 
-		// --- VALUE TO DOUBLE CONVERTERS ---
+	// --- VALUE TO DOUBLE CONVERTERS ---
 
+	private static final void doubleConverters() {
 		register(Double.class, (from) -> {
 			if (from instanceof Number) {
 				return ((Number) from).doubleValue();
@@ -321,9 +390,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Double.class, Inet6Address.class, (from) -> {
 			return new BigInteger(from.getAddress()).doubleValue();
 		});
+	}
 
-		// --- VALUE TO BIGINTEGER CONVERTERS ---
+	// --- VALUE TO BIGINTEGER CONVERTERS ---
 
+	private static final void bigIntegerConverters() {
 		register(BigInteger.class, (from) -> {
 			return new BigInteger(toNumericString(String.valueOf(from), false));
 		});
@@ -352,9 +423,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(BigInteger.class, Inet6Address.class, (from) -> {
 			return new BigInteger((from).getAddress());
 		});
+	}
 
-		// --- VALUE TO BIGDECIMAL CONVERTERS ---
+	// --- VALUE TO BIGDECIMAL CONVERTERS ---
 
+	private static final void bigDecimalConverters() {
 		register(BigDecimal.class, (from) -> {
 			return new BigDecimal(toNumericString(String.valueOf(from), true));
 		});
@@ -404,9 +477,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(BigDecimal.class, Inet6Address.class, (from) -> {
 			return new BigDecimal(new BigInteger(from.getAddress()));
 		});
+	}
 
-		// --- VALUE TO BOOLEAN CONVERTERS ---
+	// --- VALUE TO BOOLEAN CONVERTERS ---
 
+	private static final void booleanConverters() {
 		register(Boolean.class, (from) -> {
 			return numberStringToBoolean(String.valueOf(from));
 		});
@@ -444,9 +519,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 			}
 			return false;
 		});
+	}
 
-		// --- VALUE TO DATE CONVERTERS ---
+	// --- VALUE TO DATE CONVERTERS ---
 
+	private static final void dateConverters() {
 		register(Date.class, (from) -> {
 			return objectToDate(from);
 		});
@@ -489,9 +566,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Date.class, Inet6Address.class, (from) -> {
 			return longToDate(new BigInteger(from.getAddress()).longValue());
 		});
+	}
 
-		// --- VALUE TO UUID CONVERTERS ---
+	// --- VALUE TO UUID CONVERTERS ---
 
+	private static final void uuidConverters() {
 		register(UUID.class, (from) -> {
 			return objectToUUID(from);
 		});
@@ -501,9 +580,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(UUID.class, Boolean.class, (from) -> {
 			return new UUID(from ? 1 : 0, 0);
 		});
+	}
 
-		// --- VALUE TO INETADDRESS CONVERTERS ---
+	// --- VALUE TO INETADDRESS CONVERTERS ---
 
+	private static final void inetAddressConverters() {
 		register(InetAddress.class, (from) -> {
 			return toInetAddress(from);
 		});
@@ -542,15 +623,19 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(Inet6Address.class, Date.class, (from) -> {
 			return (Inet6Address) toInetAddress(from.getTime());
 		});
+	}
 
-		// --- VALUE TO OBJECT ARRAY CONVERTERS ---
+	// --- VALUE TO OBJECT ARRAY CONVERTERS ---
 
+	private static final void objectArrayConverters() {
 		register(Object[].class, (from) -> {
 			return toList(from).toArray();
 		});
-		
-		// --- VALUE TO SET CONVERTERS ---
+	}
 
+	// --- VALUE TO SET CONVERTERS ---
+
+	private static final void setConverters() {
 		register(Set.class, (from) -> {
 			return toSet(from);
 		});
@@ -560,9 +645,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(LinkedHashSet.class, (from) -> {
 			return toSet(from);
 		});
+	}
 
-		// --- VALUE TO LIST CONVERTERS ---
+	// --- VALUE TO LIST CONVERTERS ---
 
+	private static final void listConverters() {
 		register(Collection.class, (from) -> {
 			return toList(from);
 		});
@@ -572,9 +659,11 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(LinkedList.class, (from) -> {
 			return toList(from);
 		});
+	}
 
-		// --- VALUE TO MAP CONVERTERS ---
+	// --- VALUE TO MAP CONVERTERS ---
 
+	private static final void mapConverters() {
 		register(Map.class, (from) -> {
 			return toMap(from);
 		});
@@ -584,12 +673,6 @@ final class BasicConverterSet extends AbstractConverterSet {
 		register(LinkedHashMap.class, (from) -> {
 			return toMap(from);
 		});
-		
-		// --- JSON FORMATTING ---
-
-		if (!Config.USE_TIMESTAMPS) {
-			DataConverterRegistry.addUnquotedClass(Date.class);
-		}
 	}
-		
+
 }
\ No newline at end of file
@@ -18,9 +18,9 @@
 package io.datatree.dom.converters;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Common Java object converter.<br>
@@ -43,31 +43,46 @@ public class DataConverterRegistry extends AbstractConverterSet {
 
 	// --- FROM -> TO CONVERTER MAP ---
 
-	private static final HashMap<DataConverterKey<?, ?>, DataConverter<?, ?>> converters = new HashMap<>(512);
+	private static final ConcurrentHashMap<DataConverterKey<?, ?>, DataConverter<?, ?>> converters = new ConcurrentHashMap<>(512);
 
 	// --- ANY -> TO CONVERTER MAP ---
 
-	private static final HashMap<Class<?>, DataConverter<?, ?>> defaultConverters = new HashMap<>(128);
+	private static final ConcurrentHashMap<Class<?>, DataConverter<?, ?>> defaultConverters = new ConcurrentHashMap<>(128);
 
 	// --- UNQUOTED TYPES ---
 
-	private static final HashSet<Class<?>> unquotedClasses = new HashSet<>(64);
+	private static final Set<Class<?>> unquotedClasses = ConcurrentHashMap.newKeySet(64);
+
+	// --- INSTALLED CONVERTER SETS ---
+
+	/**
+	 * Target types whose built-in converters are installed.
+	 */
+	private static final Set<Class<?>> installedTargets = ConcurrentHashMap.newKeySet(64);
+
+	/**
+	 * Are the MongoDB / BSON converters installed?
+	 */
+	private static volatile boolean bsonInstalled;
+
+	/**
+	 * The thread that installs built-in converters (the built-in converters
+	 * don't override the user-defined ones).
+	 */
+	private static volatile Thread installer;
 
 	// --- LOAD CONVERTER SETS ---
 
 	static {
 
-		// Load converters for basic Java types
+		// Load the index of converters for basic Java types (the converters
+		// of a target type are installed at the first conversion to that type,
+		// the MongoDB / BSON converters at the first conversion of a BSON
+		// value)
 		try {
 			Class.forName("io.datatree.dom.converters.BasicConverterSet");
 		} catch (Throwable ignored) {
 		}
-
-		// Load converters for MongoDB / BSON object types
-		try {
-			Class.forName("io.datatree.dom.converters.BsonConverterSet");
-		} catch (Throwable ignored) {
-		}
 	}
 	
 	// --- PRIVATE CONSTRUCTOR ---
@@ -78,11 +93,93 @@ public class DataConverterRegistry extends AbstractConverterSet {
 	// --- REGISTER CONVERTER ---
 
 	public static final <TO, FROM> void register(Class<TO> to, Class<FROM> from, DataConverter<TO, FROM> converter) {
-		converters.put(new DataConverterKey<TO, FROM>(to, from), converter);
+		DataConverterKey<TO, FROM> key = new DataConverterKey<TO, FROM>(to, from);
+		if (installer == Thread.currentThread()) {
+			converters.putIfAbsent(key, converter);
+		} else {
+			converters.put(key, converter);
+		}
 	}
 
 	public static final <TO, FROM> void register(Class<TO> to, DataConverter<TO, ?> converter) {
-		defaultConverters.put(to, converter);
+		if (installer == Thread.currentThread()) {
+			defaultConverters.putIfAbsent(to, converter);
+		} else {
+			defaultConverters.put(to, converter);
+		}
+	}
+
+	// --- INSTALL BUILT-IN CONVERTERS ---
+
+	/**
+	 * Installs the built-in converters of the specified target and source
+	 * types, if they are not installed yet.
+	 * 
+	 * @param to
+	 *            target type
+	 * @param from
+	 *            source type
+	 */
+	private static final void install(Class<?> to, Class<?> from) {
+		boolean installBson = !bsonInstalled && isBsonClass(from);
+		if (!installBson && installedTargets.contains(to)) {
+			return;
+		}
+		synchronized (installedTargets) {
+			installer = Thread.currentThread();
+			try {
+				if (!installedTargets.contains(to)) {
+					try {
+						BasicConverterSet.install(to);
+					} catch (Throwable ignored) {
+					}
+					installedTargets.add(to);
+				}
+				if (installBson && !bsonInstalled) {
+					installBson();
+				}
+			} finally {
+				installer = null;
+			}
+		}
+	}
+
+	private static final void installBson() {
+
+		// Load converters for MongoDB / BSON object types
+		try {
+			Class.forName("io.datatree.dom.converters.BsonConverterSet");
+		} catch (Throwable ignored) {
+		} finally {
+			bsonInstalled = true;
+		}
+	}
+
+	/**
+	 * Installs the converters of the specified (eg. MongoDB / BSON) source
+	 * type, if they are not installed yet. Called at the first use of a
+	 * class, eg. by the DeepCloner.
+	 * 
+	 * @param type
+	 *            source type
+	 */
+	public static final void prepare(Class<?> type) {
+		if (!bsonInstalled && isBsonClass(type)) {
+			synchronized (installedTargets) {
+				if (!bsonInstalled) {
+					installer = Thread.currentThread();
+					try {
+						installBson();
+					} finally {
+						installer = null;
+					}
+				}
+			}
+		}
+	}
+
+	private static final boolean isBsonClass(Class<?> type) {
+		return type.getName().startsWith("org.bson.");
 	}
 
 	// --- UNQUOTED TYPES ---
@@ -92,7 +189,14 @@ public class DataConverterRegistry extends AbstractConverterSet {
 	}
 
 	public static final boolean isUnquotedClass(Class<?> objectClass) {
-		return unquotedClasses.contains(objectClass);
+		if (unquotedClasses.contains(objectClass)) {
+			return true;
+		}
+		if (!bsonInstalled && isBsonClass(objectClass)) {
+			prepare(objectClass);
+			return unquotedClasses.contains(objectClass);
+		}
+		return false;
 	}
 
 	// --- VALUE CONVERTER ---
@@ -141,6 +245,12 @@ public class DataConverterRegistry extends AbstractConverterSet {
 		// Convert FROM -> TO
 		DataConverterKey<TO, FROM> key = new DataConverterKey<TO, FROM>(to, (Class<FROM>) from.getClass());
 		DataConverter<TO, FROM> converter = (DataConverter<TO, FROM>) converters.get(key);
+		if (converter == null) {
+
+			// The converter may be installed by this or by an other thread
+			install(to, from.getClass());
+			converter = (DataConverter<TO, FROM>) converters.get(key);
+		}
 		if (converter != null) {
 			return converter.convert(from);
 		}
@@ -22,14 +22,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -39,9 +47,17 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
 import org.bson.BsonBoolean;
@@ -62,10 +78,23 @@ import org.bson.types.ObjectId;
 import org.bson.types.Symbol;
 import org.junit.Test;
 
+import io.datatree.dom.BufferSegment;
 import io.datatree.dom.Config;
+import io.datatree.dom.DeepCloner;
+import io.datatree.dom.DeepCloner.CloneFailure;
+import io.datatree.dom.FlightEvents;
+import io.datatree.dom.FormatDetectorRegistry;
+import io.datatree.dom.MetaMap;
+import io.datatree.dom.PackageScanner;
+import io.datatree.dom.Pool;
+import io.datatree.dom.TreeMetrics;
+import io.datatree.dom.TreeMetricsRegistry;
 import io.datatree.dom.TreeReaderRegistry;
 import io.datatree.dom.TreeWriterRegistry;
+import io.datatree.dom.builtin.BinaryBuiltin;
+import io.datatree.dom.builtin.IndexedBuiltin;
 import io.datatree.dom.builtin.JsonBuiltin;
+import io.datatree.dom.converters.DataConverterRegistry;
 import junit.framework.TestCase;
 
 /**
@@ -2437,4 +2466,1462 @@ public class TreeTest extends TestCase {
 
 	}
 
-}
\ No newline at end of file
+	// --- STRUCTURALLY SHARED MODIFICATIONS ---
+
+	@Test
+	public void testWithAndWithout() throws Exception {
+		Tree v1 = new Tree("{\"a\":{\"b\":1,\"x\":[1,2,3]},\"c\":{\"d\":2},\"l\":[{\"e\":1},{\"e\":2}]}");
+		v1.getMeta().put("m", 1);
+
+		// Modify a value
+		Tree v2 = v1.with("a.b", 3);
+		assertEquals(1, v1.get("a.b", -1));
+		assertEquals(3, v2.get("a.b", -1));
+		assertTrue(v1.get("c").asObject() == v2.get("c").asObject());
+		assertTrue(v1.get("a.x").asObject() == v2.get("a.x").asObject());
+		assertFalse(v1.get("a").asObject() == v2.get("a").asObject());
+		assertEquals(1, v2.getMeta().get("m", -1));
+
+		// Create a new path
+		Tree v3 = v2.with("c.f.g", true);
+		assertNull(v2.get("c.f"));
+		assertTrue(v3.get("c.f.g", false));
+		assertTrue(v2.get("a").asObject() == v3.get("a").asObject());
+
+		// Modify a List element
+		Tree v4 = v3.with("l[1].e", 5);
+		assertEquals(2, v3.get("l[1].e", -1));
+		assertEquals(5, v4.get("l[1].e", -1));
+		assertTrue(v3.get("l[0]").asObject() == v4.get("l[0]").asObject());
+
+		// Remove a node
+		Tree v5 = v4.without("a.x");
+		assertNotNull(v4.get("a.x"));
+		assertNull(v5.get("a.x"));
+		assertEquals(3, v5.get("a.b", -1));
+
+		// Modify metadata
+		Tree v6 = v5.with("_meta.m", 2);
+		assertEquals(1, v5.getMeta().get("m", -1));
+		assertEquals(2, v6.getMeta().get("m", -1));
+
+		assertJsonEquals("{\"a\":{\"b\":1,\"x\":[1,2,3]},\"c\":{\"d\":2},\"l\":[{\"e\":1},{\"e\":2}]}",
+				v1.toString(null, false, false));
+		assertJsonEquals("{\"a\":{\"b\":3},\"c\":{\"d\":2,\"f\":{\"g\":true}},\"l\":[{\"e\":1},{\"e\":5}]}",
+				v6.toString(null, false, false));
+	}
+
+	// --- COPY-ON-WRITE (LAZY) CLONE ---
+
+	@Test
+	public void testLazyClone() throws Exception {
+		String json = "{\"a\":{\"b\":1,\"x\":[1,2,3]},\"c\":{\"d\":2},\"l\":[{\"e\":1},{\"e\":2}]}";
+		Tree src = new Tree(json);
+		Tree copy = src.lazyClone();
+		assertTrue(src.asObject() == copy.asObject());
+
+		// Modify the copy
+		copy.put("a.b", 2);
+		copy.get("a.x").add(4);
+		copy.get("l[1]").put("f", true);
+		assertJsonEquals(json, src.toString(null, false, false));
+		assertJsonEquals(
+				"{\"a\":{\"b\":2,\"x\":[1,2,3,4]},\"c\":{\"d\":2},\"l\":[{\"e\":1},{\"e\":2,\"f\":true}]}",
+				copy.toString(null, false, false));
+		assertTrue(src.get("c").asObject() == copy.get("c").asObject());
+		assertTrue(src.get("l[0]").asObject() == copy.get("l[0]").asObject());
+
+		// Modify the source
+		Tree c = src.get("c");
+		src.put("c.y", 3);
+		c.put("z", 4);
+		src.get("l").remove(0);
+		src.get("a.x").clear();
+		assertJsonEquals("{\"a\":{\"b\":1,\"x\":[]},\"c\":{\"d\":2,\"y\":3,\"z\":4},\"l\":[{\"e\":2}]}",
+				src.toString(null, false, false));
+		assertJsonEquals(
+				"{\"a\":{\"b\":2,\"x\":[1,2,3,4]},\"c\":{\"d\":2},\"l\":[{\"e\":1},{\"e\":2,\"f\":true}]}",
+				copy.toString(null, false, false));
+
+		// Iterator-based removal
+		Tree copy2 = copy.lazyClone();
+		copy2.remove((child) -> {
+			return child.getName().equals("a") || child.getName().equals("l");
+		}, true);
+		copy2.get("c").clear().add("first").add("second").remove(1);
+		assertJsonEquals("{\"c\":[\"first\"]}", copy2.toString(null, false, false));
+		assertEquals(3, copy.size());
+		assertEquals(2, copy.get("c.d", -1));
+
+		// Detached node
+		Tree copy3 = src.lazyClone();
+		Tree removed = copy3.remove("a");
+		removed.put("b", 5);
+		assertEquals(1, src.get("a.b", -1));
+		assertNull(copy3.get("a"));
+
+		// Versions
+		Tree v1 = new Tree(json);
+		Tree v2 = v1.with("c.d", 3);
+		v2.put("a.b", 7);
+		v1.put("c.d", 4);
+		assertEquals(1, v1.get("a.b", -1));
+		assertEquals(7, v2.get("a.b", -1));
+		assertEquals(3, v2.get("c.d", -1));
+		assertEquals(4, v1.get("c.d", -1));
+
+		// Nodes created before the copy-on-write copy
+		Tree src2 = new Tree(json);
+		Tree cs = src2.get("c");
+		Tree copy4 = src2.lazyClone();
+		Tree c4 = copy4.get("c");
+		src2.put("c.d", 5);
+		assertEquals(5, cs.get("d", -1));
+		assertEquals(2, c4.get("d", -1));
+		assertEquals(2, copy4.get("c.d", -1));
+		cs.put("d", 6);
+		assertEquals(6, src2.get("c.d", -1));
+		assertEquals(2, copy4.get("c.d", -1));
+		c4.put("d", 7);
+		assertEquals(7, copy4.get("c.d", -1));
+		assertEquals(6, cs.get("d", -1));
+		assertEquals(6, src2.get("c.d", -1));
+
+		// Read API of the nodes created before the copy
+		Tree r = new Tree("{\"a\":{\"x\":1},\"l\":[1,2]}");
+		Tree ra = r.get("a");
+		Tree rl = r.get("l");
+		Tree rx = r.lazyClone();
+		r.get("a").remove("x");
+		r.get("l").remove(0);
+		assertEquals("{}", ra.asString());
+		assertTrue(ra.isEmpty());
+		assertEquals(0, ra.size());
+		assertTrue(ra.isMap());
+		assertTrue(ra.isStructure());
+		assertFalse(ra.isNull());
+		assertSame(r.get("a").asObject(), ra.asObject());
+		assertEquals("{}", ra.toString(false));
+		assertEquals("[2]", rl.asString());
+		assertEquals(1, rl.asList(Integer.class).size());
+		assertEquals(2, rl.get(0).asInteger().intValue());
+		assertTrue(rl.isEnumeration());
+		assertFalse(rl.diff(r.get("l")).iterator().hasNext());
+		assertEquals(1, rx.get("a.x", -1));
+		assertEquals(2, rx.get("l").size());
+
+		// Released (no longer used) and garbage collected clones
+		Tree holder = new Tree(json);
+		Tree released = holder.lazyClone();
+		released.releaseShared();
+		Object container = holder.get("a").asObject();
+		holder.put("a.b", 8);
+		assertSame(container, holder.get("a").asObject());
+		holder = new Tree(json);
+		WeakReference<Tree> collected = new WeakReference<>(holder.lazyClone());
+		for (int i = 0; i < 100 && collected.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		if (collected.get() == null) {
+			container = holder.get("a").asObject();
+			holder.put("a.b", 9);
+			assertSame(container, holder.get("a").asObject());
+		}
+
+		testSerializationAndCloning(copy);
+	}
+
+	// --- PARALLEL CLONE ---
+
+	@Test
+	public void testParallelClone() throws Exception {
+		Tree src = new Tree();
+		Tree list = src.putList("list");
+		for (int i = 0; i < 10000; i++) {
+			Tree item = list.addMap();
+			item.put("id", i);
+			item.put("date", new Date(i));
+			item.putList("values").add(i).add("x" + i);
+		}
+		Tree map = src.putMap("map");
+		for (int i = 0; i < 5000; i++) {
+			map.put("key" + i, i);
+		}
+		Tree copy = src.parallelClone();
+		assertEquals(src.toString(), copy.toString());
+		assertFalse(src.get("list[9999]").asObject() == copy.get("list[9999]").asObject());
+		assertFalse(src.get("list[5].date").asObject() == copy.get("list[5].date").asObject());
+		assertEquals("key4999", copy.get("map").getLastChild().getName());
+
+		copy.get("list[0]").put("id", -1);
+		assertEquals(0, src.get("list[0].id", 1));
+
+		// Uncloneable values (sequential fallback)
+		Object unknown = new Object() {
+
+			@Override
+			public String toString() {
+				return "unknown";
+			}
+
+		};
+		try {
+			DeepCloner.parallelClone(Collections.singletonList(unknown));
+			fail();
+		} catch (CloneFailure expected) {
+			assertTrue(expected.getCause() instanceof UnsupportedOperationException);
+		}
+		src.putObject("unknown", unknown);
+		copy = src.parallelClone();
+		assertEquals("unknown", copy.get("unknown", ""));
+	}
+
+	// --- BUILT-IN BINARY FORMAT ---
+
+	@Test
+	public void testBinaryBuiltin() throws Exception {
+		Tree t = new Tree();
+		t.put("string", "abc");
+		t.put("long", Long.MIN_VALUE);
+		t.put("int", -123);
+		t.put("short", (short) 12);
+		t.put("byte", (byte) -3);
+		t.put("float", 1.5f);
+		t.put("double", -2.25d);
+		t.put("bool", true);
+		t.put("null", (String) null);
+		t.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+		t.put("bigDecimal", new BigDecimal("-12345678901234567890.123456789"));
+		t.put("date", new Date(1234567890123L));
+		t.put("uuid", UUID.randomUUID());
+		t.put("inet", InetAddress.getByName("127.0.0.1"));
+		t.put("bytes", "bytes".getBytes());
+		t.put("long text", "\u00e1\u00e9\u0151\u0171 long text, which is not stored in the String table");
+		t.putSet("set").add(1).add(2);
+		Tree list = t.putList("list");
+		for (int i = 0; i < 100; i++) {
+			list.addMap().put("id", i).put("name", "item" + (i % 5)).put("enabled", i % 2 == 0);
+		}
+		t.getMeta().put("session", "abc");
+
+		byte[] bytes = t.toBinary("binary", true);
+		Tree copy = new Tree(bytes, "binary");
+		assertEquals(t.toString("debug"), copy.toString("debug"));
+		assertEquals("abc", copy.getMeta().get("session", ""));
+		assertEquals(t.get("uuid").asUUID(), copy.get("uuid").asUUID());
+		assertEquals(Long.MIN_VALUE, copy.get("long", 0L));
+		assertEquals(Short.class, copy.get("short").getType());
+		assertTrue(copy.get("set").isSet());
+
+		// Repeated keys are stored only once
+		assertTrue(bytes.length < t.toBinary("java", true).length);
+		assertTrue(bytes.length < t.toBinary().length);
+
+		// Text format (BASE64)
+		copy = new Tree(t.toString("binary"), "binary");
+		assertEquals(t.toString("debug"), copy.toString("debug"));
+
+		// Root array
+		copy = new Tree(new Tree("[1,2,\"x\"]").toBinary("binary"), "binary");
+		assertJsonEquals("[1,2,\"x\"]", copy.toString(null, false, false));
+	}
+
+	// --- INDEXED (RANDOM-ACCESS) FORMAT ---
+
+	@Test
+	public void testIndexedBuiltin() throws Exception {
+		Tree t = new Tree();
+		t.put("string", "abc");
+		t.put("long", Long.MIN_VALUE);
+		t.put("int", -123);
+		t.put("short", (short) -12);
+		t.put("byte", (byte) -3);
+		t.put("float", 1.5f);
+		t.put("double", -2.25d);
+		t.put("bool", true);
+		t.put("null", (String) null);
+		t.put("bigInteger", new BigInteger("123456789012345678901234567890"));
+		t.put("bigDecimal", new BigDecimal("-12345678901234567890.123456789"));
+		t.put("date", new Date(1234567890123L));
+		t.put("uuid", UUID.randomUUID());
+		t.put("inet", InetAddress.getByName("127.0.0.1"));
+		t.put("bytes", "bytes".getBytes());
+		t.put("\u00e1rv\u00edzt\u0171r\u0151", "t\u00fck\u00f6rf\u00far\u00f3g\u00e9p");
+		t.putSet("set").add(1).add(2);
+		Tree list = t.putList("a.b");
+		for (int i = 0; i < 100; i++) {
+			list.addMap().put("id", i).put("name", "item" + (i % 5)).put("enabled", i % 2 == 0);
+		}
+		t.getMeta().put("session", "abc");
+
+		// Read values without deserialization
+		byte[] bytes = t.toBinary("indexed", true);
+		Tree view = new Tree(bytes, "indexed");
+		assertEquals(t.toString("debug"), view.toString("debug"));
+		assertEquals("abc", view.getMeta().get("session", ""));
+		assertEquals(3, view.get("a.b[3].id", -1));
+		assertEquals("item3", view.get("a.b[3].name", ""));
+		assertEquals("t\u00fck\u00f6rf\u00far\u00f3g\u00e9p", view.get("\u00e1rv\u00edzt\u0171r\u0151", ""));
+		assertNull(view.get("a.b[100]"));
+		assertNull(view.get("missing"));
+		assertTrue(view.get("set").isSet());
+		assertEquals(t.get("uuid").asUUID(), view.get("uuid").asUUID());
+		assertEquals(Short.class, view.get("short").getType());
+
+		// Keys are in insertion order
+		Iterator<Tree> children = t.iterator();
+		for (Tree child : view) {
+			assertEquals(children.next().getName(), child.getName());
+		}
+
+		// View over a direct buffer
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		view = new Tree(direct);
+		assertEquals(t.toString("debug"), view.toString("debug"));
+		assertEquals(99, view.get("a.b[99].id", -1));
+		assertEquals("abc", view.getMeta().get("session", ""));
+
+		// Read-only
+		try {
+			view.put("string", "xyz");
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		try {
+			((Map<?, ?>) view.asObject()).remove(Config.META);
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		assertEquals("abc", new Tree(direct).getMeta().get("session", ""));
+		Tree copy = view.clone();
+		copy.put("string", "xyz");
+		assertEquals("xyz", copy.get("string", ""));
+		assertEquals("abc", view.get("string", ""));
+
+		// Root array
+		view = new Tree(new Tree("[1,2,\"x\"]").toBinary("indexed"), "indexed");
+		assertJsonEquals("[1,2,\"x\"]", view.toString(null, false, false));
+
+		// Invalid header
+		try {
+			new Tree(t.toBinary("binary"), "indexed");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	// --- OFF-HEAP TREE ---
+
+	@Test
+	public void testOffHeapTree() throws Exception {
+		Tree t = new Tree();
+		t.put("a.b", "c");
+		Tree list = t.putList("list");
+		for (int i = 0; i < 1000; i++) {
+			list.addMap().put("id", i).put("name", "item" + i);
+		}
+		t.getMeta().put("version", 3);
+
+		// Direct buffer
+		OffHeapTree cache = OffHeapTree.allocate(t);
+		assertFalse(cache.isClosed());
+		assertTrue(cache.getStorageSize() > 0);
+		assertEquals("c", cache.get("a.b", ""));
+		assertEquals("item123", cache.get("list[123].name", ""));
+		assertEquals(3, cache.getMeta().get("version", 0));
+		assertEquals(t.toString(), cache.toString());
+		int count = 0;
+		for (Tree item : cache.get("list")) {
+			assertEquals(count++, item.get("id", -1));
+		}
+		assertEquals(1000, count);
+
+		// Java serialization (into a new off-heap storage)
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(cache);
+		oos.flush();
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		try (OffHeapTree deserialized = (OffHeapTree) ois.readObject()) {
+			assertFalse(deserialized.isClosed());
+			assertEquals("item999", deserialized.get("list[999].name", ""));
+			assertEquals(3, deserialized.getMeta().get("version", 0));
+			assertEquals(t.toString(), deserialized.toString());
+		}
+
+		// Close while an other thread is reading
+		BufferSegment segment = new BufferSegment(IndexedBuiltin.allocate(t.asObject(), null, false), true);
+		ByteBuffer reading = segment.acquire();
+		segment.close();
+		assertTrue(segment.isClosed());
+		assertTrue(IndexedBuiltin.isIndexed(reading));
+		segment.release();
+		try {
+			segment.acquire();
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+
+		// One acquire per read operation
+		AtomicInteger acquired = new AtomicInteger();
+		segment = new BufferSegment(IndexedBuiltin.allocate(t.asObject(), null, false), true) {
+
+			@Override
+			public ByteBuffer acquire() {
+				acquired.incrementAndGet();
+				return super.acquire();
+			}
+
+		};
+		Map<?, ?> root = (Map<?, ?>) IndexedBuiltin.view(segment);
+		acquired.set(0);
+		List<?> items = (List<?>) root.get("list");
+		assertEquals(1, acquired.get());
+		Map<?, ?> item = (Map<?, ?>) items.get(7);
+		assertEquals(2, acquired.get());
+		assertEquals("item7", item.get("name"));
+		assertEquals(3, acquired.get());
+		for (Map.Entry<?, ?> entry : item.entrySet()) {
+			assertNotNull(entry.getValue());
+		}
+		assertEquals(5, acquired.get());
+		segment.close();
+
+		// Children are cursors over the same storage
+		Tree child = cache.get("list[5]");
+		cache.close();
+		assertTrue(cache.isClosed());
+		try {
+			child.get("name", "");
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		try {
+			cache.get("a.b");
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+		cache.close();
+
+		// Memory-mapped file
+		File file = File.createTempFile("datatree", ".indexed");
+		try {
+			t.writeTo(file, "indexed", true);
+			try (OffHeapTree mapped = OffHeapTree.map(file)) {
+				assertEquals("item999", mapped.get("list[999].name", ""));
+				assertEquals(t.toString(), mapped.toString());
+				assertEquals(3, mapped.getMeta().get("version", 0));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	// --- COMPACT JAVA SERIALIZATION ---
+
+	@Test
+	public void testCompactSerialization() throws Exception {
+		Tree t = new Tree();
+		Tree list = t.putList("list");
+		for (int i = 0; i < 200; i++) {
+			list.addMap().put("id", i).put("name", "item" + i).put("date", new Date(i));
+		}
+		t.putObject("char", 'X');
+		t.putObject("array", new int[] { 1, 2, 3 });
+		t.putObject("locale", Locale.GERMANY);
+		t.getMeta().put("session", "abc");
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(t);
+		oos.close();
+		byte[] bytes = baos.toByteArray();
+		assertTrue(bytes.length < t.toBinary("java", true).length);
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		Tree copy = (Tree) ois.readObject();
+		assertEquals(t.toString("debug"), copy.toString("debug"));
+		assertEquals("abc", copy.getMeta().get("session", ""));
+		assertEquals(Character.class, copy.get("char").getType());
+		assertEquals(int[].class, copy.get("array").getType());
+		assertEquals(Locale.GERMANY, copy.get("locale").asObject());
+		assertEquals(new Date(199), copy.get("list[199].date", new Date()));
+
+		// Container types, Timestamps, shared and cyclic references
+		Tree r = new Tree();
+		LinkedHashMap<String, Object> shared = new LinkedHashMap<>();
+		shared.put("x", 1);
+		shared.put("self", shared);
+		r.putObject("s1", shared);
+		r.putObject("s2", shared);
+		r.putList("l").add(1);
+		TreeMap<String, Object> sorted = new TreeMap<>();
+		sorted.put("b", 2);
+		r.putObject("t", sorted);
+		r.putObject("ts", new Timestamp(1234567));
+		baos = new ByteArrayOutputStream();
+		oos = new ObjectOutputStream(baos);
+		oos.writeObject(r);
+		oos.close();
+		ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		copy = (Tree) ois.readObject();
+		Map<?, ?> s1 = (Map<?, ?>) copy.get("s1").asObject();
+		assertTrue(s1 == copy.get("s2").asObject());
+		assertTrue(s1 == s1.get("self"));
+		assertEquals(1, s1.get("x"));
+		assertEquals(LinkedList.class, copy.get("l").getType());
+		assertEquals(TreeMap.class, copy.get("t").getType());
+		assertEquals(Timestamp.class, copy.get("ts").getType());
+		assertEquals(new Timestamp(1234567), copy.get("ts").asObject());
+
+		// Invalid (too large) sizes
+		byte[] invalid = { 'D', 'T', 'B', 1, 19, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+		try {
+			BinaryBuiltin.deserialize(invalid);
+			fail();
+		} catch (IOException expected) {
+		}
+		for (int tag : new int[] { 14, 18, 19 }) {
+			baos = new ByteArrayOutputStream();
+			oos = new ObjectOutputStream(baos);
+			oos.write(tag);
+			oos.write(Arrays.copyOfRange(invalid, 5, invalid.length));
+			oos.close();
+			ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+			try {
+				BinaryBuiltin.readFrom(ois);
+				fail();
+			} catch (IOException expected) {
+			}
+		}
+	}
+
+	// --- DIFF / PATCH ---
+
+	@Test
+	public void testDiffAndPatch() throws Exception {
+		Tree v1 = new Tree("{\"a\":1,\"b\":[1,2,3,4],\"c\":{\"d\":\"x\",\"e/f\":true},\"g\":null}");
+		Tree v2 = new Tree("{\"a\":2,\"b\":[1,2,5,3,4],\"c\":{\"d\":\"x\",\"h\":[1]},\"i\":3}");
+
+		// JSON Patch
+		Tree patch = v1.diff(v2);
+		assertJsonEquals("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2},"
+				+ "{\"op\":\"add\",\"path\":\"/b/2\",\"value\":5},"
+				+ "{\"op\":\"remove\",\"path\":\"/c/e~1f\"},"
+				+ "{\"op\":\"add\",\"path\":\"/c/h\",\"value\":[1]},"
+				+ "{\"op\":\"remove\",\"path\":\"/g\"},"
+				+ "{\"op\":\"add\",\"path\":\"/i\",\"value\":3}]", patch.toString(false));
+		Tree copy = v1.clone().apply(patch);
+		assertJsonEquals(v2.toString(false), copy.toString(false));
+		assertTrue(v1.diff(v1.clone()).isEmpty());
+
+		// Removals from List
+		Tree l1 = new Tree("[1,2,3,4,5]");
+		Tree l2 = new Tree("[1,5]");
+		assertJsonEquals("[1,5]", l1.clone().apply(l1.diff(l2)).toString(false));
+		assertJsonEquals("[1,2,3,4,5]", l2.clone().apply(l2.diff(l1)).toString(false));
+
+		// LinkedLists
+		LinkedList<Object> linked1 = new LinkedList<>();
+		LinkedList<Object> linked2 = new LinkedList<>();
+		for (int i = 0; i < 10000; i++) {
+			linked1.add(i);
+			linked2.add(i % 1000 == 0 ? -i : i);
+		}
+		linked2.add(10000);
+		l1 = new Tree().putObject("l", linked1);
+		l2 = new Tree().putObject("l", linked2);
+		patch = l1.diff(l2);
+		assertEquals(10, patch.size());
+		assertJsonEquals(l2.toString(false), l1.clone().apply(patch).toString(false));
+
+		// JSON Merge Patch
+		Tree merge = v1.diff(v2, true);
+		assertTrue(merge.isMap());
+		assertTrue(merge.get("g").isNull());
+		copy = v1.clone().apply(merge);
+		assertJsonEquals(v2.toString(false), copy.toString(false));
+
+		// Shared (identical) containers are skipped
+		Tree big = new Tree();
+		for (int i = 0; i < 1000; i++) {
+			big.put("k" + i + ".value", i);
+		}
+		Tree version = big.with("k500.value", -1);
+		patch = big.diff(version);
+		assertJsonEquals("[{\"op\":\"replace\",\"path\":\"/k500/value\",\"value\":-1}]", patch.toString(false));
+		big.apply(patch);
+		assertEquals(-1, big.get("k500.value", 0));
+
+		// Other operations
+		Tree t = new Tree("{\"a\":{\"b\":1},\"c\":[1,2]}");
+		t.apply(new Tree("[{\"op\":\"move\",\"from\":\"/a/b\",\"path\":\"/x\"},"
+				+ "{\"op\":\"copy\",\"from\":\"/c\",\"path\":\"/d\"},"
+				+ "{\"op\":\"add\",\"path\":\"/c/-\",\"value\":3},"
+				+ "{\"op\":\"test\",\"path\":\"/x\",\"value\":1}]"));
+		assertJsonEquals("{\"a\":{},\"c\":[1,2,3],\"x\":1,\"d\":[1,2]}", t.toString(false));
+
+		// The target does not share its containers after the patch
+		Tree target = new Tree("{\"a\":{\"b\":1},\"c\":{\"d\":1}}");
+		target.apply(new Tree("[{\"op\":\"replace\",\"path\":\"/a/b\",\"value\":2}]"));
+		Object unchanged = target.get("c").asObject();
+		target.put("c.e", 2);
+		assertSame(unchanged, target.get("c").asObject());
+		assertEquals(2, target.get("a.b", -1));
+
+		// Atomic apply
+		try {
+			t.apply(new Tree("[{\"op\":\"remove\",\"path\":\"/x\"},{\"op\":\"test\",\"path\":\"/a\",\"value\":1}]"));
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(1, t.get("x", 0));
+		try {
+			t.apply(new Tree("[{\"op\":\"remove\",\"path\":\"/missing\"}]"));
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	// --- FRAGMENT CACHE ---
+
+	@Test
+	public void testFragmentCache() throws Exception {
+		Tree t = new Tree();
+		Tree list = t.putList("items");
+		for (int i = 0; i < 100; i++) {
+			list.addMap().put("id", i).put("name", "item" + i).put("description", "long description of item " + i);
+		}
+		t.put("a.b.c", "d");
+		String expected = t.toString(false);
+
+		assertFalse(t.isFragmentCacheEnabled());
+		t.setFragmentCache(true);
+		assertTrue(t.get("items[3]").isFragmentCacheEnabled());
+		assertEquals(expected, t.toString(false));
+		assertEquals(expected, t.toString(false));
+
+		// Modifications
+		t.get("items[50]").put("name", "changed");
+		t.put("a.b.c", "e");
+		t.get("items").remove(10);
+		t.get("items").add("x");
+		String json = t.toString(false);
+		t.setFragmentCache(false);
+		assertEquals(t.toString(false), json);
+		assertTrue(json.contains("\"changed\""));
+		assertTrue(json.contains("\"c\":\"e\""));
+		assertFalse(json.contains("\"item10\""));
+		t.setFragmentCache(true);
+		assertEquals(json, t.toString("json"));
+
+		// Sub-nodes and meta
+		assertEquals(t.get("items[20]").toString(false), t.get("items[20]").toString("json", false));
+		t.getMeta().put("x", "y");
+		assertJsonEquals(t.toString("json", false, true), t.toString(null, false, true));
+		t.getMeta().put("x", "z");
+		assertTrue(t.toString("json", false, true).contains("\"z\""));
+
+		// Iterator removal
+		Iterator<Tree> i = t.get("items").iterator();
+		i.next();
+		i.remove();
+		json = t.toString(false);
+		t.setFragmentCache(false);
+		assertEquals(t.toString(false), json);
+
+		// Positions of the fragments in the following outputs
+		t.setFragmentCache(true);
+		t.toString(false);
+		for (int n = 0; n < 20; n++) {
+			t.get("items[" + (n * 4) + "]").put("name", "changed" + n);
+			if (n % 3 == 0) {
+				t.get("items").insert(n, "inserted item " + n + ", a long enough string value to fill the fragment");
+			}
+			if (n % 5 == 0) {
+				t.get("items[" + (n + 30) + "]").toString(false);
+			}
+			json = t.toString(false);
+			t.setFragmentCache(false);
+			assertEquals(t.toString(false), json);
+			t.setFragmentCache(true);
+			assertEquals(json, t.toString(false));
+		}
+	}
+
+	// --- QUERY ---
+
+	@Test
+	public void testQuery() throws Exception {
+		Tree t = new Tree("{\"store\":{\"items\":[" //
+				+ "{\"id\":1,\"name\":\"a\",\"qty\":3,\"price\":10.5}," //
+				+ "{\"id\":2,\"name\":\"b\",\"qty\":7,\"price\":20}," //
+				+ "{\"id\":3,\"name\":\"c\",\"qty\":12,\"price\":5,\"tags\":[\"x\",\"y\"]}]," //
+				+ "\"owner\":{\"id\":99,\"name\":\"o\"}}}");
+
+		assertEquals("[10.5, 20, 5]", values(t.query("store.items[*].price")));
+		assertEquals("[10.5, 20, 5]", values(t.query("$.store.items[*].price")));
+		assertEquals("[1, 2, 3, 99]", values(t.query("$..id")));
+		assertEquals("[b, c]", values(t.query("store.items[?(@.qty > 5)].name")));
+		assertEquals("[c]", values(t.query("store.items[?(@.qty > 5 && @.price < 10)].name")));
+		assertEquals("[a, c]", values(t.query("store.items[?(@.name == 'a' || @.tags)].name")));
+		assertEquals("[a, b]", values(t.query("store.items[?(!@.tags)].name")));
+		assertEquals("[c]", values(t.query("store.items[-1].name")));
+		assertEquals("[a, c]", values(t.query("store.items[0,2].name")));
+		assertEquals("[a, b]", values(t.query("store.items[:2].name")));
+		assertEquals("[b, c]", values(t.query("store.items[1:].name")));
+		assertEquals("[c, a]", values(t.query("store.items[::-2].name")));
+		assertEquals("[o]", values(t.query("store['owner']['name']")));
+		assertEquals("[x, y]", values(t.query("..tags[*]")));
+		assertEquals("[2]", values(t.query("$.store.items[?(@.price == 20)].id")));
+		assertTrue(t.query("store.missing[*]").isEmpty());
+
+		// Result nodes are connected to the source
+		for (Tree price : t.query("store.items[?(@.qty > 5)].price")) {
+			price.setObject(0);
+		}
+		assertEquals("[10.5, 0, 0]", values(t.query("store.items[*].price")));
+		assertEquals("store.items[2].price", t.query("..price").get(2).getPath());
+
+		// Reusable (compiled) query on raw values
+		TreeQuery query = TreeQuery.compile("..name");
+		assertSame(query, TreeQuery.compile("..name"));
+		assertEquals("[a, b, c, o]", query.values(t.asObject()).toString());
+		assertEquals(4, query.stream(t).count());
+
+		// Slices and indexes of (large) LinkedLists
+		Tree linked = new Tree().putList("l");
+		for (int i = 0; i < 50000; i++) {
+			linked.add(i);
+		}
+		assertEquals(LinkedList.class, linked.getType());
+		List<Tree> slice = linked.getRoot().query("l[0:50000]");
+		assertEquals(50000, slice.size());
+		assertEquals(49999, slice.get(49999).asInteger().intValue());
+		assertEquals("[25000, 49999, 0]", values(linked.getRoot().query("l[25000,-1,0]")));
+		assertEquals("[49999, 49997]", values(linked.getRoot().query("l[:-4:-2]")));
+
+		// Invalid syntax
+		try {
+			TreeQuery.compile("items[?(@.a >)]");
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	private static final String values(List<Tree> nodes) {
+		StringBuilder tmp = new StringBuilder("[");
+		for (Tree node : nodes) {
+			if (tmp.length() > 1) {
+				tmp.append(", ");
+			}
+			tmp.append(node.asString());
+		}
+		return tmp.append(']').toString();
+	}
+
+	// --- INDEX ---
+
+	@Test
+	public void testIndex() throws Exception {
+		Tree t = new Tree();
+		Tree users = t.putList("users");
+		users.addMap().put("id", 1).put("name", "Alice").putMap("role").put("name", "admin");
+		users.addMap().put("id", 2).put("name", "Bob").putMap("role").put("name", "user");
+		users.addMap().put("id", "3").put("name", "Carol").putMap("role").put("name", "admin");
+
+		TreeIndex byId = t.get("users").index("id");
+		assertEquals("id", byId.getFieldPath());
+		assertFalse(byId.isValid());
+		assertEquals("Alice", byId.lookupFirst(1).get("name", ""));
+		assertTrue(byId.isValid());
+		assertEquals(3, byId.size());
+
+		// Numeric and String keys
+		assertEquals("Bob", byId.lookupFirst("2").get("name", ""));
+		assertEquals("Bob", byId.lookupFirst(2L).get("name", ""));
+		assertEquals("Bob", byId.lookupFirst(2.0d).get("name", ""));
+		assertEquals("Carol", byId.lookupFirst(3).get("name", ""));
+		assertNull(byId.lookupFirst(4));
+		assertTrue(byId.lookup(4).isEmpty());
+		assertFalse(byId.contains(4));
+
+		// Path of the matching node
+		Tree bob = byId.lookupFirst(2);
+		assertEquals("users[1]", bob.getPath());
+		assertEquals(t, bob.getRoot());
+
+		// Duplicated keys, nested field
+		TreeIndex byRole = users.index("role.name");
+		List<Tree> admins = byRole.lookup("admin");
+		assertEquals(2, admins.size());
+		assertEquals("Alice", admins.get(0).get("name", ""));
+		assertEquals("Carol", admins.get(1).get("name", ""));
+
+		// Many duplicated keys
+		Tree records = new Tree().putList("records");
+		for (int i = 0; i < 20000; i++) {
+			records.addMap().put("id", i).put("even", i % 2 == 0);
+		}
+		TreeIndex byParity = records.index("even");
+		assertEquals(2, byParity.size());
+		List<Tree> odds = byParity.lookup(false);
+		assertEquals(10000, odds.size());
+		assertEquals(19999, odds.get(9999).get("id", -1));
+		assertEquals(0, byParity.lookupFirst(true).get("id", -1));
+
+		// Modify the matching node
+		bob.put("name", "Robert");
+		assertEquals("Robert", t.get("users[1].name", ""));
+
+		// Add
+		users.addMap().put("id", 4).put("name", "Dave").putMap("role").put("name", "admin");
+		assertFalse(byId.isValid());
+		assertFalse(byRole.isValid());
+		assertEquals("Dave", byId.lookupFirst(4).get("name", ""));
+		assertEquals(3, byRole.lookup("admin").size());
+
+		// Insert
+		users.insertMap(0).put("id", 5).put("name", "Eve");
+		assertEquals("users[0]", byId.lookupFirst(5).getPath());
+		assertEquals("users[2]", byId.lookupFirst(2).getPath());
+
+		// Remove
+		byId.lookupFirst(1).remove();
+		assertNull(byId.lookupFirst(1));
+		assertEquals(2, byRole.lookup("admin").size());
+
+		// Modify a field of a child
+		t.put("users[1].id", 20);
+		assertNull(byId.lookupFirst(2));
+		assertEquals("Robert", byId.lookupFirst(20).get("name", ""));
+
+		// Modify another branch
+		byId.lookupFirst(20);
+		t.put("other", 1);
+		assertTrue(byId.isValid());
+
+		// Copy-on-write clone
+		Tree clone = t.lazyClone(false);
+		TreeIndex cloneIndex = clone.get("users").index("id");
+		assertEquals("Eve", cloneIndex.lookupFirst(5).get("name", ""));
+		clone.get("users").addMap().put("id", 6);
+		assertEquals(6, cloneIndex.lookupFirst(6).get("id", 0));
+		assertNull(byId.lookupFirst(6));
+
+		// Map of Maps
+		Tree map = new Tree();
+		map.putMap("a").put("code", "x");
+		map.putMap("b").put("code", "y");
+		TreeIndex byCode = map.index("code");
+		assertEquals("b", byCode.lookupFirst("y").getName());
+
+		// Replace the indexed container by its parent
+		Tree doc = new Tree();
+		doc.putList("users").addMap().put("id", 1).put("name", "Alice");
+		TreeIndex docIndex = doc.get("users").index("id");
+		assertEquals("Alice", docIndex.lookupFirst(1).get("name", ""));
+		assertTrue(docIndex.isValid());
+		LinkedList<Object> newList = new LinkedList<>();
+		LinkedHashMap<String, Object> record = new LinkedHashMap<>();
+		record.put("id", 2);
+		record.put("name", "Bob");
+		newList.add(record);
+		doc.putObject("users", newList);
+		assertFalse(docIndex.isValid());
+		assertNull(docIndex.lookupFirst(1));
+		assertEquals("Bob", docIndex.lookupFirst(2).get("name", ""));
+		assertTrue(docIndex.isValid());
+
+		// Remove the indexed container
+		doc.remove("users");
+		assertFalse(docIndex.isValid());
+		assertNull(docIndex.lookupFirst(2));
+		assertEquals(0, docIndex.size());
+
+		// Add it again
+		doc.putList("users").addMap().put("id", 3);
+		assertEquals(3, docIndex.lookupFirst(3).get("id", 0));
+	}
+
+	// --- SORT WITH PRECOMPUTED KEYS ---
+
+	@Test
+	public void testSortKeys() throws Exception {
+
+		// Mixed numeric types
+		Tree t = new Tree();
+		Tree l = t.putList("list");
+		l.add(3).add(1.5d).add(2L).add(-1f);
+		l.sort();
+		assertJsonEquals("[-1.0,1.5,2,3]", l.toString(false));
+		l.clear().add(new BigDecimal("3.5")).add(1).add(new BigInteger("2"));
+		l.sort();
+		assertEquals(1, l.get(0).asInteger().intValue());
+		assertEquals(new BigDecimal("3.5"), l.get(2).asBigDecimal());
+
+		// Large longs (above 2^53) mixed with doubles
+		long big = (1L << 53) + 1;
+		l.clear().add(big).add((double) (1L << 53)).add(big - 2).add(Double.NaN).add(Double.NEGATIVE_INFINITY);
+		l.sort();
+		assertTrue(Double.isInfinite(l.get(0).asDouble()));
+		assertEquals(big - 2, l.get(1).asLong().longValue());
+		assertEquals(Double.class, l.get(2).getType());
+		assertEquals(big, l.get(3).asLong().longValue());
+		assertTrue(Double.isNaN(l.get(4).asDouble()));
+		l.clear().add(Long.MAX_VALUE).add(Long.MAX_VALUE - 1).add(Long.MIN_VALUE);
+		l.sort();
+		assertEquals(Long.MAX_VALUE - 1, l.get(1).asLong().longValue());
+		assertEquals(Long.MAX_VALUE, l.get(2).asLong().longValue());
+
+		// Case-insensitive, stable
+		l.clear().add("b").add("B").add("a").add("C");
+		l.sort();
+		assertJsonEquals("[\"a\",\"b\",\"B\",\"C\"]", l.toString(false));
+
+		// Large List (parallel)
+		Random rnd = new Random(1);
+		Tree p = t.putList("parallel");
+		for (int i = 0; i < 20000; i++) {
+			p.add(rnd.nextInt());
+		}
+		p.parallelSort();
+		long previous = Long.MIN_VALUE;
+		for (Tree child : p) {
+			assertTrue(previous <= child.asLong());
+			previous = child.asLong();
+		}
+		assertEquals(20000, p.size());
+		p.parallelSort((n1, n2) -> {
+			return Integer.compare(n2.asInteger(), n1.asInteger());
+		});
+		previous = Long.MAX_VALUE;
+		for (Tree child : p) {
+			assertTrue(previous >= child.asLong());
+			previous = child.asLong();
+		}
+
+		// Primitive array
+		Tree a = new Tree().putObject("array", new int[] { 3, 1, 2 });
+		a.sort();
+		assertTrue(a.asObject() instanceof int[]);
+		assertJsonEquals("[1,2,3]", a.toString(false));
+
+		// Copy-on-write clone
+		Tree source = new Tree();
+		source.putList("list").add(3).add(1).add(2);
+		Tree clone = source.lazyClone(false);
+		clone.get("list").sort();
+		assertJsonEquals("[1,2,3]", clone.get("list").toString(false));
+		assertJsonEquals("[3,1,2]", source.get("list").toString(false));
+	}
+
+	// --- POSITIONAL CURSOR ---
+
+	@Test
+	public void testCursor() throws Exception {
+
+		// Siblings in a List
+		Tree t = new Tree();
+		Tree l = t.putList("list").add(1).add(2).add(3);
+		Tree x = l.getFirstChild();
+		x = x.getNextSibling();
+		assertEquals(2, (int) x.asInteger());
+		x = x.getNextSibling();
+		assertEquals(3, (int) x.asInteger());
+		assertNull(x.getNextSibling());
+		assertEquals(2, (int) x.getPreviousSibling().asInteger());
+		assertNull(l.getFirstChild().getPreviousSibling());
+		assertNull(t.getFirstChild().getNextSibling());
+
+		// Map cursor
+		Tree m = t.putMap("map");
+		for (int i = 0; i < 5; i++) {
+			m.put("k" + i, i);
+		}
+		assertEquals("k3", m.get(3).getName());
+		assertEquals("k2", m.get("[2]").getName());
+		try {
+			m.get(5);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {
+		}
+		TreeCursor c = m.cursor();
+		assertEquals(5, c.size());
+		assertEquals(-1, c.index());
+		assertNull(c.current());
+		assertNull(c.previous());
+		int count = 0;
+		for (Tree child = c.next(); child != null; child = c.next()) {
+			assertEquals("k" + count, child.getName());
+			assertEquals(count, child.asInteger().intValue());
+			assertEquals("map.k" + count, child.getPath());
+			count++;
+		}
+		assertEquals(5, count);
+		assertEquals(5, c.index());
+		assertFalse(c.hasNext());
+		assertEquals("k4", c.previous().getName());
+		assertEquals("k3", c.previous().getName());
+		assertEquals("k2", c.peekPrevious().getName());
+		assertEquals("k4", c.peekNext().getName());
+		assertEquals("k3", c.current().getName());
+		assertEquals("k1", c.seek(1).getName());
+		assertEquals("k0", c.previous().getName());
+		assertFalse(c.hasPrevious());
+
+		// Modify the current node
+		c.current().setObject(100);
+		assertEquals(100, t.get("map.k0", 0));
+
+		// Linked List cursor
+		c = l.cursor(1);
+		assertEquals(2, c.current().asInteger().intValue());
+		assertEquals(3, c.next().asInteger().intValue());
+		assertNull(c.next());
+		assertEquals(3, c.previous().asInteger().intValue());
+		assertEquals(2, c.previous().asInteger().intValue());
+		assertEquals(1, c.previous().asInteger().intValue());
+		assertNull(c.previous());
+		assertEquals(3, c.seek(2).asInteger().intValue());
+		assertEquals(1, c.seek(0).asInteger().intValue());
+		assertEquals("list[0]", c.current().getPath());
+
+		// Array and Set cursor
+		c = new Tree().putObject("a", new int[] { 7, 8, 9 }).cursor(2);
+		assertEquals(9, c.current().asInteger().intValue());
+		assertEquals(8, c.previous().asInteger().intValue());
+		Tree s = new Tree().putSet("s").add("x").add("y");
+		c = s.cursor();
+		assertEquals("x", c.next().asString());
+		assertEquals("y", c.next().asString());
+		assertEquals("x", s.get(0).asString());
+
+		// Empty node
+		c = new Tree().cursor();
+		assertEquals(0, c.size());
+		assertNull(c.next());
+		try {
+			l.cursor(3);
+			fail();
+		} catch (IndexOutOfBoundsException expected) {
+		}
+	}
+
+	// --- NON-MUTATING META INSERTION ---
+
+	@Test
+	public void testMetaView() throws Exception {
+		Tree t = new Tree();
+		t.put("a", 1).put("b", "x");
+		t.getMeta().put("m", 2);
+
+		// Virtual meta entry
+		@SuppressWarnings("unchecked")
+		Map<Object, Object> source = (Map<Object, Object>) t.asObject();
+		MetaMap view = new MetaMap(source, t.getMeta().asObject());
+		assertEquals(3, view.size());
+		assertTrue(view.containsKey(Config.META));
+		assertEquals(1, view.get("a"));
+		Iterator<Object> keys = view.keySet().iterator();
+		assertEquals("a", keys.next());
+		assertEquals("b", keys.next());
+		assertEquals(Config.META, keys.next());
+		assertFalse(keys.hasNext());
+		assertFalse(source.containsKey(Config.META));
+
+		// Concurrent serialization of the same Tree
+		String expected = t.toString("debug", false, true);
+		assertTrue(expected.contains("m"));
+		Thread[] threads = new Thread[4];
+		AtomicInteger errors = new AtomicInteger();
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int n = 0; n < 500; n++) {
+					if (!expected.equals(t.toString("debug", false, true))) {
+						errors.incrementAndGet();
+					}
+					if (source.containsKey(Config.META)) {
+						errors.incrementAndGet();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, errors.get());
+
+		// Java serialization
+		Tree copy = new Tree(t.toBinary("java", true), "java");
+		assertEquals(1, copy.get("a", 0));
+		assertEquals(2, copy.getMeta().get("m", 0));
+		assertEquals(LinkedHashMap.class, copy.asObject().getClass());
+		assertFalse(source.containsKey(Config.META));
+	}
+
+	// --- ADAPTER INDEX ---
+
+	@Test
+	public void testAdapterIndex() throws Exception {
+		assertNotNull(getClass().getClassLoader().getResource(PackageScanner.INDEX));
+		assertNotNull(new Tree().put("a", 1).toString("debug", false, false));
+		assertTrue(TreeReaderRegistry.getReadersByFormat("json").contains(JsonBuiltin.class.getName()));
+		assertTrue(TreeWriterRegistry.getWritersByFormat("indexed").contains(IndexedBuiltin.class.getName()));
+		assertTrue(TreeWriterRegistry.isAvailable("binary"));
+		Tree t = new Tree(new Tree().put("a", 1).toBinary("binary", false), "binary");
+		assertEquals(1, t.get("a", 0));
+	}
+
+	// --- LAZY CONVERTER INSTALLATION ---
+
+	@Test
+	public void testLazyConverters() throws Exception {
+
+		// Built-in converters
+		assertEquals(Short.valueOf((short) 12), DataConverterRegistry.convert(Short.class, "12"));
+		assertEquals(Boolean.TRUE, DataConverterRegistry.convert(Boolean.class, 1));
+		assertEquals(new BigDecimal("1.5"), DataConverterRegistry.convert(BigDecimal.class, 1.5d));
+
+		// BSON converters
+		assertEquals("5", DataConverterRegistry.convert(String.class, new BsonInt32(5)));
+		assertEquals(Long.valueOf(7), DataConverterRegistry.convert(Long.class, new BsonString("7")));
+		assertTrue(DataConverterRegistry.isUnquotedClass(BsonInt64.class));
+		assertFalse(DataConverterRegistry.isUnquotedClass(BsonString.class));
+		BsonString bsonString = new BsonString("x");
+		assertSame(bsonString, DeepCloner.clone(bsonString));
+
+		// User-defined converters are not overridden by the built-in ones
+		InetAddress address = InetAddress.getByName("::1");
+		try {
+			DataConverterRegistry.register(Byte.class, Inet6Address.class, (from) -> {
+				return (byte) 42;
+			});
+			assertEquals(Byte.valueOf((byte) 42), DataConverterRegistry.convert(Byte.class, address));
+		} finally {
+			DataConverterRegistry.register(Byte.class, Inet6Address.class, (from) -> {
+				return from.getAddress()[0];
+			});
+		}
+		assertEquals(Byte.valueOf((byte) 0), DataConverterRegistry.convert(Byte.class, address));
+	}
+
+	// --- FORMAT DETECTION ---
+
+	@Test
+	public void testFormatDetection() throws Exception {
+		Tree t = new Tree();
+		t.put("a", 1).put("b", "text").putList("c").add(1).add(2);
+		t.getMeta().put("m", true);
+
+		// Built-in binary formats
+		for (String format : new String[] { "binary", "indexed" }) {
+			byte[] bytes = t.toBinary(format, true);
+			assertEquals(format, FormatDetectorRegistry.detect(bytes));
+			Tree copy = new Tree(bytes);
+			assertEquals(1, copy.get("a", 0));
+			assertEquals("text", copy.get("b", ""));
+			assertEquals(2, copy.get("c[1]", 0));
+			copy = new Tree(new ByteArrayInputStream(bytes));
+			assertEquals(2, copy.get("c").size());
+		}
+
+		// JSON (default)
+		byte[] json = t.toString(false).getBytes(StandardCharsets.UTF_8);
+		assertNull(FormatDetectorRegistry.detect(json));
+		assertEquals("text", new Tree(json).get("b", ""));
+		assertNull(FormatDetectorRegistry.detect(new byte[0]));
+
+		// Java serialization (opt-in)
+		byte[] javaBytes = t.toBinary("java", true);
+		assertNull(FormatDetectorRegistry.detect(javaBytes));
+		assertFalse(FormatDetectorRegistry.getDetectedFormats().contains("java"));
+		FormatDetectorRegistry.setDetector("java", FormatDetectorRegistry.JAVA);
+		try {
+			assertEquals("java", FormatDetectorRegistry.detect(javaBytes));
+			assertEquals("text", new Tree(javaBytes).get("b", ""));
+		} finally {
+			FormatDetectorRegistry.removeDetector("java");
+		}
+		assertNull(FormatDetectorRegistry.detect(javaBytes));
+
+		// Magic bytes of other formats
+		assertTrue(FormatDetectorRegistry.getDetectedFormats().contains("bson"));
+		assertTrue(FormatDetectorRegistry.getDetectedFormats().contains("cbor"));
+		assertTrue(FormatDetectorRegistry.getDetectedFormats().contains("smile"));
+
+		// BSON document with a length that is also a CBOR map header
+		byte[] bson = new byte[165];
+		bson[0] = (byte) 165;
+		TreeReaderRegistry.setReader("bson", new JsonBuiltin() {
+
+			@Override
+			public String getFormat() {
+				return "bson";
+			}
+
+		});
+		try {
+			assertEquals("bson", FormatDetectorRegistry.detect(bson));
+		} finally {
+			TreeReaderRegistry.removeReader("bson");
+		}
+		assertFalse("bson".equals(FormatDetectorRegistry.detect(bson)));
+
+		// Custom detector
+		FormatDetectorRegistry.setDetector("custom-json", (source) -> {
+			return source[0] == '#';
+		});
+		try {
+			TreeReaderRegistry.setReader("custom-json", new JsonBuiltin() {
+
+				@Override
+				public Object parse(byte[] source) throws Exception {
+					return super.parse(Arrays.copyOfRange(source, 1, source.length));
+				}
+
+				@Override
+				public String getFormat() {
+					return "custom-json";
+				}
+
+			});
+			assertEquals("custom-json", FormatDetectorRegistry.detect("#{}".getBytes(StandardCharsets.UTF_8)));
+			Tree custom = new Tree("#{\"x\":5}".getBytes(StandardCharsets.UTF_8));
+			assertEquals(5, custom.get("x", 0));
+		} finally {
+			FormatDetectorRegistry.removeDetector("custom-json");
+			TreeReaderRegistry.removeReader("custom-json");
+		}
+		assertFalse(FormatDetectorRegistry.getDetectedFormats().contains("custom-json"));
+	}
+
+
+	// --- METRICS ---
+
+	@Test
+	public void testMetrics() throws Exception {
+		Tree t = new Tree().put("a", 1).put("b", "text");
+		t.putList("c").add(1).add(2);
+
+		// Without listeners
+		assertFalse(TreeMetricsRegistry.isEnabled());
+		assertEquals(6, TreeMetricsRegistry.countNodes(t.asObject()));
+
+		LinkedList<String> events = new LinkedList<>();
+		TreeMetricsRegistry.setMetrics(new TreeMetrics() {
+
+			@Override
+			public void parsed(String format, long size, long nanos, int nodes) {
+				assertTrue(nanos >= 0);
+				events.add("parsed " + format + " " + size + " " + nodes);
+			}
+
+			@Override
+			public void written(String format, long size, long nanos, int nodes) {
+				assertTrue(nanos >= 0);
+				events.add("written " + format + " " + size + " " + nodes);
+			}
+
+			@Override
+			public boolean isNodeCountEnabled() {
+				return true;
+			}
+
+		});
+		AtomicInteger javaWrites = new AtomicInteger();
+		TreeMetricsRegistry.setMetrics("java", new TreeMetrics() {
+
+			@Override
+			public void written(String format, long size, long nanos, int nodes) {
+				assertEquals(-1, nodes);
+				javaWrites.incrementAndGet();
+			}
+
+		});
+		try {
+			assertTrue(TreeMetricsRegistry.isEnabled());
+
+			// Serialization
+			String json = t.toString(false);
+			assertEquals("written json " + json.length() + " 6", events.removeFirst());
+			byte[] bytes = t.toBinary("java");
+			assertEquals("written java " + bytes.length + " 6", events.removeFirst());
+			assertEquals(1, javaWrites.get());
+
+			// Parsing
+			new Tree(json);
+			assertEquals("parsed json " + json.length() + " 6", events.removeFirst());
+			new Tree(bytes, "java");
+			assertEquals("parsed java " + bytes.length + " 6", events.removeFirst());
+			assertEquals(1, javaWrites.get());
+			assertTrue(events.isEmpty());
+		} finally {
+			TreeMetricsRegistry.removeMetrics();
+			TreeMetricsRegistry.removeMetrics("java");
+		}
+		assertFalse(TreeMetricsRegistry.isEnabled());
+		t.toString(false);
+		assertTrue(events.isEmpty());
+	}
+
+
+	// --- FLIGHT RECORDER EVENTS ---
+
+	@Test
+	public void testFlightEvents() throws Exception {
+
+		// No running recording
+		assertNull(FlightEvents.begin(FlightEvents.PARSE));
+		assertNull(FlightEvents.begin(FlightEvents.DATE_PARSE));
+		FlightEvents.commit(null, "json", 1);
+
+		// Instrumented methods
+		Tree t = new Tree("{\"a\":1,\"d\":\"2017-07-14 02:40\"}");
+		assertEquals(t, t.clone());
+		assertEquals(t, new Tree(t.toBinary("java"), "java"));
+		assertNotNull(t.get("d", (Date) null));
+	}
+
+
+	// --- OBJECT POOL ---
+
+	@Test
+	public void testPool() throws Exception {
+		Pool<StringBuilder> pool = new Pool<>(3, 1000, 1500, () -> {
+			return new StringBuilder(100);
+		}, (builder) -> {
+			return builder.capacity() * 2;
+		});
+		assertEquals(4, pool.capacity());
+		assertEquals(0, pool.size());
+
+		// Miss, then hit
+		StringBuilder b1 = pool.acquire();
+		assertEquals(1, pool.getMisses());
+		pool.release(b1);
+		assertEquals(1, pool.size());
+		assertEquals(200, pool.getRetainedSize());
+		assertSame(b1, pool.acquire());
+		assertEquals(1, pool.getHits());
+		assertEquals(0, pool.getRetainedSize());
+
+		// Oversized object
+		StringBuilder large = new StringBuilder(600);
+		pool.release(large);
+		assertEquals(1, pool.getDiscarded());
+		assertEquals(0, pool.size());
+
+		// Retained size limit (1500 bytes)
+		for (int i = 0; i < 4; i++) {
+			pool.release(new StringBuilder(200));
+		}
+		assertEquals(3, pool.size());
+		assertEquals(1200, pool.getRetainedSize());
+		assertEquals(2, pool.getDiscarded());
+		pool.clear();
+		assertEquals(0, pool.size());
+		assertEquals(0, pool.getRetainedSize());
+
+		// Built-in adapters
+		JsonBuiltin json = new JsonBuiltin();
+		Tree t = new Tree().put("a", 1);
+		json.toString(t.asObject(), null, false, false);
+		json.toString(t.asObject(), null, false, false);
+		assertEquals(1, json.getBuilderPool().getMisses());
+		assertEquals(1, json.getBuilderPool().getHits());
+		json.parse("{\"a\":1}");
+		json.parse("{\"a\":2}");
+		assertEquals(1, json.getSourcePool().getHits());
+		assertEquals(1, json.getSourcePool().size());
+		assertEquals(t, new Tree(t.toBinary("binary"), "binary"));
+		assertEquals(t, new Tree(t.toBinary("java"), "java"));
+		assertEquals(t, new Tree(ByteBuffer.wrap(t.toBinary("indexed"))));
+	}
+
+
+	// --- ASYNCHRONOUS FILE I/O ---
+
+	@Test
+	public void testAsyncFileIO() throws Exception {
+		File f = null;
+		try {
+			Tree t1 = new Tree();
+			Tree list = t1.putList("list");
+			for (int i = 0; i < 20000; i++) {
+				list.addMap().put("id", i).put("name", "Name " + i);
+			}
+			t1.getMeta().put("x", "y");
+
+			// Larger than one chunk (64 KB)
+			f = File.createTempFile("tmp", ".json");
+			t1.writeAsync(f.toPath()).get();
+			assertTrue(f.length() > 65536);
+			assertEquals(t1, new Tree(f));
+			assertEquals(t1, Tree.readAsync(f.toPath()).get());
+			assertFalse(Tree.readAsync(f.toPath()).get().hasMeta());
+
+			// Custom format, meta and executor
+			ExecutorService executor = Executors.newSingleThreadExecutor();
+			try {
+				t1.writeAsync(f.toPath(), "java", true, executor).get();
+				Tree t2 = Tree.readAsync(f.toPath(), "java", executor).get();
+				assertEquals(t1, t2);
+				assertEquals("y", t2.getMeta().get("x", ""));
+
+				// Autodetected format (by the leading bytes)
+				t1.writeAsync(f.toPath(), "binary", true, executor).get();
+				assertEquals(t1, Tree.readAsync(f.toPath(), null, executor).get());
+
+				// Snapshot (modified before the serialization)
+				CountDownLatch latch = new CountDownLatch(1);
+				executor.execute(() -> {
+					try {
+						latch.await();
+					} catch (InterruptedException ignored) {
+					}
+				});
+				Tree expected = t1.clone();
+				CompletableFuture<Void> future = t1.writeAsync(f.toPath(), "json", false, executor);
+				t1.get("list[0]").put("name", "changed");
+				latch.countDown();
+				future.get();
+				assertEquals(expected, new Tree(f));
+				assertEquals("changed", t1.get("list[0].name", ""));
+
+				// The snapshot is released after the serialization
+				Object items = t1.get("list").asObject();
+				t1.get("list[1]").put("name", "changed");
+				assertSame(items, t1.get("list").asObject());
+			} finally {
+				executor.shutdown();
+			}
+
+			// Overwrite with smaller content
+			Tree t3 = new Tree().put("a", 1);
+			t3.writeAsync(f.toPath(), "json").get();
+			assertEquals(t3, new Tree(f));
+
+			// Empty file
+			new FileOutputStream(f).close();
+			assertTrue(Tree.readAsync(f.toPath()).get().isEmpty());
+
+			// Missing file
+			f.delete();
+			try {
+				Tree.readAsync(f.toPath()).get();
+				fail();
+			} catch (ExecutionException expected) {
+				assertTrue(expected.getCause() instanceof IOException);
+			}
+		} finally {
+			if (f != null) {
+				f.delete();
+			}
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+/**
+ * This software is licensed under the Apache 2 license, quoted below.<br>
+ * <br>
+ * Copyright 2019 Andras Berkes [andras.berkes@programmer.net]<br>
+ * <br>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at<br>
+ * <br>
+ * http://www.apache.org/licenses/LICENSE-2.0<br>
+ * <br>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.datatree.dom;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+/**
+ * DeepCloner JUnit test cases.
+ * 
+ * @author Andras Berkes [andras.berkes@programmer.net]
+ */
+public class ClonerTest extends TestCase {
+
+	@Test
+	public void testCloner() throws Exception {
+
+		// Immutable values
+		UUID uuid = UUID.randomUUID();
+		assertSame(uuid, DeepCloner.clone(uuid));
+		assertSame(TimeUnit.DAYS, DeepCloner.clone(TimeUnit.DAYS));
+		LocalDate date = LocalDate.now();
+		assertSame(date, DeepCloner.clone(date));
+
+		// Mutable values
+		Date now = new Date();
+		Date copy = (Date) DeepCloner.clone(now);
+		assertNotSame(now, copy);
+		assertEquals(now, copy);
+
+		byte[] bytes = "abc".getBytes();
+		byte[] bytesCopy = (byte[]) DeepCloner.clone(bytes);
+		assertNotSame(bytes, bytesCopy);
+		assertTrue(Arrays.equals(bytes, bytesCopy));
+
+		Object[] array = new Object[] { new Date(), "x" };
+		Object[] arrayCopy = (Object[]) DeepCloner.clone(array);
+		assertNotSame(array[0], arrayCopy[0]);
+		assertSame(array[1], arrayCopy[1]);
+
+		// Copy-constructor
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("a", new Value(3));
+		Map<?, ?> mapCopy = (Map<?, ?>) DeepCloner.clone(map);
+		assertNotSame(map.get("a"), mapCopy.get("a"));
+		assertEquals(3, ((Value) mapCopy.get("a")).number);
+
+		// Registered cloner
+		DeepCloner.addCloner(Value.class, (from) -> {
+			return new Value(from.number + 1);
+		});
+		assertEquals(4, ((Value) DeepCloner.clone(new Value(3))).number);
+		DeepCloner.removeCloner(Value.class);
+		assertEquals(3, ((Value) DeepCloner.clone(new Value(3))).number);
+
+		// Register immutable class
+		Value value = new Value(5);
+		DeepCloner.addImmutableClass(Value.class);
+		assertSame(value, DeepCloner.clone(value));
+		DeepCloner.removeImmutableClass(Value.class);
+		assertNotSame(value, DeepCloner.clone(value));
+
+		// Cloneable class with (shallow) public "clone" method
+		Holder holder = new Holder();
+		holder.values.add(new Date(1));
+		Holder holderCopy = (Holder) DeepCloner.clone(holder);
+		assertNotSame(holder, holderCopy);
+		assertNotSame(holder.values, holderCopy.values);
+		assertNotSame(holder.values.get(0), holderCopy.values.get(0));
+		assertNotSame(holder.counter, holderCopy.counter);
+		holderCopy.values.add(new Date(2));
+		holderCopy.counter[0] = 5;
+		assertEquals(1, holder.values.size());
+		assertEquals(0, holder.counter[0]);
+		assertEquals(7, holderCopy.number);
+
+		// Circular references and fields which cannot be cloned
+		Holder cyclic = new Holder();
+		cyclic.values.add(cyclic);
+		cyclic.self = cyclic;
+		Holder cyclicCopy = (Holder) DeepCloner.clone(cyclic);
+		assertNotSame(cyclic, cyclicCopy);
+		assertSame(cyclicCopy, cyclicCopy.self);
+		assertSame(cyclicCopy, cyclicCopy.values.get(0));
+		assertSame(cyclic.lock, cyclicCopy.lock);
+		assertSame(cyclic.logger, cyclicCopy.logger);
+
+		// Unsupported class
+		try {
+			DeepCloner.clone(new Object() {
+			});
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+
+		// Collections
+		List<?> list = (List<?>) DeepCloner.clone(Arrays.asList(1, now));
+		assertEquals(2, list.size());
+		assertNotSame(now, list.get(1));
+	}
+
+	public static final class Value {
+
+		private final int number;
+
+		public Value(int number) {
+			this.number = number;
+		}
+
+		public Value(Value value) {
+			this.number = value.number;
+		}
+
+	}
+
+	public static final class Holder implements Cloneable {
+
+		private final List<Object> values = new ArrayList<>();
+		private final int[] counter = new int[1];
+		private final int number = 7;
+		private final Object lock = new Object();
+		private final Logger logger = Logger.getLogger("test");
+		private Holder self;
+
+		@Override
+		public Holder clone() {
+			try {
+				return (Holder) super.clone();
+			} catch (CloneNotSupportedException cause) {
+				throw new IllegalStateException(cause);
+			}
+		}
+
+	}
+
+}